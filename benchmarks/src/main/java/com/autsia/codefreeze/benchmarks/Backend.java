@@ -0,0 +1,44 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.benchmarks;
+
+import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import com.autsia.codefreeze.impl.LambdaCodeFreeze;
+
+/**
+ * CodeFreeze implementations compared head-to-head
+ */
+public enum Backend {
+
+    CGLIB {
+        @Override
+        CodeFreeze create() {
+            return new CGLIBCodeFreeze();
+        }
+    },
+
+    LAMBDA {
+        @Override
+        CodeFreeze create() {
+            return new LambdaCodeFreeze();
+        }
+    };
+
+    abstract CodeFreeze create();
+
+}
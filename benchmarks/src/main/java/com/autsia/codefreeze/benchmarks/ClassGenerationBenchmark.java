@@ -0,0 +1,100 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.benchmarks;
+
+import com.autsia.codefreeze.benchmarks.model.ChainBean;
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import com.autsia.codefreeze.impl.metrics.FreezeListener;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Burst of threads freezing the type which has never been seen before. Reports the number of generated classes
+ * next to the number of types, which have to be equal, as only one thread generates the class of each type.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class ClassGenerationBenchmark {
+
+    @Param({"16"})
+    private int threads;
+
+    private ExecutorService executor;
+    private CGLIBCodeFreeze codeFreeze;
+    private Object isolatedBean;
+    private final AtomicInteger generations = new AtomicInteger();
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long types;
+        public long generations;
+
+    }
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() throws ReflectiveOperationException {
+        codeFreeze = new CGLIBCodeFreeze();
+        codeFreeze.setListener(new FreezeListener() {
+            @Override
+            public void onClassGenerated(Class<?> type, long durationNanos) {
+                generations.incrementAndGet();
+            }
+        });
+        generations.set(0);
+        isolatedBean = new IsolatingClassLoader(ChainBean.class).loadIsolated().newInstance();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public Object concurrentFirstFreeze(Counters counters) throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        List<Future<Object>> results = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                barrier.await();
+                return codeFreeze.freeze(isolatedBean);
+            }));
+        }
+        Object frozen = null;
+        for (Future<Object> result : results) {
+            frozen = result.get();
+        }
+        counters.types++;
+        counters.generations += generations.get();
+        return frozen;
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.benchmarks;
+
+import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.benchmarks.model.Beans;
+import com.autsia.codefreeze.benchmarks.model.FlatBean;
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of freezing large List/Set/Map graphs
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollectionFreezeBenchmark {
+
+    @Param({"1000", "200000"})
+    private int size;
+
+    @Param({"false", "true"})
+    private boolean lazy;
+
+    private CodeFreeze codeFreeze;
+    private List<FlatBean> list;
+    private Set<String> set;
+    private Map<String, FlatBean> map;
+
+    @Setup
+    public void setUp() {
+        CGLIBCodeFreeze cglibCodeFreeze = new CGLIBCodeFreeze();
+        cglibCodeFreeze.setLazyCollections(lazy);
+        codeFreeze = cglibCodeFreeze;
+        list = Beans.list(size);
+        set = Beans.set(size);
+        map = Beans.map(size);
+        codeFreeze.freeze(Beans.flatBean(0));
+    }
+
+    @Benchmark
+    public List<FlatBean> freezeList() {
+        return codeFreeze.freeze(list);
+    }
+
+    @Benchmark
+    public Set<String> freezeSet() {
+        return codeFreeze.freeze(set);
+    }
+
+    @Benchmark
+    public Map<String, FlatBean> freezeMap() {
+        return codeFreeze.freeze(map);
+    }
+
+}
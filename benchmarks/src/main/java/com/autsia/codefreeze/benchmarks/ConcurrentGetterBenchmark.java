@@ -0,0 +1,66 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.benchmarks;
+
+import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.benchmarks.model.Beans;
+import com.autsia.codefreeze.benchmarks.model.ChainBean;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Getters of a frozen bean shared by concurrent readers: memoized values are read without locks,
+ * so the cost per call shouldn't grow with the number of readers.
+ * Run with -t 1, 2, 4, 8, 16, 32 and 64 reader threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentGetterBenchmark {
+
+    @Param({"CGLIB", "LAMBDA"})
+    private Backend backend;
+
+    private ChainBean frozen;
+
+    @Setup
+    public void setUp() {
+        CodeFreeze codeFreeze = backend.create();
+        frozen = codeFreeze.freeze(Beans.chain(2));
+    }
+
+    /**
+     * Hits memoized value of the freezing getter, populated by the first reader
+     */
+    @Benchmark
+    public ChainBean sharedReferenceGetter() {
+        return frozen.getInnerEntity();
+    }
+
+    /**
+     * Calls the delegate through the delegating getter
+     */
+    @Benchmark
+    public String sharedValueGetter() {
+        return frozen.getName();
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.benchmarks;
+
+import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.benchmarks.model.Beans;
+import com.autsia.codefreeze.benchmarks.model.ChainBean;
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the first freeze() of a type compared to the freeze() with warm factories cache.
+ * Single-shot mode is used as cold operations can't be repeated within the same state.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 50)
+@Fork(3)
+public class FactoryCacheBenchmark {
+
+    private CodeFreeze warmCodeFreeze;
+    private CodeFreeze coldCodeFreeze;
+    private CGLIBCodeFreeze diskCachedCodeFreeze;
+    private Path classCacheDirectory;
+    private ChainBean bean;
+    private Object isolatedBean;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException, ReflectiveOperationException {
+        warmCodeFreeze = new CGLIBCodeFreeze();
+        bean = Beans.chain(1);
+        warmCodeFreeze.freeze(bean);
+        // Populate class cache directory the way the previous JVM run would do
+        classCacheDirectory = Files.createTempDirectory("codefreeze-benchmark");
+        CGLIBCodeFreeze codeFreeze = new CGLIBCodeFreeze();
+        codeFreeze.setClassCacheDirectory(classCacheDirectory);
+        codeFreeze.freeze(new IsolatingClassLoader(ChainBean.class).loadIsolated().newInstance());
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() throws ReflectiveOperationException {
+        coldCodeFreeze = new CGLIBCodeFreeze();
+        diskCachedCodeFreeze = new CGLIBCodeFreeze();
+        diskCachedCodeFreeze.setClassCacheDirectory(classCacheDirectory);
+        isolatedBean = new IsolatingClassLoader(ChainBean.class).loadIsolated().newInstance();
+    }
+
+    @Benchmark
+    public ChainBean warmFactories() {
+        return warmCodeFreeze.freeze(bean);
+    }
+
+    /**
+     * Empty factories cache, proxy class is still reused from CGLIB internal cache
+     */
+    @Benchmark
+    public ChainBean coldFactories() {
+        return coldCodeFreeze.freeze(bean);
+    }
+
+    /**
+     * Empty factories cache and a type which has never been seen before, so that proxy class is generated
+     */
+    @Benchmark
+    public Object coldClassGeneration() {
+        return coldCodeFreeze.freeze(isolatedBean);
+    }
+
+    /**
+     * Type which has never been seen before, with proxy class defined from the class cache directory
+     */
+    @Benchmark
+    public Object coldClassLoadingFromDisk() {
+        return diskCachedCodeFreeze.freeze(isolatedBean);
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.benchmarks;
+
+import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.benchmarks.model.Beans;
+import com.autsia.codefreeze.benchmarks.model.ChainBean;
+import com.autsia.codefreeze.benchmarks.model.FlatBean;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of freezing single beans with warm factories cache: flat bean and deep chain walked to the bottom
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FreezeBenchmark {
+
+    @Param({"CGLIB", "LAMBDA"})
+    private Backend backend;
+
+    @Param({"4", "32"})
+    private int depth;
+
+    private CodeFreeze codeFreeze;
+    private FlatBean flatBean;
+    private FlatBean frozenFlatBean;
+    private ChainBean chain;
+
+    @Setup
+    public void setUp() {
+        codeFreeze = backend.create();
+        flatBean = Beans.flatBean(1);
+        chain = Beans.chain(depth);
+        // Warm up factories cache, so that only freezing itself is measured
+        frozenFlatBean = codeFreeze.freeze(flatBean);
+        codeFreeze.freeze(chain).getInnerEntity();
+    }
+
+    @Benchmark
+    public FlatBean freezeFlatBean() {
+        return codeFreeze.freeze(flatBean);
+    }
+
+    /**
+     * Freezing of already frozen bean returns it as is
+     */
+    @Benchmark
+    public FlatBean refreezeFrozenBean() {
+        return codeFreeze.freeze(frozenFlatBean);
+    }
+
+    @Benchmark
+    public void freezeDeepChain(Blackhole blackhole) {
+        // Nested beans are frozen lazily, so the chain has to be walked to freeze every level
+        ChainBean level = codeFreeze.freeze(chain);
+        while (level != null) {
+            blackhole.consume(level.getEntityList());
+            level = level.getInnerEntity();
+        }
+    }
+
+}
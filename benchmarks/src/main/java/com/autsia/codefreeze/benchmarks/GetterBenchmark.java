@@ -0,0 +1,104 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.benchmarks;
+
+import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.benchmarks.model.Beans;
+import com.autsia.codefreeze.benchmarks.model.ChainBean;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of repeated getter calls on a frozen bean compared to the plain one
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetterBenchmark {
+
+    @Param({"CGLIB", "LAMBDA"})
+    private Backend backend;
+
+    private ChainBean plain;
+    private ChainBean frozen;
+    private ChainBean frozenLeaf;
+    private ChainBean snapshot;
+
+    @Setup
+    public void setUp() {
+        CodeFreeze codeFreeze = backend.create();
+        plain = Beans.chain(2);
+        frozen = codeFreeze.freeze(plain);
+        // Populate memoized value of the freezing getter
+        frozen.getInnerEntity();
+        // Null values are not memoized, so the getter of the last chain element always reaches the delegate
+        frozenLeaf = frozen.getInnerEntity();
+        snapshot = codeFreeze.snapshot(plain);
+    }
+
+    @Benchmark
+    public ChainBean plainReferenceGetter() {
+        return plain.getInnerEntity();
+    }
+
+    @Benchmark
+    public String plainValueGetter() {
+        return plain.getName();
+    }
+
+    /**
+     * Hits memoized value of the freezing getter
+     */
+    @Benchmark
+    public ChainBean frozenReferenceGetter() {
+        return frozen.getInnerEntity();
+    }
+
+    /**
+     * Calls the delegate through the freezing getter on every invocation
+     */
+    @Benchmark
+    public ChainBean frozenUnmemoizedReferenceGetter() {
+        return frozenLeaf.getInnerEntity();
+    }
+
+    /**
+     * Calls the delegate through the delegating getter
+     */
+    @Benchmark
+    public String frozenValueGetter() {
+        return frozen.getName();
+    }
+
+    /**
+     * Reads the field copied into the snapshot, getters of snapshots are not intercepted
+     */
+    @Benchmark
+    public ChainBean snapshotReferenceGetter() {
+        return snapshot.getInnerEntity();
+    }
+
+    @Benchmark
+    public String snapshotValueGetter() {
+        return snapshot.getName();
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Class loader defining a fresh copy of the single class, so that every instance of loader
+ * brings the type which has never been proxified before
+ */
+class IsolatingClassLoader extends ClassLoader {
+
+    private final Class<?> type;
+
+    IsolatingClassLoader(Class<?> type) {
+        super(type.getClassLoader());
+        this.type = type;
+    }
+
+    Class<?> loadIsolated() throws ClassNotFoundException {
+        return loadClass(type.getName());
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (!type.getName().equals(name)) {
+            return super.loadClass(name, resolve);
+        }
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> loaded = findLoadedClass(name);
+            if (loaded == null) {
+                byte[] bytecode = readBytecode(name);
+                loaded = defineClass(name, bytecode, 0, bytecode.length);
+            }
+            return loaded;
+        }
+    }
+
+    private byte[] readBytecode(String name) throws ClassNotFoundException {
+        String resource = name.replace('.', '/') + ".class";
+        try (InputStream inputStream = getParent().getResourceAsStream(resource)) {
+            if (inputStream == null) {
+                throw new ClassNotFoundException(name);
+            }
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toByteArray();
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.benchmarks;
+
+import com.autsia.codefreeze.benchmarks.model.Beans;
+import com.autsia.codefreeze.benchmarks.model.FlatBean;
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of eager freezing of large collections with the number of fork/join workers, 0 means sequential freezing.
+ * Run with -p parallelism=... matching the number of cores of the machine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelFreezeBenchmark {
+
+    @Param({"1000000"})
+    private int size;
+
+    @Param({"0", "1", "2", "4", "8", "16", "32"})
+    private int parallelism;
+
+    private CGLIBCodeFreeze codeFreeze;
+    private ForkJoinPool pool;
+    private List<FlatBean> list;
+    private Map<String, FlatBean> map;
+
+    @Setup
+    public void setUp() {
+        codeFreeze = new CGLIBCodeFreeze();
+        if (parallelism > 0) {
+            pool = new ForkJoinPool(parallelism);
+            codeFreeze.setFreezingPool(pool);
+            codeFreeze.setParallelismThreshold(1024);
+        }
+        list = Beans.list(size);
+        map = Beans.map(size);
+        codeFreeze.freeze(Beans.flatBean(0));
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public List<FlatBean> freezeList() {
+        return codeFreeze.freeze(list);
+    }
+
+    @Benchmark
+    public Map<String, FlatBean> freezeMap() {
+        return codeFreeze.freeze(map);
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.benchmarks;
+
+import com.autsia.codefreeze.benchmarks.model.Beans;
+import com.autsia.codefreeze.benchmarks.model.FlatBean;
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic refresh of the reloaded catalog of products grouped by categories, with a few products changed since
+ * the previous refresh:
+ * freezing it from scratch compared to re-freezing it against the previous frozen version.
+ * Run with -prof gc to compare allocation per refresh.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RefreezeBenchmark {
+
+    @Param({"100"})
+    private int categories;
+
+    @Param({"100"})
+    private int size;
+
+    @Param({"0", "10"})
+    private int changes;
+
+    private CGLIBCodeFreeze codeFreeze;
+    private Map<String, List<FlatBean>> previous;
+    private Map<String, List<FlatBean>> original;
+    private Map<String, List<FlatBean>> changed;
+    private boolean reverted;
+
+    @Setup
+    public void setUp() {
+        codeFreeze = new CGLIBCodeFreeze();
+        original = catalog();
+        changed = catalog();
+        for (int i = 0; i < changes; i++) {
+            changed.get("Category" + i * (categories / changes)).get(i).setMask(-1);
+        }
+        previous = codeFreeze.freeze(original);
+    }
+
+    /**
+     * Alternates between the original and the changed catalog, so that every refresh differs from the previous one
+     */
+    private Map<String, List<FlatBean>> next() {
+        reverted = !reverted;
+        return reverted ? changed : original;
+    }
+
+    private Map<String, List<FlatBean>> catalog() {
+        Map<String, List<FlatBean>> catalog = new HashMap<>();
+        for (int i = 0; i < categories; i++) {
+            catalog.put("Category" + i, Beans.list(size));
+        }
+        return catalog;
+    }
+
+    @Benchmark
+    public Map<String, List<FlatBean>> freeze() {
+        return codeFreeze.freeze(next());
+    }
+
+    @Benchmark
+    public Map<String, List<FlatBean>> refreeze() {
+        // Every refresh is re-frozen against the result of the previous one, as periodic reloads do
+        previous = codeFreeze.refreeze(previous, next());
+        return previous;
+    }
+
+}
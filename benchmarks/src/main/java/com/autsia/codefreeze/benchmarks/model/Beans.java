@@ -0,0 +1,109 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.benchmarks.model;
+
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * Factory of benchmark bean graphs
+ */
+public final class Beans {
+
+    private Beans() {
+    }
+
+    /**
+     * Creates bean with a few first-level properties
+     *
+     * @param id Bean identifier
+     * @return Flat bean
+     */
+    public static FlatBean flatBean(int id) {
+        FlatBean bean = new FlatBean();
+        bean.setId(BigInteger.valueOf(id));
+        bean.setMask(id);
+        bean.setName(FlatBean.class.getSimpleName() + id);
+        return bean;
+    }
+
+    /**
+     * Creates chain of nested beans, each level referencing itself from its collections like TestEntity does
+     *
+     * @param depth Number of nested levels
+     * @return Top-level bean of the chain
+     */
+    public static ChainBean chain(int depth) {
+        ChainBean top = null;
+        for (int level = depth; level > 0; level--) {
+            ChainBean bean = new ChainBean();
+            bean.setId(BigInteger.valueOf(level));
+            bean.setMask(level);
+            bean.setName(ChainBean.class.getSimpleName() + level);
+            bean.setInnerEntity(top);
+            bean.setEntityList(new ArrayList<>(Collections.singletonList(bean)));
+            bean.setEntitySet(new HashSet<>(Collections.singleton(bean)));
+            bean.setEntityMap(new HashMap<>(Collections.singletonMap(bean, bean)));
+            top = bean;
+        }
+        return top;
+    }
+
+    /**
+     * Creates list of flat beans
+     *
+     * @param size Number of elements
+     * @return Mutable list
+     */
+    public static List<FlatBean> list(int size) {
+        List<FlatBean> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(flatBean(i));
+        }
+        return list;
+    }
+
+    /**
+     * Creates set of strings
+     *
+     * @param size Number of elements
+     * @return Mutable set
+     */
+    public static Set<String> set(int size) {
+        Set<String> set = new HashSet<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            set.add(String.valueOf(i));
+        }
+        return set;
+    }
+
+    /**
+     * Creates map of flat beans keyed by their names
+     *
+     * @param size Number of entries
+     * @return Mutable map
+     */
+    public static Map<String, FlatBean> map(int size) {
+        Map<String, FlatBean> map = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            FlatBean bean = flatBean(i);
+            map.put(bean.getName(), bean);
+        }
+        return map;
+    }
+
+}
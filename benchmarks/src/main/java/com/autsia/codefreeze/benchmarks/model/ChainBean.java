@@ -0,0 +1,106 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.benchmarks.model;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ChainBean {
+
+    private BigInteger id;
+    private int mask;
+    private String name;
+    private ChainBean innerEntity;
+    private Map<ChainBean, ChainBean> entityMap;
+    private List<ChainBean> entityList;
+    private Set<ChainBean> entitySet;
+
+    public BigInteger getId() {
+        return id;
+    }
+
+    public void setId(BigInteger id) {
+        this.id = id;
+    }
+
+    public int getMask() {
+        return mask;
+    }
+
+    public void setMask(int mask) {
+        this.mask = mask;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public ChainBean getInnerEntity() {
+        return innerEntity;
+    }
+
+    public void setInnerEntity(ChainBean innerEntity) {
+        this.innerEntity = innerEntity;
+    }
+
+    public Map<ChainBean, ChainBean> getEntityMap() {
+        return entityMap;
+    }
+
+    public void setEntityMap(Map<ChainBean, ChainBean> entityMap) {
+        this.entityMap = entityMap;
+    }
+
+    public List<ChainBean> getEntityList() {
+        return entityList;
+    }
+
+    public void setEntityList(List<ChainBean> entityList) {
+        this.entityList = entityList;
+    }
+
+    public Set<ChainBean> getEntitySet() {
+        return entitySet;
+    }
+
+    public void setEntitySet(Set<ChainBean> entitySet) {
+        this.entitySet = entitySet;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ChainBean that = (ChainBean) o;
+
+        return id != null ? id.equals(that.id) : that.id == null;
+
+    }
+
+    @Override
+    public int hashCode() {
+        return id != null ? id.hashCode() : 0;
+    }
+
+}
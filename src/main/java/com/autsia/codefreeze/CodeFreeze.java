@@ -30,6 +30,28 @@ public interface CodeFreeze {
      */
     <T> T freeze(T bean);
 
+    /**
+     * Copies input bean graph into immutable beans once. Unlike {@link #freeze(Object)}, getters of the copies
+     * are not intercepted and the source graph is not referenced by them.
+     *
+     * @param bean Bean to copy
+     * @param <T>  Bean type
+     * @return Immutable copy of bean
+     */
+    <T> T snapshot(T bean);
+
+    /**
+     * Converts input bean to immutable one, reusing objects of its previous immutable version, which are unchanged:
+     * their getters return the same values as getters of the new source objects do. New immutable objects are
+     * created only along the changed paths of the graph.
+     *
+     * @param previous Previous immutable version of bean, may be null
+     * @param bean     Bean to make immutable
+     * @param <T>      Bean type
+     * @return Immutable version of bean, previous version itself if nothing changed
+     */
+    <T> T refreeze(T previous, T bean);
+
     /**
      * Checks if type can by proxified by CGLIB
      *
@@ -0,0 +1,30 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks bean for build-time generation of its immutable wrapper,
+ * which is used by {@link com.autsia.codefreeze.impl.GeneratedCodeFreeze} instead of runtime CGLIB proxy.
+ * Annotated type has to be non-final top-level or static nested class with non-private parameterless constructor.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface Freezable {
+}
@@ -0,0 +1,196 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.collections.FrozenListView;
+
+import java.lang.reflect.Array;
+import java.nio.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Arrays can't be made immutable, so getters of frozen beans return copies of arrays: primitive arrays are copied
+ * as is, elements of object arrays are frozen. Parameterless getters copy the array once and return its clones.
+ * Read-only views below wrap arrays without copying or boxing, either the arrays returned by getters of frozen beans
+ * or the ones of the beans which expose large arrays through view getters instead.
+ */
+public final class FrozenArrays {
+
+    // Set while getter is called for a view, so that the frozen array is returned to the view instead of its clone
+    private static final ThreadLocal<Boolean> VIEWING = new ThreadLocal<>();
+
+    private FrozenArrays() {
+    }
+
+    /**
+     * Copies array, freezing elements of object arrays
+     *
+     * @param array      Array to copy
+     * @param codeFreeze CodeFreeze service to be used for freezing of elements
+     * @param <T>        Array type
+     * @return Copy of array or null if array is null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T copy(T array, CodeFreeze codeFreeze) {
+        if (array == null) {
+            return null;
+        }
+        Class<?> componentType = array.getClass().getComponentType();
+        int length = Array.getLength(array);
+        T copy = (T) Array.newInstance(componentType, length);
+        if (componentType.isPrimitive()) {
+            System.arraycopy(array, 0, copy, 0, length);
+        } else {
+            Object[] source = (Object[]) array;
+            Object[] target = (Object[]) copy;
+            for (int i = 0; i < length; i++) {
+                target[i] = codeFreeze.freeze(source[i]);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Clones array, which elements are frozen already: shallow copy of the array, which {@link #copy} has returned.
+     * Getters called by {@link #view(Object, Function, Function)} get the array itself.
+     *
+     * @param array Array to clone
+     * @param <T>   Array type
+     * @return Clone of array or null if array is null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T clone(T array) {
+        if (array == null || VIEWING.get() != null) {
+            return array;
+        }
+        int length = Array.getLength(array);
+        T clone = (T) Array.newInstance(array.getClass().getComponentType(), length);
+        System.arraycopy(array, 0, clone, 0, length);
+        return clone;
+    }
+
+    /**
+     * Wraps array returned by getter of frozen bean or snapshot into read-only view, without copying it,
+     * e.g. {@code FrozenArrays.view(frozenBean, Bean::getPayload, FrozenArrays::view)}
+     *
+     * @param bean   Frozen bean or snapshot
+     * @param getter Getter returning array, which frozen bean memoizes
+     * @param view   Function wrapping array into read-only view, it must not let the array itself escape
+     * @param <B>    Bean type
+     * @param <A>    Array type
+     * @param <V>    View type
+     * @return Read-only view of the frozen array
+     */
+    public static <B, A, V> V view(B bean, Function<? super B, A> getter, Function<? super A, V> view) {
+        Boolean viewing = VIEWING.get();
+        VIEWING.set(Boolean.TRUE);
+        A array;
+        try {
+            array = getter.apply(bean);
+        } finally {
+            if (viewing == null) {
+                VIEWING.remove();
+            }
+        }
+        return view.apply(array);
+    }
+
+    /**
+     * Wraps array into immutable list, which freezes elements lazily, on first access
+     *
+     * @param array      Array to wrap, it's not copied
+     * @param codeFreeze CodeFreeze service to be used for freezing of elements
+     * @param <E>        Element type
+     * @return Immutable list view
+     */
+    public static <E> List<E> view(E[] array, CodeFreeze codeFreeze) {
+        return new FrozenListView<>(codeFreeze, Arrays.asList(array));
+    }
+
+    /**
+     * Wraps array into read-only buffer
+     *
+     * @param array Array to wrap, it's not copied
+     * @return Read-only buffer
+     */
+    public static ByteBuffer view(byte[] array) {
+        return ByteBuffer.wrap(array).asReadOnlyBuffer();
+    }
+
+    /**
+     * Wraps array into read-only buffer
+     *
+     * @param array Array to wrap, it's not copied
+     * @return Read-only buffer
+     */
+    public static CharBuffer view(char[] array) {
+        return CharBuffer.wrap(array).asReadOnlyBuffer();
+    }
+
+    /**
+     * Wraps array into read-only buffer
+     *
+     * @param array Array to wrap, it's not copied
+     * @return Read-only buffer
+     */
+    public static ShortBuffer view(short[] array) {
+        return ShortBuffer.wrap(array).asReadOnlyBuffer();
+    }
+
+    /**
+     * Wraps array into read-only buffer
+     *
+     * @param array Array to wrap, it's not copied
+     * @return Read-only buffer
+     */
+    public static IntBuffer view(int[] array) {
+        return IntBuffer.wrap(array).asReadOnlyBuffer();
+    }
+
+    /**
+     * Wraps array into read-only buffer
+     *
+     * @param array Array to wrap, it's not copied
+     * @return Read-only buffer
+     */
+    public static LongBuffer view(long[] array) {
+        return LongBuffer.wrap(array).asReadOnlyBuffer();
+    }
+
+    /**
+     * Wraps array into read-only buffer
+     *
+     * @param array Array to wrap, it's not copied
+     * @return Read-only buffer
+     */
+    public static FloatBuffer view(float[] array) {
+        return FloatBuffer.wrap(array).asReadOnlyBuffer();
+    }
+
+    /**
+     * Wraps array into read-only buffer
+     *
+     * @param array Array to wrap, it's not copied
+     * @return Read-only buffer
+     */
+    public static DoubleBuffer view(double[] array) {
+        return DoubleBuffer.wrap(array).asReadOnlyBuffer();
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.generated;
+
+import com.autsia.codefreeze.CodeFreeze;
+
+/**
+ * Factory of immutable wrappers generated for {@link com.autsia.codefreeze.Freezable} beans.
+ * Implementations are generated by the annotation processor and registered as services.
+ *
+ * @param <T> Bean type
+ */
+public interface FrozenWrapperFactory<T> {
+
+    /**
+     * Returns type of beans this factory wraps
+     *
+     * @return Bean type
+     */
+    Class<T> getType();
+
+    /**
+     * Wraps bean into immutable wrapper
+     *
+     * @param bean       Bean to make immutable
+     * @param codeFreeze CodeFreeze service used for freezing of objects returned by getters
+     * @return Immutable version of bean
+     */
+    T newInstance(T bean, CodeFreeze codeFreeze);
+
+}
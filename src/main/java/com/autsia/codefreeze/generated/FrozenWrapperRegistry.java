@@ -0,0 +1,70 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.generated;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Registry of factories of generated immutable wrappers, discovered with {@link ServiceLoader}
+ */
+public class FrozenWrapperRegistry {
+
+    private final Map<Class<?>, FrozenWrapperFactory<?>> factories = new HashMap<>();
+
+    /**
+     * Initializes FrozenWrapperRegistry with factories visible from the class loader
+     *
+     * @param classLoader Class loader to look up factories in
+     */
+    public FrozenWrapperRegistry(ClassLoader classLoader) {
+        Iterator<FrozenWrapperFactory> iterator = ServiceLoader.load(FrozenWrapperFactory.class, classLoader).iterator();
+        while (hasNext(iterator)) {
+            try {
+                FrozenWrapperFactory<?> factory = iterator.next();
+                factories.put(factory.getType(), factory);
+            } catch (ServiceConfigurationError e) {
+                // Factories which fail to load (e.g. stale registry entries) are skipped, their beans get CGLIB proxies
+            }
+        }
+    }
+
+    private static boolean hasNext(Iterator<?> iterator) {
+        try {
+            return iterator.hasNext();
+        } catch (ServiceConfigurationError e) {
+            // Registry can't be read any further
+            return false;
+        }
+    }
+
+    /**
+     * Returns factory of wrappers generated exactly for the type
+     *
+     * @param type Bean type
+     * @param <T>  Bean type
+     * @return Factory or null if there's no generated wrapper for the type
+     */
+    @SuppressWarnings("unchecked")
+    public <T> FrozenWrapperFactory<T> getFactory(Class<T> type) {
+        return (FrozenWrapperFactory<T>) factories.get(type);
+    }
+
+}
@@ -17,142 +17,787 @@
 package com.autsia.codefreeze.impl;
 
 import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.Frozen;
+import com.autsia.codefreeze.FrozenArrays;
+import com.autsia.codefreeze.impl.callbacks.ArrayCopyingMethodInterceptor;
+import com.autsia.codefreeze.impl.cache.TypeCache;
 import com.autsia.codefreeze.impl.callbacks.DelegatingMethodInterceptor;
 import com.autsia.codefreeze.impl.callbacks.EqualsMethodInterceptor;
 import com.autsia.codefreeze.impl.callbacks.ExceptionMethodInterceptor;
 import com.autsia.codefreeze.impl.callbacks.FreezingMethodInterceptor;
+import com.autsia.codefreeze.impl.callbacks.HashCodeMethodInterceptor;
+import com.autsia.codefreeze.impl.callbacks.TransientFreezingMethodInterceptor;
+import com.autsia.codefreeze.impl.collections.FrozenDeque;
+import com.autsia.codefreeze.impl.collections.FrozenIterator;
+import com.autsia.codefreeze.impl.collections.FrozenListDeque;
+import com.autsia.codefreeze.impl.collections.FrozenListView;
+import com.autsia.codefreeze.impl.collections.FrozenMapView;
+import com.autsia.codefreeze.impl.collections.FrozenNavigableMapView;
+import com.autsia.codefreeze.impl.collections.FrozenNavigableSetView;
+import com.autsia.codefreeze.impl.collections.FrozenPlaceholders;
+import com.autsia.codefreeze.impl.collections.FrozenPlaceholders.Placeholder;
+import com.autsia.codefreeze.impl.collections.FrozenSetView;
 import com.autsia.codefreeze.impl.filters.ImmutabilityCallbackFilter;
+import com.autsia.codefreeze.impl.metrics.FreezeListener;
+import com.autsia.codefreeze.impl.metrics.ObservableCodeFreeze;
+import com.autsia.codefreeze.impl.parallel.ParallelFreezeTask;
+import com.autsia.codefreeze.impl.prewarm.PackageScanner;
+import com.autsia.codefreeze.impl.prewarm.PrewarmResult;
+import com.autsia.codefreeze.impl.proxy.FrozenProxyFactory;
+import com.autsia.codefreeze.impl.proxy.FrozenProxyGeneratorStrategy;
+import com.autsia.codefreeze.impl.proxy.FrozenProxyNamingPolicy;
+import com.autsia.codefreeze.impl.proxy.ProxyClassCache;
+import com.autsia.codefreeze.impl.proxy.ProxyInstantiator;
+import com.autsia.codefreeze.impl.refreeze.RefreezeSession;
+import com.autsia.codefreeze.impl.snapshot.SnapshotFactory;
+import com.autsia.codefreeze.impl.snapshot.SnapshotSession;
+import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Ordering;
 import net.sf.cglib.proxy.Callback;
 import net.sf.cglib.proxy.Enhancer;
-import net.sf.cglib.proxy.Factory;
 
-import java.lang.reflect.Modifier;
+import java.lang.reflect.*;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
 
 /**
  * CGLIB-based implementation
  */
-public class CGLIBCodeFreeze implements CodeFreeze {
+public class CGLIBCodeFreeze implements ObservableCodeFreeze {
 
-    private ConcurrentHashMap<Class, Factory> factories = new ConcurrentHashMap<>();
-    private ConcurrentHashMap<Class, Boolean> enhanceableMap = new ConcurrentHashMap<>();
+    // Callbacks keep no per-bean state: they take it from the fields generated on the proxy
+    private static final EqualsMethodInterceptor EQUALS_CALLBACK = new EqualsMethodInterceptor();
+    private static final DelegatingMethodInterceptor DELEGATING_CALLBACK = new DelegatingMethodInterceptor();
+    private static final ArrayCopyingMethodInterceptor ARRAY_CALLBACK = new ArrayCopyingMethodInterceptor();
+    private static final TransientFreezingMethodInterceptor TRANSIENT_FREEZING_CALLBACK = new TransientFreezingMethodInterceptor();
+    private static final ExceptionMethodInterceptor EXCEPTION_CALLBACK = new ExceptionMethodInterceptor();
+    // Placeholders of the freezing call running in the current thread, shared with its parallel workers only
+    private static final ThreadLocal<ConcurrentMap<Object, Placeholder>> PLACEHOLDERS = new ThreadLocal<>();
+
+    // Caches don't retain classes, so that classes of redeployed applications and their proxies can be unloaded.
+    // Cached values don't retain this instance either, it's referenced by proxies only.
+    private final TypeCache<FrozenProxyFactory> factories = new TypeCache<>(this::createFactory);
+    private final TypeCache<SnapshotFactory> snapshotFactories = new TypeCache<>(SnapshotFactory::new);
+    private final TypeCache<Boolean> enhanceableCache = new TypeCache<>(
+            type -> isContainer(type) || !Modifier.isFinal(type.getModifiers()) && isInstantiable(type));
+    private final ConcurrentMap<Object, Object> globalIdentities = newIdentityMap();
+    private final Set<Class<?>> immutableTypes = ConcurrentHashMap.newKeySet();
+    private boolean lazyCollections;
+    private IdentityScope identityScope = IdentityScope.NONE;
+    private Executor prewarmExecutor = ForkJoinPool.commonPool();
+    private int parallelismThreshold;
+    private ForkJoinPool freezingPool = ForkJoinPool.commonPool();
+    private ProxyClassCache classCache;
+    private volatile FreezeListener listener;
 
     /**
      * {@inheritDoc}
      */
     public <T> T freeze(T bean) {
+        if (bean == null || isFrozen(bean)) {
+            return bean;
+        }
+
+        switch (identityScope) {
+            case SESSION:
+                return new FreezeSession().freeze(bean);
+            case GLOBAL:
+                return freeze(bean, this, globalIdentities);
+            default:
+                return freeze(bean, this, null);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> T snapshot(T bean) {
         if (bean == null) {
             return null;
         }
+        return new SnapshotSession(this, snapshotFactories::get).snapshot(bean);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> T refreeze(T previous, T bean) {
+        if (bean == null || isFrozen(bean)) {
+            return bean;
+        }
+        // Values are strong, so that objects shared with the previous version outlive it, until getters memoize them
+        FreezeSession session = new FreezeSession(new MapMaker().weakKeys().makeMap());
+        return new RefreezeSession(session, this::isFrozen, session.identities).refreeze(previous, bean);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isEnhanceable(Class<?> type) {
+        return enhanceableCache.get(type);
+    }
+
+    /**
+     * Registers type, which instances are immutable, so that they are returned by freezing as is.
+     * Strings, boxed primitives, enums and other immutable JDK types are registered already.
+     * Registered types are retained by the registry.
+     *
+     * @param type Immutable type, subclasses are not considered immutable
+     */
+    public void registerImmutableType(Class<?> type) {
+        immutableTypes.add(type);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public FreezeListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Sets listener of freezing events, e.g. {@link com.autsia.codefreeze.impl.metrics.FreezeMetrics}
+     *
+     * @param listener Freeze listener, null to disable notifications (default)
+     */
+    public void setListener(FreezeListener listener) {
+        this.listener = listener;
+    }
+
+    public boolean isLazyCollections() {
+        return lazyCollections;
+    }
+
+    /**
+     * Switches between eager and lazy freezing of lists, sets and maps. Eager mode copies the collection into Guava
+     * immutable one, freezing every element up front. Lazy mode wraps the collection into immutable view, which
+     * freezes every element on first access only, so the source collection shouldn't be modified after freezing.
+     *
+     * @param lazyCollections True to freeze collections lazily, false to copy them eagerly (default)
+     */
+    public void setLazyCollections(boolean lazyCollections) {
+        this.lazyCollections = lazyCollections;
+    }
+
+    public IdentityScope getIdentityScope() {
+        return identityScope;
+    }
+
+    /**
+     * Defines whether the same source object is frozen to the same immutable instance. Identity preserving scopes
+     * make shared objects frozen only once and let eagerly frozen cyclic graphs refer to themselves.
+     *
+     * @param identityScope Bounds of identity preservation, {@link IdentityScope#NONE} by default
+     */
+    public void setIdentityScope(IdentityScope identityScope) {
+        this.identityScope = identityScope;
+    }
+
+    public Executor getPrewarmExecutor() {
+        return prewarmExecutor;
+    }
+
+    /**
+     * Sets executor which generates classes of proxies in parallel during prewarming
+     *
+     * @param prewarmExecutor Executor, common fork-join pool by default
+     */
+    public void setPrewarmExecutor(Executor prewarmExecutor) {
+        this.prewarmExecutor = prewarmExecutor;
+    }
+
+    public int getParallelismThreshold() {
+        return parallelismThreshold;
+    }
+
+    /**
+     * Enables parallel eager freezing of large lists, sets and maps: elements of collections which have at least
+     * that many elements are frozen concurrently on the freezing pool, the order of elements is preserved.
+     *
+     * @param parallelismThreshold Minimum size of collection to be frozen in parallel, 0 to freeze sequentially (default)
+     */
+    public void setParallelismThreshold(int parallelismThreshold) {
+        if (parallelismThreshold < 0) {
+            throw new IllegalArgumentException("Parallelism threshold can't be negative: " + parallelismThreshold);
+        }
+        this.parallelismThreshold = parallelismThreshold;
+    }
+
+    public ForkJoinPool getFreezingPool() {
+        return freezingPool;
+    }
+
+    /**
+     * Sets pool which freezes elements of large collections in parallel
+     *
+     * @param freezingPool Fork/join pool, common pool by default
+     * @see #setParallelismThreshold(int)
+     */
+    public void setFreezingPool(ForkJoinPool freezingPool) {
+        this.freezingPool = freezingPool;
+    }
+
+    public Path getClassCacheDirectory() {
+        return classCache != null ? classCache.getDirectory() : null;
+    }
+
+    public int getMaximumCacheSize() {
+        return factories.getMaximumSize();
+    }
+
+    /**
+     * Bounds number of types, which proxy factories and enhanceability are cached for. Types cached first
+     * are evicted first and get their factories created again on the next freezing. Caches are cleared.
+     *
+     * @param maximumCacheSize Maximum number of cached types, 0 for unbounded caches (default)
+     */
+    public void setMaximumCacheSize(int maximumCacheSize) {
+        factories.setMaximumSize(maximumCacheSize);
+        snapshotFactories.setMaximumSize(maximumCacheSize);
+        enhanceableCache.setMaximumSize(maximumCacheSize);
+    }
 
+    /**
+     * Enables persistent cache of generated proxy classes, so that later JVM runs define them from disk
+     * instead of generating them again. Cached classes are keyed by bytecode of proxified classes
+     * and library version, so stale entries are never used.
+     *
+     * @param classCacheDirectory Cache directory, null to disable the cache (default)
+     */
+    public void setClassCacheDirectory(Path classCacheDirectory) {
+        this.classCache = classCacheDirectory != null ? new ProxyClassCache(classCacheDirectory) : null;
+    }
+
+    /**
+     * Generates proxy factories up front, so that the first freezing of these types doesn't pay for class generation.
+     * Types reachable through getters, including element types of collections and maps, are prewarmed as well.
+     *
+     * @param types Types to be frozen later
+     * @return Prewarmed types and time it took
+     */
+    public PrewarmResult prewarm(Collection<Class<?>> types) {
+        long start = System.nanoTime();
+        Set<Class<?>> closure = getReachableTypes(types);
+        CompletableFuture<?>[] futures = closure.stream()
+                .map(type -> CompletableFuture.runAsync(() -> {
+                    try {
+                        prewarmType(type);
+                    } catch (InstantiationException | IllegalAccessException e) {
+                        throw new RuntimeException(e);
+                    }
+                }, prewarmExecutor))
+                .toArray(CompletableFuture[]::new);
         try {
-            if (bean instanceof List) {
-                return proxifyList((List) bean);
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        return new PrewarmResult(closure, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Prewarms every class of the package and its subpackages, visible from the context class loader
+     *
+     * @param packageName Package name, e.g. com.example.model
+     * @return Prewarmed types and time it took
+     * @see #prewarm(Collection)
+     */
+    public PrewarmResult prewarmPackage(String packageName) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return prewarm(new PackageScanner(classLoader != null ? classLoader : getClass().getClassLoader()).scan(packageName));
+    }
+
+    /**
+     * Generates whatever is needed for freezing of type's instances
+     *
+     * @param type Type to prewarm, which is enhanceable and is neither collection nor map
+     */
+    protected void prewarmType(Class<?> type) throws IllegalAccessException, InstantiationException {
+        getFactory(type);
+    }
+
+    private Set<Class<?>> getReachableTypes(Collection<Class<?>> types) {
+        Set<Class<?>> reachable = new LinkedHashSet<>();
+        // Containers are walked but not reachable, so every walked type is remembered separately
+        Set<Class<?>> visited = new HashSet<>();
+        Deque<Class<?>> queue = new ArrayDeque<>(types);
+        while (!queue.isEmpty()) {
+            Class<?> type = queue.poll();
+            if (!visited.add(type) || !isEnhanceable(type)) {
+                continue;
+            }
+            if (!isContainer(type)) {
+                reachable.add(type);
             }
+            for (Method method : type.getMethods()) {
+                String name = method.getName();
+                if (method.getParameterCount() == 0 && (name.startsWith("get") || name.startsWith("is"))
+                        && method.getDeclaringClass() != Object.class) {
+                    collectClasses(method.getGenericReturnType(), queue);
+                }
+            }
+        }
+        return reachable;
+    }
 
-            if (bean instanceof Set) {
-                return proxifySet((Set) bean);
+    private static void collectClasses(Type type, Collection<Class<?>> classes) {
+        if (type instanceof Class) {
+            Class<?> rawType = (Class<?>) type;
+            if (rawType.isArray()) {
+                collectClasses(rawType.getComponentType(), classes);
+            } else if (!rawType.isPrimitive()) {
+                classes.add(rawType);
             }
+        } else if (type instanceof ParameterizedType) {
+            collectClasses(((ParameterizedType) type).getRawType(), classes);
+            for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+                collectClasses(argument, classes);
+            }
+        } else if (type instanceof GenericArrayType) {
+            collectClasses(((GenericArrayType) type).getGenericComponentType(), classes);
+        } else if (type instanceof WildcardType) {
+            for (Type bound : ((WildcardType) type).getUpperBounds()) {
+                collectClasses(bound, classes);
+            }
+        }
+    }
+
+    /**
+     * Freezes bean within particular context
+     *
+     * @param bean       Bean to make immutable
+     * @param context    CodeFreeze service to be used for freezing of nested objects
+     * @param identities Source objects mapped to immutable ones, null if identity is not preserved
+     * @param <T>        Bean type
+     * @return Immutable version of bean
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T freeze(T bean, CodeFreeze context, ConcurrentMap<Object, Object> identities) {
+        if (bean == null || isFrozen(bean)) {
+            return bean;
+        }
 
-            if (bean instanceof Map) {
-                return proxifyMap((Map) bean);
+        ConcurrentMap<Object, Placeholder> placeholders = null;
+        Placeholder placeholder = null;
+        boolean ownsPlaceholders = false;
+        if (identities != null) {
+            Object frozen = identities.get(bean);
+            if (frozen != null) {
+                return (T) frozen;
             }
+            if (isEagerCollection(bean)) {
+                // Elements referring back to the collection get the placeholder instead of freezing it again.
+                // Placeholders are not registered as identities until resolved, so other freezing calls don't get them
+                placeholders = PLACEHOLDERS.get();
+                if (placeholders == null) {
+                    placeholders = new MapMaker().weakKeys().makeMap();
+                    PLACEHOLDERS.set(placeholders);
+                    ownsPlaceholders = true;
+                }
+                Placeholder pending = placeholders.putIfAbsent(bean, placeholder = FrozenPlaceholders.of(bean));
+                if (pending != null) {
+                    pending.reference();
+                    return (T) pending;
+                }
+            }
+        }
 
-            return proxifyBean(bean);
+        T frozen;
+        boolean proxied = false;
+        try {
+            // Queues go first: lists like LinkedList are deques as well, and getters may return them as such
+            if (bean instanceof Queue) {
+                frozen = proxifyQueue((Queue) bean, context, identities);
+            } else if (bean instanceof List) {
+                frozen = proxifyList((List) bean, context, identities);
+            } else if (bean instanceof Set) {
+                frozen = proxifySet((Set) bean, context, identities);
+            } else if (bean instanceof Map) {
+                frozen = proxifyMap((Map) bean, context, identities);
+            } else if (bean instanceof Optional) {
+                frozen = (T) ((Optional<?>) bean).map(value -> freeze(value, context, identities));
+            } else if (bean instanceof Stream) {
+                frozen = (T) ((Stream<?>) bean).map(element -> freeze(element, context, identities));
+            } else if (bean instanceof Iterator) {
+                frozen = (T) new FrozenIterator<Object>(element -> freeze(element, context, identities), (Iterator<Object>) bean);
+            } else if (bean.getClass().isArray()) {
+                frozen = FrozenArrays.copy(bean, context);
+            } else {
+                frozen = proxifyBean(bean, context);
+                proxied = true;
+            }
         } catch (InstantiationException | IllegalAccessException e) {
             throw new RuntimeException(e);
+        } finally {
+            if (placeholder != null) {
+                placeholders.remove(bean);
+                if (ownsPlaceholders) {
+                    PLACEHOLDERS.remove();
+                }
+            }
         }
+
+        FreezeListener freezeListener = listener;
+        if (freezeListener != null && frozen != bean) {
+            if (bean instanceof Collection) {
+                freezeListener.onCollectionFrozen(((Collection) bean).size());
+            } else if (bean instanceof Map) {
+                freezeListener.onCollectionFrozen(((Map) bean).size());
+            } else if (proxied) {
+                // Optionals, streams, iterators and arrays are not proxies of the bean
+                freezeListener.onProxyCreated(bean.getClass());
+            }
+        }
+
+        if (placeholder != null) {
+            placeholder.resolve(frozen);
+            if (placeholder.isReferenced()) {
+                // Collection is a part of the cycle: the placeholder stands for it, so the cycle consists of one instance
+                frozen = (T) placeholder;
+            }
+        }
+        if (identities != null && frozen != bean) {
+            // Concurrent freezing of the same object could have already registered another immutable instance
+            Object previous = identities.putIfAbsent(bean, frozen);
+            if (previous != null) {
+                return (T) previous;
+            }
+        }
+        return frozen;
     }
 
     /**
-     * {@inheritDoc}
+     * Checks if collection is frozen together with its elements, rather than into lazy view
      */
-    public boolean isEnhanceable(Class<?> type) {
-        if (enhanceableMap.containsKey(type)) {
-            return enhanceableMap.get(type);
+    private boolean isEagerCollection(Object bean) {
+        if (bean instanceof Queue) {
+            return true;
+        }
+        if (bean instanceof List) {
+            return !lazyCollections;
+        }
+        if (bean instanceof Set || bean instanceof Map) {
+            // Sorted collections which aren't navigable are copied even in lazy mode
+            return !lazyCollections || bean instanceof SortedSet && !(bean instanceof NavigableSet)
+                    || bean instanceof SortedMap && !(bean instanceof NavigableMap);
+        }
+        return false;
+    }
+
+    /**
+     * Checks if object doesn't need freezing: it's frozen already, it's immutable or it's Guava immutable collection
+     * of such objects. Checking elements of immutable collection is still cheaper than its copying.
+     */
+    private boolean isFrozen(Object bean) {
+        if (bean instanceof Frozen || ImmutableTypes.isImmutable(bean.getClass())
+                || !immutableTypes.isEmpty() && immutableTypes.contains(bean.getClass())) {
+            return true;
         }
-        boolean isEnhanceable = !Modifier.isFinal(type.getModifiers()) && hasParameterlessConstructor(type);
-        enhanceableMap.putIfAbsent(type, isEnhanceable);
-        return isEnhanceable;
+        if (bean instanceof ImmutableCollection) {
+            for (Object element : (ImmutableCollection<?>) bean) {
+                if (!isFrozen(element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (bean instanceof ImmutableMap) {
+            for (Map.Entry<?, ?> entry : ((ImmutableMap<?, ?>) bean).entrySet()) {
+                if (!isFrozen(entry.getKey()) || !isFrozen(entry.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
     }
 
-    private boolean hasParameterlessConstructor(Class<?> returnType) {
-        return Collection.class.isAssignableFrom(returnType)
-                || Map.class.isAssignableFrom(returnType)
-                || Arrays.stream(returnType.getConstructors()).anyMatch(c -> c.getGenericParameterTypes().length == 0);
+    private static ConcurrentMap<Object, Object> newIdentityMap() {
+        // Weak keys are compared by identity, weak values let the entry go as soon as immutable instance is unused
+        return new MapMaker().weakKeys().weakValues().makeMap();
     }
 
+    /**
+     * Checks if type is frozen as container of other objects rather than proxified
+     *
+     * @param type Type to check
+     * @return True for collections, maps, optionals, streams and iterators
+     */
+    private static boolean isContainer(Class<?> type) {
+        return Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)
+                || type == Optional.class || type == Stream.class || type == Iterator.class;
+    }
+
+    /**
+     * Tells whether instances of the subclass of type can be created. Proxies are created without running
+     * constructors, unless the JVM doesn't allow to bypass them.
+     *
+     * @param type Non-final type
+     * @return true if the type has suitable constructor
+     * @see InstantiableTypes#isInstantiable(Class, boolean)
+     */
+    protected boolean isInstantiable(Class<?> type) {
+        return InstantiableTypes.isInstantiable(type, ProxyInstantiator.isAvailable());
+    }
 
     @SuppressWarnings("unchecked")
-    private <T> T proxifyList(List list) throws InstantiationException, IllegalAccessException {
+    private <T> T proxifyList(List list, CodeFreeze context, ConcurrentMap<Object, Object> identities)
+            throws InstantiationException, IllegalAccessException {
+        if (lazyCollections) {
+            return (T) new FrozenListView<>(context, list);
+        }
+        if (isParallel(list.size())) {
+            return (T) ImmutableList.copyOf(freezeAll(list.toArray(), context, identities));
+        }
         ImmutableList.Builder<Object> builder = ImmutableList.builder();
-        list.stream().forEach(bean -> builder.add(freeze(bean)));
+        list.stream().forEach(bean -> builder.add(freeze(bean, context, identities)));
         return (T) builder.build();
     }
 
     @SuppressWarnings("unchecked")
-    private <T> T proxifySet(Set set) throws InstantiationException, IllegalAccessException {
-        ImmutableSet.Builder<Object> builder = ImmutableSet.builder();
-        set.stream().forEach(bean -> builder.add(freeze(bean)));
+    private <T> T proxifySet(Set set, CodeFreeze context, ConcurrentMap<Object, Object> identities)
+            throws InstantiationException, IllegalAccessException {
+        if (lazyCollections) {
+            if (set instanceof NavigableSet) {
+                return (T) new FrozenNavigableSetView<>(context, (NavigableSet) set);
+            }
+            if (!(set instanceof SortedSet)) {
+                return (T) new FrozenSetView<>(context, set);
+            }
+        }
+        // Sorted sets keep their comparator, Guava sorted sets are navigable with logarithmic range queries
+        ImmutableSet.Builder<Object> builder = set instanceof SortedSet
+                ? new ImmutableSortedSet.Builder<>(comparator(((SortedSet) set).comparator()))
+                : ImmutableSet.builder();
+        if (isParallel(set.size())) {
+            return (T) builder.add(freezeAll(set.toArray(), context, identities)).build();
+        }
+        set.stream().forEach(bean -> builder.add(freeze(bean, context, identities)));
         return (T) builder.build();
     }
 
     @SuppressWarnings("unchecked")
-    private <T> T proxifyMap(Map map) throws InstantiationException, IllegalAccessException {
-        ImmutableMap.Builder<Object, Object> builder = ImmutableMap.builder();
-        map.keySet().stream().forEach(key -> builder.put(freeze(key), freeze(map.get(key))));
+    private <T> T proxifyMap(Map map, CodeFreeze context, ConcurrentMap<Object, Object> identities)
+            throws InstantiationException, IllegalAccessException {
+        if (lazyCollections) {
+            if (map instanceof NavigableMap) {
+                return (T) new FrozenNavigableMapView<>(context, (NavigableMap) map);
+            }
+            if (!(map instanceof SortedMap)) {
+                return (T) new FrozenMapView<>(context, map);
+            }
+        }
+        ImmutableMap.Builder<Object, Object> builder = map instanceof SortedMap
+                ? new ImmutableSortedMap.Builder<>(comparator(((SortedMap) map).comparator()))
+                : ImmutableMap.builder();
+        if (isParallel(map.size())) {
+            // Keys and values are interleaved, so that both are frozen within the same pass
+            Object[] entries = new Object[map.size() * 2];
+            int i = 0;
+            for (Object entry : map.entrySet()) {
+                entries[i++] = ((Map.Entry) entry).getKey();
+                entries[i++] = ((Map.Entry) entry).getValue();
+            }
+            Object[] frozen = freezeAll(entries, context, identities);
+            for (i = 0; i < frozen.length; i += 2) {
+                builder.put(frozen[i], frozen[i + 1]);
+            }
+            return (T) builder.build();
+        }
+        map.keySet().stream().forEach(key -> builder.put(
+                freeze(key, context, identities), freeze(map.get(key), context, identities)));
         return (T) builder.build();
     }
 
+    /**
+     * Comparator of sorted collection or natural ordering for collections without comparator
+     */
+    @SuppressWarnings("unchecked")
+    private static Comparator<Object> comparator(Comparator<?> comparator) {
+        return comparator != null ? (Comparator<Object>) comparator : (Comparator) Ordering.natural();
+    }
+
     @SuppressWarnings("unchecked")
-    private <T> T proxifyBean(T bean) throws IllegalAccessException, InstantiationException {
+    private <T> T proxifyQueue(Queue queue, CodeFreeze context, ConcurrentMap<Object, Object> identities) {
+        // Queues are copied eagerly even in lazy mode, their elements can't be accessed by index
+        if (queue instanceof List) {
+            ImmutableList.Builder<Object> builder = ImmutableList.builder();
+            queue.stream().forEach(bean -> builder.add(freeze(bean, context, identities)));
+            return (T) new FrozenListDeque<>(builder.build());
+        }
+        ArrayDeque<Object> elements = new ArrayDeque<>(queue.size());
+        queue.stream().forEach(bean -> elements.add(freeze(bean, context, identities)));
+        return (T) new FrozenDeque<>(elements);
+    }
+
+    private boolean isParallel(int size) {
+        return parallelismThreshold > 0 && size >= parallelismThreshold;
+    }
+
+    /**
+     * Freezes elements concurrently on the freezing pool. Caches of factories and identities are concurrent,
+     * so elements of the same type or the same elements can be frozen by different workers at once.
+     */
+    private Object[] freezeAll(Object[] beans, CodeFreeze context, ConcurrentMap<Object, Object> identities) {
+        Object[] frozen = new Object[beans.length];
+        // A few batches per worker let idle workers steal the rest of the work from busy ones
+        int batchSize = Math.max(1, beans.length / (freezingPool.getParallelism() * 4));
+        ConcurrentMap<Object, Placeholder> placeholders = PLACEHOLDERS.get();
+        freezingPool.invoke(new ParallelFreezeTask(beans, frozen, bean -> {
+            // Workers freeze on behalf of the current call, so they see its placeholders
+            ConcurrentMap<Object, Placeholder> previous = PLACEHOLDERS.get();
+            PLACEHOLDERS.set(placeholders);
+            try {
+                return freeze(bean, context, identities);
+            } finally {
+                if (previous == null) {
+                    PLACEHOLDERS.remove();
+                } else {
+                    PLACEHOLDERS.set(previous);
+                }
+            }
+        }, batchSize));
+        return frozen;
+    }
+
+    /**
+     * Creates immutable version of bean, which is neither collection nor map
+     *
+     * @param bean    Bean to make immutable
+     * @param context CodeFreeze service to be used for freezing of nested objects
+     * @param <T>     Bean type
+     * @return Immutable version of bean or bean itself if it can't be proxified
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> T proxifyBean(T bean, CodeFreeze context) throws IllegalAccessException, InstantiationException {
         if (!isEnhanceable(bean.getClass())) {
             return bean;
         }
-        Factory factory = getFactory(bean.getClass());
-        Callback[] callbacks = getCallbacks(bean);
-        T newInstance = (T) factory.newInstance(callbacks);
-        ExceptionMethodInterceptor exceptionCallback = (ExceptionMethodInterceptor) callbacks[1];
-        // By default the ExceptionMethodInterceptor is not active to allow calling setters in class constructor
-        // After class instance creation it should be immediately activated
-        exceptionCallback.setActive(true);
-        return newInstance;
+        FrozenProxyFactory factory = getFactory(bean.getClass());
+        return (T) factory.newInstance(bean, context);
     }
 
-    private <T> Callback[] getCallbacks(T bean) {
-        return new Callback[]{
-                new EqualsMethodInterceptor(bean),
-                new ExceptionMethodInterceptor(bean),
-                new DelegatingMethodInterceptor(bean),
-                new FreezingMethodInterceptor(this, bean)
-        };
+    private FrozenProxyFactory getFactory(Class<?> classToProxify) {
+        FreezeListener freezeListener = listener;
+        if (freezeListener != null) {
+            freezeListener.onFactoryLookup(classToProxify);
+        }
+        return factories.get(classToProxify);
     }
 
-    private Factory getFactory(Class<?> classToProxify) throws IllegalAccessException, InstantiationException {
-        if (factories.containsKey(classToProxify)) {
-            return factories.get(classToProxify);
+    /**
+     * Reports generation of class, which is not cached, to the listener
+     *
+     * @param type          Type, which immutable versions are created by the generated class
+     * @param durationNanos Time it took to generate class and create factory
+     */
+    protected void classGenerated(Class<?> type, long durationNanos) {
+        FreezeListener freezeListener = listener;
+        if (freezeListener != null) {
+            freezeListener.onClassGenerated(type, durationNanos);
         }
-        Factory factory = createFactory(classToProxify);
-        factories.putIfAbsent(classToProxify, factory);
+    }
+
+    private FrozenProxyFactory createFactory(Class<?> classToProxify) {
+        long start = System.nanoTime();
+        FrozenProxyFactory factory = generateFactory(classToProxify);
+        classGenerated(classToProxify, System.nanoTime() - start);
         return factory;
     }
 
-    private Factory createFactory(Class<?> classToProxify) throws IllegalAccessException, InstantiationException {
+    private FrozenProxyFactory generateFactory(Class<?> classToProxify) {
         Enhancer enhancer = new Enhancer();
+        ImmutabilityCallbackFilter callbackFilter = new ImmutabilityCallbackFilter(this, classToProxify);
+        String fingerprint = classCache != null ? ProxyClassCache.fingerprint(classToProxify, callbackFilter) : null;
+        if (fingerprint != null) {
+            FrozenProxyNamingPolicy namingPolicy = new FrozenProxyNamingPolicy(fingerprint);
+            enhancer.setNamingPolicy(namingPolicy);
+            enhancer.setStrategy(new FrozenProxyGeneratorStrategy(callbackFilter.getSlotsCount(), classCache, fingerprint, namingPolicy));
+        } else {
+            enhancer.setStrategy(new FrozenProxyGeneratorStrategy(callbackFilter.getSlotsCount()));
+        }
         enhancer.setSuperclass(classToProxify);
-        enhancer.setCallbackFilter(new ImmutabilityCallbackFilter(this, classToProxify));
-        enhancer.setCallbackTypes(new Class[]{
-                EqualsMethodInterceptor.class,
-                ExceptionMethodInterceptor.class,
-                DelegatingMethodInterceptor.class,
-                FreezingMethodInterceptor.class
-        });
+        // CGLIB fails to resolve the default class loader for types which come from non-system class loaders
+        enhancer.setClassLoader(classToProxify.getClassLoader());
+        enhancer.setCallbackFilter(callbackFilter);
+        enhancer.setCallbackTypes(callbackFilter.getCallbackTypes());
         Class proxyClass = enhancer.createClass();
-        return (Factory) proxyClass.newInstance();
+        return new FrozenProxyFactory(proxyClass, getCallbacks(proxyClass, callbackFilter));
+    }
+
+    private Callback[] getCallbacks(Class<?> proxyClass, ImmutabilityCallbackFilter callbackFilter) {
+        Callback[] callbacks = new Callback[callbackFilter.getCallbackTypes().length];
+        callbacks[ImmutabilityCallbackFilter.EQUALS_CALLBACK_INDEX] = EQUALS_CALLBACK;
+        callbacks[ImmutabilityCallbackFilter.EXCEPTION_CALLBACK_INDEX] = EXCEPTION_CALLBACK;
+        callbacks[ImmutabilityCallbackFilter.DELEGATING_CALLBACK_INDEX] = DELEGATING_CALLBACK;
+        callbacks[ImmutabilityCallbackFilter.ARRAY_CALLBACK_INDEX] = ARRAY_CALLBACK;
+        callbacks[ImmutabilityCallbackFilter.TRANSIENT_FREEZING_CALLBACK_INDEX] = TRANSIENT_FREEZING_CALLBACK;
+        callbacks[ImmutabilityCallbackFilter.HASH_CODE_CALLBACK_INDEX] = new HashCodeMethodInterceptor(proxyClass, callbackFilter.getHashCodeSlot());
+        for (int slot = 0; slot < callbackFilter.getFreezingSlotsCount(); slot++) {
+            callbacks[ImmutabilityCallbackFilter.FREEZING_CALLBACK_INDEX + slot] = new FreezingMethodInterceptor(proxyClass, slot);
+        }
+        return callbacks;
+    }
+
+    /**
+     * Freezing context which preserves identity of objects frozen within it, including the ones frozen lazily
+     */
+    private class FreezeSession implements ObservableCodeFreeze {
+
+        private final ConcurrentMap<Object, Object> identities;
+
+        private FreezeSession() {
+            this(newIdentityMap());
+        }
+
+        private FreezeSession(ConcurrentMap<Object, Object> identities) {
+            this.identities = identities;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public <T> T freeze(T bean) {
+            return CGLIBCodeFreeze.this.freeze(bean, this, identities);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public <T> T snapshot(T bean) {
+            return CGLIBCodeFreeze.this.snapshot(bean);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public <T> T refreeze(T previous, T bean) {
+            return CGLIBCodeFreeze.this.refreeze(previous, bean);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean isEnhanceable(Class<?> type) {
+            return CGLIBCodeFreeze.this.isEnhanceable(type);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public FreezeListener getListener() {
+            return listener;
+        }
+
     }
 
 }
@@ -0,0 +1,64 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl;
+
+import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.generated.FrozenWrapperFactory;
+import com.autsia.codefreeze.generated.FrozenWrapperRegistry;
+
+/**
+ * Implementation which uses immutable wrappers generated at build time for {@link com.autsia.codefreeze.Freezable}
+ * beans and falls back to CGLIB proxies for the rest of beans
+ */
+public class GeneratedCodeFreeze extends CGLIBCodeFreeze {
+
+    private final FrozenWrapperRegistry registry;
+
+    /**
+     * Initializes GeneratedCodeFreeze with wrappers visible from the context class loader
+     */
+    public GeneratedCodeFreeze() {
+        this(Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Initializes GeneratedCodeFreeze with wrappers visible from the class loader
+     *
+     * @param classLoader Class loader to look up generated wrappers in
+     */
+    public GeneratedCodeFreeze(ClassLoader classLoader) {
+        this.registry = new FrozenWrapperRegistry(classLoader);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected <T> T proxifyBean(T bean, CodeFreeze context) throws IllegalAccessException, InstantiationException {
+        FrozenWrapperFactory<T> factory = registry.getFactory((Class<T>) bean.getClass());
+        if (factory != null) {
+            return factory.newInstance(bean, context);
+        }
+        return super.proxifyBean(bean, context);
+    }
+
+    @Override
+    protected void prewarmType(Class<?> type) throws IllegalAccessException, InstantiationException {
+        if (registry.getFactory(type) == null) {
+            super.prewarmType(type);
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl;
+
+/**
+ * Defines within which bounds the same source object is always frozen to the same immutable instance
+ */
+public enum IdentityScope {
+
+    /**
+     * Every freezing creates new immutable instance
+     */
+    NONE,
+
+    /**
+     * Source object is frozen to the same immutable instance within the graph reachable from the bean passed to
+     * freeze(), including nested objects frozen lazily later on
+     */
+    SESSION,
+
+    /**
+     * Source object is frozen to the same immutable instance for as long as this instance is reachable
+     */
+    GLOBAL
+
+}
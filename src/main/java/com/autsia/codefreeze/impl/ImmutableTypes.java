@@ -0,0 +1,61 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Registry of JDK types, which instances are known to be immutable, so they are returned by freezing as is
+ */
+public final class ImmutableTypes {
+
+    private static final Set<Class<?>> TYPES = new HashSet<>(Arrays.asList(
+            String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class,
+            Float.class, Double.class, BigInteger.class, BigDecimal.class, UUID.class, Currency.class, Locale.class,
+            Class.class));
+
+    // ClassValue keeps computed values on classes themselves, so that classes are not retained by the registry
+    private static final ClassValue<Boolean> IMMUTABLE = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            // Subclasses of non-final types like BigInteger could be mutable, so only exact types are matched
+            return TYPES.contains(type) || Enum.class.isAssignableFrom(type)
+                    || type.getClassLoader() == null && type.getPackage() != null && "java.time".equals(type.getPackage().getName());
+        }
+    };
+
+    private ImmutableTypes() {
+    }
+
+    /**
+     * Checks if instances of type are immutable
+     *
+     * @param type Type to check
+     * @return True for strings, boxed primitives, BigInteger/BigDecimal, enums, value types of java.time and a few others
+     */
+    public static boolean isImmutable(Class<?> type) {
+        return IMMUTABLE.get(type);
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+
+/**
+ * Rule telling whether subclasses of a bean type can be instantiated, so that its instances are frozen into proxies.
+ * Shared by runtime backends and {@link com.autsia.codefreeze.processor.FreezableProcessor}, which sees the types
+ * as source elements rather than classes.
+ */
+public final class InstantiableTypes {
+
+    private InstantiableTypes() {
+    }
+
+    /**
+     * Checks if instances of the subclass of type can be created. When constructors are bypassed, any public or
+     * protected constructor will do. JDK types still need public parameterless constructor, as the ones without it
+     * (e.g. {@link java.math.BigInteger}) are rather values than beans.
+     *
+     * @param typeName                          Fully qualified name of non-final type
+     * @param hasPublicParameterlessConstructor True if the type declares public parameterless constructor
+     * @param hasAccessibleConstructor          True if the type declares any public or protected constructor
+     * @param constructorsBypassed              True if instances are created without running constructors
+     * @return true if the type has suitable constructor
+     */
+    public static boolean isInstantiable(String typeName, boolean hasPublicParameterlessConstructor,
+                                         boolean hasAccessibleConstructor, boolean constructorsBypassed) {
+        if (!constructorsBypassed || typeName.startsWith("java.")) {
+            return hasPublicParameterlessConstructor;
+        }
+        return hasAccessibleConstructor;
+    }
+
+    /**
+     * Runtime form of {@link #isInstantiable(String, boolean, boolean, boolean)}
+     *
+     * @param type                 Non-final type
+     * @param constructorsBypassed True if instances are created without running constructors
+     * @return true if the type has suitable constructor
+     */
+    public static boolean isInstantiable(Class<?> type, boolean constructorsBypassed) {
+        boolean hasPublicParameterlessConstructor = false;
+        boolean hasAccessibleConstructor = false;
+        for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+            int modifiers = constructor.getModifiers();
+            hasPublicParameterlessConstructor |= Modifier.isPublic(modifiers) && constructor.getParameterCount() == 0;
+            hasAccessibleConstructor |= Modifier.isPublic(modifiers) || Modifier.isProtected(modifiers);
+        }
+        return isInstantiable(type.getName(), hasPublicParameterlessConstructor, hasAccessibleConstructor, constructorsBypassed);
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl;
+
+import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.impl.cache.TypeCache;
+import com.autsia.codefreeze.impl.lambda.LambdaProxyFactory;
+import com.autsia.codefreeze.impl.lambda.LambdaProxyGenerator;
+import com.autsia.codefreeze.impl.metrics.FreezeListener;
+
+/**
+ * Implementation based on method handles and LambdaMetafactory: frozen beans are instances of generated subclasses,
+ * which call bean methods through constant accessors instead of CGLIB interceptors. Collections are frozen
+ * the same way {@link CGLIBCodeFreeze} does it.
+ */
+public class LambdaCodeFreeze extends CGLIBCodeFreeze {
+
+    private final LambdaProxyGenerator generator = new LambdaProxyGenerator(this);
+    private final TypeCache<LambdaProxyFactory> factories = new TypeCache<>(this::createFactory);
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected <T> T proxifyBean(T bean, CodeFreeze context) throws IllegalAccessException, InstantiationException {
+        if (!isEnhanceable(bean.getClass())) {
+            return bean;
+        }
+        return (T) getFactory(bean.getClass()).newInstance(bean, context);
+    }
+
+    /**
+     * Generated subclasses run parameterless constructor of the type
+     */
+    @Override
+    protected boolean isInstantiable(Class<?> type) {
+        return InstantiableTypes.isInstantiable(type, false);
+    }
+
+    @Override
+    protected void prewarmType(Class<?> type) {
+        getFactory(type);
+    }
+
+    @Override
+    public void setMaximumCacheSize(int maximumCacheSize) {
+        super.setMaximumCacheSize(maximumCacheSize);
+        factories.setMaximumSize(maximumCacheSize);
+    }
+
+    private LambdaProxyFactory getFactory(Class<?> classToProxify) {
+        FreezeListener listener = getListener();
+        if (listener != null) {
+            listener.onFactoryLookup(classToProxify);
+        }
+        return factories.get(classToProxify);
+    }
+
+    private LambdaProxyFactory createFactory(Class<?> classToProxify) {
+        long start = System.nanoTime();
+        LambdaProxyFactory factory = generator.generate(classToProxify);
+        classGenerated(classToProxify, System.nanoTime() - start);
+        return factory;
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl;
+
+import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.impl.cache.TypeCache;
+import com.autsia.codefreeze.impl.offheap.ArenaFile;
+import com.autsia.codefreeze.impl.offheap.ArenaWriter;
+import com.autsia.codefreeze.impl.offheap.FlyweightFactory;
+import com.autsia.codefreeze.impl.offheap.FlyweightGenerator;
+import com.autsia.codefreeze.impl.offheap.FlyweightView;
+import com.autsia.codefreeze.impl.offheap.OffHeapArena;
+import com.autsia.codefreeze.impl.proxy.ProxyInstantiator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Implementation which keeps frozen bean graphs off-heap: freezing writes the whole graph into the buffer and returns
+ * flyweight view of it. Getters of the view decode properties from the buffer on every call, views of nested beans
+ * are created on access and hold nothing but the buffer and the offset, so that frozen graphs are invisible to GC.
+ * Mutators and methods other than getters, equals(), hashCode() and toString() throw
+ * {@link UnsupportedOperationException}. Views are equal if they are views of the same stored object.
+ * Freezing copies the graph, so changes of the source graph made afterwards are not visible.
+ * Stored graphs can be saved to the file and mapped back to memory after restart with {@link #load}.
+ */
+public class OffHeapCodeFreeze implements CodeFreeze {
+
+    private final CGLIBCodeFreeze classifier = new CGLIBCodeFreeze();
+    private final TypeCache<FlyweightFactory> factories;
+    private final OffHeapArena arena;
+
+    /**
+     * Initializes OffHeapCodeFreeze with direct buffer of the capacity
+     *
+     * @param capacity Capacity in bytes
+     */
+    public OffHeapCodeFreeze(int capacity) {
+        this(ByteBuffer.allocateDirect(capacity));
+    }
+
+    /**
+     * Initializes OffHeapCodeFreeze with the buffer to store frozen graphs in
+     *
+     * @param buffer Direct or memory-mapped buffer, its content is overwritten
+     */
+    public OffHeapCodeFreeze(ByteBuffer buffer) {
+        checkAvailable();
+        FlyweightGenerator generator = new FlyweightGenerator(this);
+        this.factories = new TypeCache<>(generator::generate);
+        this.arena = new OffHeapArena(buffer);
+    }
+
+    private OffHeapCodeFreeze(ArenaFile file) throws IOException {
+        checkAvailable();
+        FlyweightGenerator generator = new FlyweightGenerator(this);
+        this.factories = new TypeCache<>(generator::generate);
+        this.arena = file.map(factories::get);
+    }
+
+    private static void checkAvailable() {
+        if (!ProxyInstantiator.isAvailable()) {
+            throw new UnsupportedOperationException("Flyweight views can't be created on this JVM");
+        }
+    }
+
+    /**
+     * Maps the file written by {@link #save} to memory and returns view of the saved graph. Nothing but the type
+     * table is read up front, values are decoded from the mapped file on access.
+     * The arena of the returned view is read-only, so freezing anything else into it fails. Offsets within
+     * the arena are ints, so files of arenas up to 2 GB are supported.
+     *
+     * @param file Path of the file
+     * @param type Type of the saved graph, its class loader is used to load stored types
+     * @param <T>  Type of the saved graph
+     * @return Frozen view of the saved graph
+     * @throws IOException if the file can't be read or stored types have changed since it was written
+     */
+    public static <T> T load(Path file, Class<T> type) throws IOException {
+        ClassLoader classLoader = type.getClassLoader() != null
+                ? type.getClassLoader() : Thread.currentThread().getContextClassLoader();
+        ArenaFile arenaFile = new ArenaFile(file, classLoader);
+        OffHeapCodeFreeze codeFreeze = new OffHeapCodeFreeze(arenaFile);
+        return type.cast(codeFreeze.arena.getValue(arenaFile.getRoot()));
+    }
+
+    /**
+     * Saves the arena to the file, together with the reference of the graph to return by {@link #load}.
+     * Graph is frozen first unless it's already stored in this arena. The arena, which is up to 2 GB, is written
+     * to the temporary file and moved over the file, so that the file is never left partially written.
+     *
+     * @param bean Graph to load after restart
+     * @param file Path of the file, it's replaced if it exists
+     * @throws IOException if the file can't be written
+     */
+    public void save(Object bean, Path file) throws IOException {
+        synchronized (arena) {
+            int reference = new ArenaWriter(arena, this, factories::get).write(bean);
+            ArenaFile.write(arena, reference, file);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if the graph contains objects, which can't be stored off-heap
+     * @throws IllegalStateException    if the buffer is full, nothing is written then
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T freeze(T bean) {
+        if (bean == null || ImmutableTypes.isImmutable(bean.getClass())
+                || bean instanceof FlyweightView && ((FlyweightView) bean).codeFreeze$arena() == arena) {
+            return bean;
+        }
+        int reference;
+        synchronized (arena) {
+            reference = new ArenaWriter(arena, this, factories::get).write(bean);
+        }
+        return (T) arena.getValue(reference);
+    }
+
+    /**
+     * Stored graph doesn't reference the source one, so it's a snapshot already
+     */
+    public <T> T snapshot(T bean) {
+        return freeze(bean);
+    }
+
+    /**
+     * Stored objects are never changed, so the graph is stored again as a whole
+     */
+    public <T> T refreeze(T previous, T bean) {
+        return freeze(bean);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isEnhanceable(Class<?> type) {
+        return classifier.isEnhanceable(type);
+    }
+
+    /**
+     * Returns arena, which frozen graphs are stored in
+     *
+     * @return Arena
+     */
+    public OffHeapArena getArena() {
+        return arena;
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.cache;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.lang.ref.WeakReference;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Cache of values computed per class. Values are attached to the classes themselves with {@link ClassValue},
+ * so neither the classes nor their class loaders are retained by the cache and can be unloaded.
+ * Optionally the number of cached values is bounded: the values cached first are evicted first.
+ * <p>
+ * Value of the class is computed once even if the class is requested by many threads at once: the class is mapped
+ * to the task computing its value, which is run by the first thread, while the others wait for it. Threads computing
+ * value of any cache run nested tasks, which nobody has started yet, themselves, but don't wait for the ones run by
+ * other threads and compute such values once more instead, so that waiting never deadlocks.
+ *
+ * @param <V> Value type, which must not reference the cache itself
+ */
+public class TypeCache<V> {
+
+    private static final ThreadLocal<Boolean> LOADING = new ThreadLocal<>();
+
+    private final Function<Class<?>, V> loader;
+    private ClassValue<FutureTask<V>> values;
+    private int maximumSize;
+    private final Queue<WeakReference<Class<?>>> cachedTypes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Initializes unbounded TypeCache
+     *
+     * @param loader Function computing value for class
+     */
+    public TypeCache(Function<Class<?>, V> loader) {
+        this.loader = loader;
+        this.values = newValues();
+    }
+
+    /**
+     * Returns cached value, computing it if it's absent
+     *
+     * @param type Class
+     * @return Value
+     */
+    public V get(Class<?> type) {
+        ClassValue<FutureTask<V>> values = this.values;
+        FutureTask<V> task = values.get(type);
+        V value = task.isDone() ? result(values, type, task) : load(values, type, task);
+        if (maximumSize > 0 && size.get() > maximumSize) {
+            evict();
+        }
+        return value;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Bounds number of cached values and drops values cached so far
+     *
+     * @param maximumSize Maximum number of values, 0 for unbounded cache (default). The bound is approximate
+     *                    when the same class is requested concurrently.
+     */
+    public void setMaximumSize(int maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("Maximum size can't be negative: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.values = newValues();
+        cachedTypes.clear();
+        size.set(0);
+    }
+
+    /**
+     * Returns number of values cached in bounded cache, including the ones of already unloaded classes
+     *
+     * @return Number of values or 0 if the cache is unbounded
+     */
+    public int size() {
+        return size.get();
+    }
+
+    private ClassValue<FutureTask<V>> newValues() {
+        return new ClassValue<FutureTask<V>>() {
+            @Override
+            protected FutureTask<V> computeValue(Class<?> type) {
+                // Threads racing here create tasks, but only the installed one is run
+                FutureTask<V> task = new FutureTask<>(() -> {
+                    Boolean loading = LOADING.get();
+                    LOADING.set(Boolean.TRUE);
+                    try {
+                        return loader.apply(type);
+                    } finally {
+                        if (loading == null) {
+                            LOADING.remove();
+                        }
+                    }
+                });
+                // Unbounded cache doesn't need to remember the order
+                if (maximumSize > 0) {
+                    cachedTypes.add(new WeakReference<>(type));
+                    size.incrementAndGet();
+                }
+                return task;
+            }
+        };
+    }
+
+    private V load(ClassValue<FutureTask<V>> values, Class<?> type, FutureTask<V> task) {
+        boolean nested = LOADING.get() != null;
+        // Does nothing unless the task hasn't been started yet
+        task.run();
+        if (nested && !task.isDone()) {
+            return loader.apply(type);
+        }
+        return result(values, type, task);
+    }
+
+    private V result(ClassValue<FutureTask<V>> values, Class<?> type, FutureTask<V> task) {
+        try {
+            return Uninterruptibles.getUninterruptibly(task);
+        } catch (ExecutionException e) {
+            // Failed computation is retried by the next request
+            values.remove(type);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private void evict() {
+        while (size.get() > maximumSize) {
+            WeakReference<Class<?>> eldest = cachedTypes.poll();
+            if (eldest == null) {
+                return;
+            }
+            size.decrementAndGet();
+            Class<?> type = eldest.get();
+            if (type != null) {
+                values.remove(type);
+            }
+        }
+    }
+
+}
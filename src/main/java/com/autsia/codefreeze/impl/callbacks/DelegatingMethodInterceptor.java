@@ -16,30 +16,20 @@
 
 package com.autsia.codefreeze.impl.callbacks;
 
-import net.sf.cglib.proxy.LazyLoader;
+import com.autsia.codefreeze.impl.proxy.FrozenProxyFactory;
+import net.sf.cglib.proxy.ProxyRefDispatcher;
 
 /**
  * CGLIB method interceptor for delegating method call to object itself
  */
-public class DelegatingMethodInterceptor implements LazyLoader {
-
-    private Object delegate;
-
-    /**
-     * Initializes DelegatingMethodInterceptor with delegated object
-     *
-     * @param delegate Delegated object
-     */
-    public DelegatingMethodInterceptor(Object delegate) {
-        this.delegate = delegate;
-    }
+public class DelegatingMethodInterceptor implements ProxyRefDispatcher {
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public Object loadObject() throws Exception {
-        return delegate;
+    public Object loadObject(Object proxy) throws Exception {
+        return FrozenProxyFactory.delegateOf(proxy);
     }
 
 }
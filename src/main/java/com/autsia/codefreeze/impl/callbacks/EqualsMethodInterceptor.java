@@ -16,6 +16,8 @@
 
 package com.autsia.codefreeze.impl.callbacks;
 
+import com.autsia.codefreeze.impl.proxy.FrozenProxy;
+import com.autsia.codefreeze.impl.proxy.FrozenProxyFactory;
 import net.sf.cglib.proxy.MethodInterceptor;
 import net.sf.cglib.proxy.MethodProxy;
 
@@ -26,26 +28,21 @@ import java.lang.reflect.Method;
  */
 public class EqualsMethodInterceptor implements MethodInterceptor {
 
-    private Object delegate;
-
-    /**
-     * Initializes EqualsMethodInterceptor with delegated object
-     *
-     * @param delegate Delegated object
-     */
-    public EqualsMethodInterceptor(Object delegate) {
-        this.delegate = delegate;
-    }
-
     /**
      * {@inheritDoc}
      */
     @Override
     public Object intercept(Object obj, Method method, Object[] args, MethodProxy proxy) throws Throwable {
+        Object delegate = FrozenProxyFactory.delegateOf(obj);
         Object objectToCompare = args[0];
         if (objectToCompare == null) {
             return delegate == null;
         }
+        // Proxies of the same object are equal without comparing the object, which might be expensive
+        if (objectToCompare == obj || objectToCompare instanceof FrozenProxy
+                && delegate != null && ((FrozenProxy) objectToCompare).codeFreeze$delegate() == delegate) {
+            return true;
+        }
         return objectToCompare.equals(delegate);
     }
 
@@ -17,6 +17,10 @@
 package com.autsia.codefreeze.impl.callbacks;
 
 
+import com.autsia.codefreeze.impl.metrics.FreezeListener;
+import com.autsia.codefreeze.impl.metrics.ObservableCodeFreeze;
+import com.autsia.codefreeze.impl.proxy.FrozenProxy;
+import com.autsia.codefreeze.impl.proxy.FrozenProxyFactory;
 import net.sf.cglib.proxy.MethodInterceptor;
 import net.sf.cglib.proxy.MethodProxy;
 
@@ -24,23 +28,11 @@ import java.lang.reflect.Method;
 import java.text.MessageFormat;
 
 /**
- * CGLIB method interceptor for throwing exception on mutators calling
+ * CGLIB method interceptor for throwing exception on mutators calling.
+ * Rejected calls are reported to the listener of the service, which has created the proxy.
  */
 public class ExceptionMethodInterceptor implements MethodInterceptor {
 
-    private Object delegate;
-    private boolean active;
-
-    /**
-     * Initializes ExceptionMethodInterceptor with delegated object, new instance is not active
-     *
-     * @param delegate Delegated object
-     */
-    public ExceptionMethodInterceptor(Object delegate) {
-        this.delegate = delegate;
-        this.active = false;
-    }
-
     /**
      * {@inheritDoc}
      *
@@ -48,28 +40,18 @@ public class ExceptionMethodInterceptor implements MethodInterceptor {
      */
     @Override
     public Object intercept(Object obj, Method method, Object[] args, MethodProxy proxy) throws Throwable {
-        // If interceptor is not yet active, it doesn't throw an exception, but just delegate method call to real object
-        if (active) {
+        // Proxy state is assigned right after construction, so the mutators called from the constructor
+        // don't throw an exception, but just delegate method call to real object. Proxies published to other
+        // threads through a data race reject mutators even before their state becomes visible there.
+        if (FrozenProxyFactory.initializedDelegate(obj) != null) {
+            // Context is written before the volatile delegate, so it's visible once the delegate is
+            FreezeListener freezeListener = ObservableCodeFreeze.listenerOf(((FrozenProxy) obj).codeFreeze$context());
+            if (freezeListener != null) {
+                freezeListener.onMutatorRejected(obj.getClass().getSuperclass());
+            }
             throw new UnsupportedOperationException(MessageFormat.format("%s class is immutable: mutators execution is not allowed.", obj.getClass().getSimpleName()));
         }
-        return method.invoke(delegate, args);
-    }
-
-
-    public boolean isActive() {
-        return active;
-    }
-
-    /**
-     * Activates or deactivated UnsupportedOperationExceptionMethodInterceptor:
-     * once it'd been activated, it can't be deactivated
-     *
-     * @param active Status of UnsupportedOperationExceptionMethodInterceptor to set
-     */
-    public void setActive(boolean active) {
-        if (!isActive()) {
-            this.active = active;
-        }
+        return proxy.invoke(FrozenProxyFactory.delegateOf(obj), args);
     }
 
 }
@@ -17,30 +17,36 @@
 package com.autsia.codefreeze.impl.callbacks;
 
 import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.FrozenArrays;
+import com.autsia.codefreeze.impl.metrics.FreezeListener;
+import com.autsia.codefreeze.impl.metrics.ObservableCodeFreeze;
+import com.autsia.codefreeze.impl.proxy.FrozenProxy;
+import com.autsia.codefreeze.impl.proxy.FrozenProxyFactory;
+import com.autsia.codefreeze.impl.proxy.FrozenProxyTransformer;
 import net.sf.cglib.proxy.MethodInterceptor;
 import net.sf.cglib.proxy.MethodProxy;
 
 import java.lang.reflect.Method;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * CGLIB method interceptor which wraps returned by the method object into immutable proxy
+ * and memoizes it in the slot field of the proxy. Arrays are memoized as frozen copies and returned as their clones.
  */
 public class FreezingMethodInterceptor implements MethodInterceptor {
 
-    private CodeFreeze codeFreeze;
-    private Object delegate;
-    private ConcurrentHashMap<Method, Object> immutableBeans = new ConcurrentHashMap<>();
+    private final AtomicReferenceFieldUpdater<Object, Object> slot;
 
     /**
-     * Initializes FreezingMethodInterceptor with CodeFreeze service and delegated object
+     * Initializes FreezingMethodInterceptor with proxy class and slot of the intercepted getter
      *
-     * @param codeFreeze CodeFreeze service instance
-     * @param delegate   Delegated object
+     * @param proxyClass Proxy class generated with {@link FrozenProxyTransformer}
+     * @param slot       Slot index
      */
-    public FreezingMethodInterceptor(CodeFreeze codeFreeze, Object delegate) {
-        this.codeFreeze = codeFreeze;
-        this.delegate = delegate;
+    @SuppressWarnings("unchecked")
+    public FreezingMethodInterceptor(Class<?> proxyClass, int slot) {
+        this.slot = AtomicReferenceFieldUpdater.newUpdater(
+                (Class<Object>) proxyClass, Object.class, FrozenProxyTransformer.slotField(slot));
     }
 
     /**
@@ -48,14 +54,38 @@ public class FreezingMethodInterceptor implements MethodInterceptor {
      */
     @Override
     public Object intercept(Object obj, Method method, Object[] args, MethodProxy proxy) throws Throwable {
-        if (immutableBeans.containsKey(method)) {
-            return immutableBeans.get(method);
-        }
-        Object value = codeFreeze.freeze(method.invoke(delegate, args));
+        // Slots are assigned only after initialization, so the memoized value is returned with a single volatile read
+        Object value = slot.get(obj);
         if (value != null) {
-            immutableBeans.putIfAbsent(method, value);
+            // Slot is written after the delegate, so the context is visible once the slot is
+            FreezeListener freezeListener = ObservableCodeFreeze.listenerOf(((FrozenProxy) obj).codeFreeze$context());
+            if (freezeListener != null) {
+                freezeListener.onMemoHit();
+            }
+            return exposed(method, value);
+        }
+        Object delegate = FrozenProxyFactory.initializedDelegate(obj);
+        if (delegate == null) {
+            // Getters called from the constructor return values as is
+            return proxy.invoke(FrozenProxyFactory.delegateOf(obj), args);
+        }
+        // Context is written before the volatile delegate, so it's visible once the delegate is
+        CodeFreeze codeFreeze = ((FrozenProxy) obj).codeFreeze$context();
+        FreezeListener freezeListener = ObservableCodeFreeze.listenerOf(codeFreeze);
+        if (freezeListener != null) {
+            freezeListener.onMemoMiss();
         }
-        return value;
+        // MethodProxy calls the method through generated FastClass, avoiding reflection
+        value = codeFreeze.freeze(proxy.invoke(delegate, args));
+        if (value != null && !slot.compareAndSet(obj, null, value)) {
+            // Another thread has already memoized its value: every caller gets the same instance
+            return exposed(method, slot.get(obj));
+        }
+        return exposed(method, value);
+    }
+
+    private static Object exposed(Method method, Object value) {
+        return method.getReturnType().isArray() ? FrozenArrays.clone(value) : value;
     }
 
 }
\ No newline at end of file
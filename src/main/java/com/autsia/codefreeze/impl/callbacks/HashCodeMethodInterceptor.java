@@ -0,0 +1,66 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.callbacks;
+
+import com.autsia.codefreeze.impl.proxy.FrozenProxyFactory;
+import com.autsia.codefreeze.impl.proxy.FrozenProxyTransformer;
+import net.sf.cglib.proxy.MethodInterceptor;
+import net.sf.cglib.proxy.MethodProxy;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * CGLIB method interceptor for hashCode() method, which computes hash code of real object once
+ * and memoizes it in the slot field of the proxy
+ */
+public class HashCodeMethodInterceptor implements MethodInterceptor {
+
+    private final AtomicReferenceFieldUpdater<Object, Object> slot;
+
+    /**
+     * Initializes HashCodeMethodInterceptor with proxy class and slot of hashCode()
+     *
+     * @param proxyClass Proxy class generated with {@link FrozenProxyTransformer}
+     * @param slot       Slot index
+     */
+    @SuppressWarnings("unchecked")
+    public HashCodeMethodInterceptor(Class<?> proxyClass, int slot) {
+        this.slot = AtomicReferenceFieldUpdater.newUpdater(
+                (Class<Object>) proxyClass, Object.class, FrozenProxyTransformer.slotField(slot));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object intercept(Object obj, Method method, Object[] args, MethodProxy proxy) throws Throwable {
+        Object hashCode = slot.get(obj);
+        if (hashCode != null) {
+            return hashCode;
+        }
+        Object delegate = FrozenProxyFactory.initializedDelegate(obj);
+        if (delegate == null) {
+            return proxy.invoke(FrozenProxyFactory.delegateOf(obj), args);
+        }
+        // Concurrent callers compute the same value, so the race is benign
+        hashCode = proxy.invoke(delegate, args);
+        slot.set(obj, hashCode);
+        return hashCode;
+    }
+
+}
@@ -0,0 +1,43 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.callbacks;
+
+import com.autsia.codefreeze.FrozenArrays;
+import com.autsia.codefreeze.impl.snapshot.SnapshotSession;
+import net.sf.cglib.proxy.MethodInterceptor;
+import net.sf.cglib.proxy.MethodProxy;
+
+import java.lang.reflect.Method;
+
+/**
+ * CGLIB method interceptor for methods of snapshots which return arrays: arrays copied into the snapshot are
+ * returned as their clones, so that callers can't change the snapshot through them
+ */
+public class SnapshotArrayInterceptor implements MethodInterceptor {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object intercept(Object obj, Method method, Object[] args, MethodProxy proxy) throws Throwable {
+        // Methods called while snapshot is populated work on its own arrays
+        boolean sealed = SnapshotSession.isSealed(obj);
+        Object array = proxy.invokeSuper(obj, args);
+        return sealed ? FrozenArrays.clone(array) : array;
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.callbacks;
+
+import com.autsia.codefreeze.impl.snapshot.SnapshotSession;
+import net.sf.cglib.proxy.MethodInterceptor;
+import net.sf.cglib.proxy.MethodProxy;
+
+import java.lang.reflect.Method;
+import java.text.MessageFormat;
+
+/**
+ * CGLIB method interceptor for mutators of snapshots
+ */
+public class SnapshotMutatorInterceptor implements MethodInterceptor {
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UnsupportedOperationException
+     */
+    @Override
+    public Object intercept(Object obj, Method method, Object[] args, MethodProxy proxy) throws Throwable {
+        // Snapshot is sealed once its state is copied, so the mutators called from the constructor
+        // still change the snapshot itself
+        if (SnapshotSession.isSealed(obj)) {
+            throw new UnsupportedOperationException(MessageFormat.format("{0} class is immutable: mutators execution is not allowed.", obj.getClass().getSuperclass().getSimpleName()));
+        }
+        return proxy.invokeSuper(obj, args);
+    }
+
+}
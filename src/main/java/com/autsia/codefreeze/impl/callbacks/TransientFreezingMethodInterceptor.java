@@ -0,0 +1,47 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.callbacks;
+
+import com.autsia.codefreeze.impl.proxy.FrozenProxy;
+import com.autsia.codefreeze.impl.proxy.FrozenProxyFactory;
+import net.sf.cglib.proxy.MethodInterceptor;
+import net.sf.cglib.proxy.MethodProxy;
+
+import java.lang.reflect.Method;
+
+/**
+ * CGLIB method interceptor which wraps returned by the method object into immutable proxy on every call,
+ * for the methods which results can't be memoized: methods with parameters and methods returning single-use
+ * streams and iterators
+ */
+public class TransientFreezingMethodInterceptor implements MethodInterceptor {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object intercept(Object obj, Method method, Object[] args, MethodProxy proxy) throws Throwable {
+        FrozenProxy frozenProxy = (FrozenProxy) obj;
+        Object delegate = FrozenProxyFactory.initializedDelegate(obj);
+        if (delegate == null) {
+            // Methods called from the constructor return values as is
+            return proxy.invoke(FrozenProxyFactory.delegateOf(obj), args);
+        }
+        return frozenProxy.codeFreeze$context().freeze(proxy.invoke(delegate, args));
+    }
+
+}
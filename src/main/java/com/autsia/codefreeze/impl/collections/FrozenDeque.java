@@ -0,0 +1,206 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.collections;
+
+import com.autsia.codefreeze.Frozen;
+import com.google.common.collect.Iterators;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Immutable deque, which is used for frozen queues and deques as Guava has no immutable ones.
+ * Elements are frozen before the deque is created.
+ *
+ * @param <E> Element type
+ */
+public class FrozenDeque<E> extends AbstractCollection<E> implements Deque<E>, Frozen {
+
+    private final ArrayDeque<E> elements;
+
+    /**
+     * Initializes FrozenDeque with frozen elements
+     *
+     * @param elements Frozen elements in the order of the source queue, they are not copied
+     */
+    public FrozenDeque(ArrayDeque<E> elements) {
+        this.elements = elements;
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return elements.contains(o);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return Iterators.unmodifiableIterator(elements.iterator());
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return Iterators.unmodifiableIterator(elements.descendingIterator());
+    }
+
+    @Override
+    public E getFirst() {
+        return elements.getFirst();
+    }
+
+    @Override
+    public E getLast() {
+        return elements.getLast();
+    }
+
+    @Override
+    public E peekFirst() {
+        return elements.peekFirst();
+    }
+
+    @Override
+    public E peekLast() {
+        return elements.peekLast();
+    }
+
+    @Override
+    public E element() {
+        return elements.element();
+    }
+
+    @Override
+    public E peek() {
+        return elements.peek();
+    }
+
+    // Mutators are rejected unconditionally, even if they wouldn't change the deque
+
+    @Override
+    public void addFirst(E e) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addLast(E e) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean offerFirst(E e) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean offerLast(E e) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public E removeFirst() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public E removeLast() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public E pollFirst() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public E pollLast() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeFirstOccurrence(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeLastOccurrence(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean add(E e) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean offer(E e) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public E remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public E poll() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void push(E e) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public E pop() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+}
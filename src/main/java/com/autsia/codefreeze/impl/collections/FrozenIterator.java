@@ -0,0 +1,66 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.collections;
+
+import com.autsia.codefreeze.Frozen;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Iterator which freezes every element as it is pulled from the source iterator, so nothing is materialized
+ *
+ * @param <E> Element type
+ */
+public class FrozenIterator<E> implements Iterator<E>, Frozen {
+
+    private final UnaryOperator<E> freezer;
+    private final Iterator<E> source;
+
+    /**
+     * Initializes FrozenIterator with freezing function and source iterator
+     *
+     * @param freezer Freezing function
+     * @param source  Iterator to wrap
+     */
+    public FrozenIterator(UnaryOperator<E> freezer, Iterator<E> source) {
+        this.freezer = freezer;
+        this.source = source;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return source.hasNext();
+    }
+
+    @Override
+    public E next() {
+        return freezer.apply(source.next());
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super E> action) {
+        source.forEachRemaining(element -> action.accept(freezer.apply(element)));
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.collections;
+
+import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.Frozen;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Immutable view of the list which freezes elements lazily, on first access,
+ * and memoizes frozen element per index. Memo is allocated in chunks, as they are touched,
+ * so that accessing a few elements of a large list doesn't allocate the memo of its whole size.
+ *
+ * @param <E> Element type
+ */
+public class FrozenListView<E> extends AbstractList<E> implements Frozen {
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<FrozenListView, AtomicReferenceArray> FROZEN_CHUNKS =
+            AtomicReferenceFieldUpdater.newUpdater(FrozenListView.class, AtomicReferenceArray.class, "frozenChunks");
+
+    private final CodeFreeze codeFreeze;
+    private final List<E> source;
+    private volatile AtomicReferenceArray<AtomicReferenceArray<E>> frozenChunks;
+
+    /**
+     * Initializes FrozenListView with CodeFreeze service and source list
+     *
+     * @param codeFreeze CodeFreeze service instance
+     * @param source     List to wrap, it's not copied
+     */
+    public FrozenListView(CodeFreeze codeFreeze, List<E> source) {
+        this.codeFreeze = codeFreeze;
+        this.source = source;
+    }
+
+    @Override
+    public E get(int index) {
+        return frozen(index, source.get(index));
+    }
+
+    @Override
+    public int size() {
+        return source.size();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        if (source instanceof RandomAccess) {
+            return super.iterator();
+        }
+        // Positional access can be linear for the source, so walk it sequentially
+        Iterator<E> sourceIterator = source.iterator();
+        return new Iterator<E>() {
+
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return sourceIterator.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return frozen(index++, sourceIterator.next());
+            }
+
+        };
+    }
+
+    private E frozen(int index, E element) {
+        AtomicReferenceArray<E> elements = chunk(index);
+        if (elements == null) {
+            return codeFreeze.freeze(element);
+        }
+        int offset = index & (CHUNK_SIZE - 1);
+        E value = elements.get(offset);
+        if (value != null) {
+            return value;
+        }
+        value = codeFreeze.freeze(element);
+        if (value != null && !elements.compareAndSet(offset, null, value)) {
+            value = elements.get(offset);
+        }
+        return value;
+    }
+
+    /**
+     * Returns memo chunk of the index, allocating it on first access
+     *
+     * @param index Index of element
+     * @return Chunk or null if the source list has grown beyond the chunks of the size it had on the first access
+     */
+    private AtomicReferenceArray<E> chunk(int index) {
+        AtomicReferenceArray<AtomicReferenceArray<E>> chunks = frozenChunks;
+        if (chunks == null) {
+            FROZEN_CHUNKS.compareAndSet(this, null, new AtomicReferenceArray<>((source.size() + CHUNK_SIZE - 1) >>> CHUNK_SHIFT));
+            chunks = frozenChunks;
+        }
+        int chunkIndex = index >>> CHUNK_SHIFT;
+        if (chunkIndex >= chunks.length()) {
+            return null;
+        }
+        AtomicReferenceArray<E> chunk = chunks.get(chunkIndex);
+        if (chunk == null) {
+            chunks.compareAndSet(chunkIndex, null, new AtomicReferenceArray<>(CHUNK_SIZE));
+            chunk = chunks.get(chunkIndex);
+        }
+        return chunk;
+    }
+
+    // Mutators are rejected unconditionally, even if they wouldn't change the list
+
+    @Override
+    public boolean add(E e) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void add(int index, E element) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends E> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public E set(int index, E element) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public E remove(int index) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<E> operator) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void sort(Comparator<? super E> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.collections;
+
+import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.Frozen;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Immutable view of the map which freezes keys and values lazily, on first access,
+ * and memoizes them per source key
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class FrozenMapView<K, V> extends AbstractMap<K, V> implements Frozen {
+
+    private final CodeFreeze codeFreeze;
+    private final Map<K, V> source;
+    private final ConcurrentHashMap<Object, K> frozenKeys;
+    private final ConcurrentHashMap<Object, V> frozenValues;
+    private Set<Entry<K, V>> entrySet;
+
+    /**
+     * Initializes FrozenMapView with CodeFreeze service and source map
+     *
+     * @param codeFreeze CodeFreeze service instance
+     * @param source     Map to wrap, it's not copied
+     */
+    public FrozenMapView(CodeFreeze codeFreeze, Map<K, V> source) {
+        this(codeFreeze, source, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    }
+
+    FrozenMapView(CodeFreeze codeFreeze, Map<K, V> source,
+                  ConcurrentHashMap<Object, K> frozenKeys, ConcurrentHashMap<Object, V> frozenValues) {
+        this.codeFreeze = codeFreeze;
+        this.source = source;
+        this.frozenKeys = frozenKeys;
+        this.frozenValues = frozenValues;
+    }
+
+    @Override
+    public V get(Object key) {
+        return frozenValue(key, source.get(key));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return source.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return source.size();
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        Set<Entry<K, V>> entries = entrySet;
+        if (entries == null) {
+            entries = Collections.unmodifiableSet(new FrozenEntrySet());
+            entrySet = entries;
+        }
+        return entries;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return Collections.unmodifiableSet(super.keySet());
+    }
+
+    @Override
+    public Collection<V> values() {
+        return Collections.unmodifiableCollection(super.values());
+    }
+
+    K frozenKey(K key) {
+        if (key == null) {
+            return null;
+        }
+        return memoized(frozenKeys, key, key);
+    }
+
+    V frozenValue(Object key, V value) {
+        if (key == null || value == null) {
+            return codeFreeze.freeze(value);
+        }
+        return memoized(frozenValues, key, value);
+    }
+
+    private <T> T memoized(ConcurrentHashMap<Object, T> memo, Object key, T bean) {
+        T value = memo.get(key);
+        if (value != null) {
+            return value;
+        }
+        value = codeFreeze.freeze(bean);
+        if (value == null) {
+            return null;
+        }
+        T previous = memo.putIfAbsent(key, value);
+        return previous != null ? previous : value;
+    }
+
+    // Mutators are rejected unconditionally, even if they wouldn't change the map
+
+    @Override
+    public V put(K key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V remove(Object key) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        throw new UnsupportedOperationException();
+    }
+
+    private class FrozenEntrySet extends AbstractSet<Entry<K, V>> {
+
+        @Override
+        public int size() {
+            return source.size();
+        }
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            Iterator<Entry<K, V>> sourceIterator = source.entrySet().iterator();
+            return new Iterator<Entry<K, V>>() {
+
+                @Override
+                public boolean hasNext() {
+                    return sourceIterator.hasNext();
+                }
+
+                @Override
+                public Entry<K, V> next() {
+                    Entry<K, V> entry = sourceIterator.next();
+                    K key = entry.getKey();
+                    return new SimpleImmutableEntry<>(frozenKey(key), frozenValue(key, entry.getValue()));
+                }
+
+            };
+        }
+
+    }
+
+}
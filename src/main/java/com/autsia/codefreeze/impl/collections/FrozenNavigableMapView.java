@@ -0,0 +1,194 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.collections;
+
+import com.autsia.codefreeze.CodeFreeze;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable view of the navigable map which keeps its order and comparator. Navigation and range queries go to the
+ * source map, so they stay logarithmic, and return frozen entries and frozen sub-views sharing the same memos
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class FrozenNavigableMapView<K, V> extends FrozenMapView<K, V> implements NavigableMap<K, V> {
+
+    private final CodeFreeze codeFreeze;
+    private final NavigableMap<K, V> source;
+    private final ConcurrentHashMap<Object, K> frozenKeys;
+    private final ConcurrentHashMap<Object, V> frozenValues;
+
+    /**
+     * Initializes FrozenNavigableMapView with CodeFreeze service and source map
+     *
+     * @param codeFreeze CodeFreeze service instance
+     * @param source     Map to wrap, it's not copied
+     */
+    public FrozenNavigableMapView(CodeFreeze codeFreeze, NavigableMap<K, V> source) {
+        this(codeFreeze, source, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    }
+
+    private FrozenNavigableMapView(CodeFreeze codeFreeze, NavigableMap<K, V> source,
+                                   ConcurrentHashMap<Object, K> frozenKeys, ConcurrentHashMap<Object, V> frozenValues) {
+        super(codeFreeze, source, frozenKeys, frozenValues);
+        this.codeFreeze = codeFreeze;
+        this.source = source;
+        this.frozenKeys = frozenKeys;
+        this.frozenValues = frozenValues;
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return source.comparator();
+    }
+
+    @Override
+    public K firstKey() {
+        return frozenKey(source.firstKey());
+    }
+
+    @Override
+    public K lastKey() {
+        return frozenKey(source.lastKey());
+    }
+
+    @Override
+    public Entry<K, V> firstEntry() {
+        return frozenEntry(source.firstEntry());
+    }
+
+    @Override
+    public Entry<K, V> lastEntry() {
+        return frozenEntry(source.lastEntry());
+    }
+
+    @Override
+    public Entry<K, V> lowerEntry(K key) {
+        return frozenEntry(source.lowerEntry(key));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return frozenKey(source.lowerKey(key));
+    }
+
+    @Override
+    public Entry<K, V> floorEntry(K key) {
+        return frozenEntry(source.floorEntry(key));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return frozenKey(source.floorKey(key));
+    }
+
+    @Override
+    public Entry<K, V> ceilingEntry(K key) {
+        return frozenEntry(source.ceilingEntry(key));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return frozenKey(source.ceilingKey(key));
+    }
+
+    @Override
+    public Entry<K, V> higherEntry(K key) {
+        return frozenEntry(source.higherEntry(key));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return frozenKey(source.higherKey(key));
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return view(source.descendingMap());
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return new FrozenNavigableSetView<>(codeFreeze, source.navigableKeySet(), frozenKeys);
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return new FrozenNavigableSetView<>(codeFreeze, source.descendingKeySet(), frozenKeys);
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        return view(source.subMap(fromKey, fromInclusive, toKey, toInclusive));
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        return view(source.headMap(toKey, inclusive));
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        return view(source.tailMap(fromKey, inclusive));
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    private NavigableMap<K, V> view(NavigableMap<K, V> map) {
+        return new FrozenNavigableMapView<>(codeFreeze, map, frozenKeys, frozenValues);
+    }
+
+    private Entry<K, V> frozenEntry(Entry<K, V> entry) {
+        if (entry == null) {
+            return null;
+        }
+        K key = entry.getKey();
+        return new SimpleImmutableEntry<>(frozenKey(key), frozenValue(key, entry.getValue()));
+    }
+
+    @Override
+    public Entry<K, V> pollFirstEntry() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Entry<K, V> pollLastEntry() {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.collections;
+
+import com.autsia.codefreeze.CodeFreeze;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable view of the navigable set which keeps its order and comparator. Navigation and range queries go to the
+ * source set, so they stay logarithmic, and return frozen elements and frozen sub-views sharing the same memo
+ *
+ * @param <E> Element type
+ */
+public class FrozenNavigableSetView<E> extends FrozenSetView<E> implements NavigableSet<E> {
+
+    private final CodeFreeze codeFreeze;
+    private final NavigableSet<E> source;
+    private final ConcurrentHashMap<Object, E> frozenElements;
+
+    /**
+     * Initializes FrozenNavigableSetView with CodeFreeze service and source set
+     *
+     * @param codeFreeze CodeFreeze service instance
+     * @param source     Set to wrap, it's not copied
+     */
+    public FrozenNavigableSetView(CodeFreeze codeFreeze, NavigableSet<E> source) {
+        this(codeFreeze, source, new ConcurrentHashMap<>());
+    }
+
+    FrozenNavigableSetView(CodeFreeze codeFreeze, NavigableSet<E> source, ConcurrentHashMap<Object, E> frozenElements) {
+        super(codeFreeze, source, frozenElements);
+        this.codeFreeze = codeFreeze;
+        this.source = source;
+        this.frozenElements = frozenElements;
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return source.comparator();
+    }
+
+    @Override
+    public E first() {
+        return frozen(source.first());
+    }
+
+    @Override
+    public E last() {
+        return frozen(source.last());
+    }
+
+    @Override
+    public E lower(E e) {
+        return frozen(source.lower(e));
+    }
+
+    @Override
+    public E floor(E e) {
+        return frozen(source.floor(e));
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return frozen(source.ceiling(e));
+    }
+
+    @Override
+    public E higher(E e) {
+        return frozen(source.higher(e));
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return view(source.descendingSet());
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        return view(source.subSet(fromElement, fromInclusive, toElement, toInclusive));
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return view(source.headSet(toElement, inclusive));
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return view(source.tailSet(fromElement, inclusive));
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    private NavigableSet<E> view(NavigableSet<E> set) {
+        return new FrozenNavigableSetView<>(codeFreeze, set, frozenElements);
+    }
+
+    @Override
+    public E pollFirst() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public E pollLast() {
+        throw new UnsupportedOperationException();
+    }
+
+}
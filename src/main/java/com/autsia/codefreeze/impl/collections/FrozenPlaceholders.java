@@ -0,0 +1,237 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.collections;
+
+import com.autsia.codefreeze.Frozen;
+import com.google.common.collect.*;
+
+import java.util.*;
+
+/**
+ * Placeholders of eagerly frozen collections. Placeholder is registered as immutable version of the collection
+ * before its elements are frozen, so that elements referring back to the collection (or the collection containing
+ * itself) get the placeholder instead of freezing the collection again. Once the immutable collection is built,
+ * placeholder forwards to it; it can't be used before that, so unresolved placeholders are visible to the freezing
+ * call only. Placeholders which have been referenced stand for the immutable collection, so that the cycle consists
+ * of the same instance.
+ */
+public final class FrozenPlaceholders {
+
+    private FrozenPlaceholders() {
+    }
+
+    /**
+     * Placeholder of immutable collection, which is being built
+     */
+    public interface Placeholder extends Frozen {
+
+        /**
+         * Returns the state of placeholder, which is the same for all collection types
+         *
+         * @return Resolution of placeholder
+         */
+        Resolution resolution();
+
+        /**
+         * Binds placeholder to the immutable collection
+         *
+         * @param frozen Immutable version of the collection, the placeholder has been created for
+         */
+        default void resolve(Object frozen) {
+            resolution().frozen = frozen;
+        }
+
+        /**
+         * Marks placeholder as referenced by the frozen graph
+         */
+        default void reference() {
+            resolution().referenced = true;
+        }
+
+        /**
+         * Checks if placeholder has been referenced, so that it has to stand for the immutable collection
+         *
+         * @return True if placeholder has been referenced
+         */
+        default boolean isReferenced() {
+            return resolution().referenced;
+        }
+
+    }
+
+    /**
+     * Immutable collection the placeholder forwards to, once it's built
+     */
+    public static final class Resolution {
+
+        private volatile Object frozen;
+        private volatile boolean referenced;
+
+        private Resolution() {
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T get() {
+            Object delegate = frozen;
+            if (delegate == null) {
+                throw new IllegalStateException("Collection is accessed before it's frozen");
+            }
+            return (T) delegate;
+        }
+
+    }
+
+    /**
+     * Creates placeholder of the same collection type as the source collection is
+     *
+     * @param collection Source list, set, map or queue
+     * @return Placeholder
+     */
+    public static Placeholder of(Object collection) {
+        if (collection instanceof List && collection instanceof Queue) {
+            return new ListDequePlaceholder<>();
+        } else if (collection instanceof List) {
+            return new ListPlaceholder<>();
+        } else if (collection instanceof SortedSet) {
+            return new NavigableSetPlaceholder<>();
+        } else if (collection instanceof Set) {
+            return new SetPlaceholder<>();
+        } else if (collection instanceof SortedMap) {
+            return new NavigableMapPlaceholder<>();
+        } else if (collection instanceof Map) {
+            return new MapPlaceholder<>();
+        }
+        return new DequePlaceholder<>();
+    }
+
+    private static class ListPlaceholder<E> extends ForwardingList<E> implements Placeholder {
+
+        private final Resolution resolution = new Resolution();
+
+        @Override
+        public Resolution resolution() {
+            return resolution;
+        }
+
+        @Override
+        protected List<E> delegate() {
+            return resolution.get();
+        }
+
+    }
+
+    private static class ListDequePlaceholder<E> extends FrozenListDeque<E> implements Placeholder {
+
+        private final Resolution resolution = new Resolution();
+
+        private ListDequePlaceholder() {
+            super(null);
+        }
+
+        @Override
+        public Resolution resolution() {
+            return resolution;
+        }
+
+        @Override
+        protected List<E> elements() {
+            return resolution.get();
+        }
+
+    }
+
+    private static class SetPlaceholder<E> extends ForwardingSet<E> implements Placeholder {
+
+        private final Resolution resolution = new Resolution();
+
+        @Override
+        public Resolution resolution() {
+            return resolution;
+        }
+
+        @Override
+        protected Set<E> delegate() {
+            return resolution.get();
+        }
+
+    }
+
+    private static class NavigableSetPlaceholder<E> extends ForwardingNavigableSet<E> implements Placeholder {
+
+        private final Resolution resolution = new Resolution();
+
+        @Override
+        public Resolution resolution() {
+            return resolution;
+        }
+
+        @Override
+        protected NavigableSet<E> delegate() {
+            return resolution.get();
+        }
+
+    }
+
+    private static class MapPlaceholder<K, V> extends ForwardingMap<K, V> implements Placeholder {
+
+        private final Resolution resolution = new Resolution();
+
+        @Override
+        public Resolution resolution() {
+            return resolution;
+        }
+
+        @Override
+        protected Map<K, V> delegate() {
+            return resolution.get();
+        }
+
+    }
+
+    private static class NavigableMapPlaceholder<K, V> extends ForwardingNavigableMap<K, V> implements Placeholder {
+
+        private final Resolution resolution = new Resolution();
+
+        @Override
+        public Resolution resolution() {
+            return resolution;
+        }
+
+        @Override
+        protected NavigableMap<K, V> delegate() {
+            return resolution.get();
+        }
+
+    }
+
+    private static class DequePlaceholder<E> extends ForwardingDeque<E> implements Placeholder {
+
+        private final Resolution resolution = new Resolution();
+
+        @Override
+        public Resolution resolution() {
+            return resolution;
+        }
+
+        @Override
+        protected Deque<E> delegate() {
+            return resolution.get();
+        }
+
+    }
+
+}
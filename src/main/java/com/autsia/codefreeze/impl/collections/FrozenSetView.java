@@ -0,0 +1,135 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.collections;
+
+import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.Frozen;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Immutable view of the set which freezes elements lazily, on first access,
+ * and memoizes frozen element per source element
+ *
+ * @param <E> Element type
+ */
+public class FrozenSetView<E> extends AbstractSet<E> implements Frozen {
+
+    private final CodeFreeze codeFreeze;
+    private final Set<E> source;
+    private final ConcurrentHashMap<Object, E> frozenElements;
+
+    /**
+     * Initializes FrozenSetView with CodeFreeze service and source set
+     *
+     * @param codeFreeze CodeFreeze service instance
+     * @param source     Set to wrap, it's not copied
+     */
+    public FrozenSetView(CodeFreeze codeFreeze, Set<E> source) {
+        this(codeFreeze, source, new ConcurrentHashMap<>());
+    }
+
+    FrozenSetView(CodeFreeze codeFreeze, Set<E> source, ConcurrentHashMap<Object, E> frozenElements) {
+        this.codeFreeze = codeFreeze;
+        this.source = source;
+        this.frozenElements = frozenElements;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return source.contains(o);
+    }
+
+    @Override
+    public int size() {
+        return source.size();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        Iterator<E> sourceIterator = source.iterator();
+        return new Iterator<E>() {
+
+            @Override
+            public boolean hasNext() {
+                return sourceIterator.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return frozen(sourceIterator.next());
+            }
+
+        };
+    }
+
+    E frozen(E element) {
+        if (element == null) {
+            return null;
+        }
+        E value = frozenElements.get(element);
+        if (value != null) {
+            return value;
+        }
+        value = codeFreeze.freeze(element);
+        E previous = frozenElements.putIfAbsent(element, value);
+        return previous != null ? previous : value;
+    }
+
+    // Mutators are rejected unconditionally, even if they wouldn't change the set
+
+    @Override
+    public boolean add(E e) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -18,22 +18,38 @@ package com.autsia.codefreeze.impl.filters;
 
 
 import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.impl.callbacks.ArrayCopyingMethodInterceptor;
+import com.autsia.codefreeze.impl.callbacks.DelegatingMethodInterceptor;
+import com.autsia.codefreeze.impl.callbacks.EqualsMethodInterceptor;
+import com.autsia.codefreeze.impl.callbacks.ExceptionMethodInterceptor;
+import com.autsia.codefreeze.impl.callbacks.FreezingMethodInterceptor;
+import com.autsia.codefreeze.impl.callbacks.HashCodeMethodInterceptor;
+import com.autsia.codefreeze.impl.callbacks.TransientFreezingMethodInterceptor;
 import net.sf.cglib.proxy.CallbackFilter;
+import net.sf.cglib.proxy.Enhancer;
 
 import java.lang.reflect.Method;
+import java.util.*;
+import java.util.stream.BaseStream;
 
 /**
- * CGLIB filter for defining which Callback will be used for intercepting particular method
+ * CGLIB filter for defining which Callback will be used for intercepting particular method.
+ * Every freezing getter gets its own slot: callback with index FREEZING_CALLBACK_INDEX + slot.
+ * hashCode() memoizes its value in the slot following the ones of freezing getters.
  */
 public class ImmutabilityCallbackFilter implements CallbackFilter {
 
-    private static final int EQUALS_CALLBACK_INDEX = 0;
-    private static final int EXCEPTION_CALLBACK_INDEX = 1;
-    private static final int DELEGATING_CALLBACK_INDEX = 2;
-    private static final int FREEZING_CALLBACK_INDEX = 3;
+    public static final int EQUALS_CALLBACK_INDEX = 0;
+    public static final int EXCEPTION_CALLBACK_INDEX = 1;
+    public static final int DELEGATING_CALLBACK_INDEX = 2;
+    public static final int ARRAY_CALLBACK_INDEX = 3;
+    public static final int HASH_CODE_CALLBACK_INDEX = 4;
+    public static final int TRANSIENT_FREEZING_CALLBACK_INDEX = 5;
+    public static final int FREEZING_CALLBACK_INDEX = 6;
 
-    private final CodeFreeze codeFreeze;
     private final Class typeToProxify;
+    private final Map<Method, Integer> callbackIndexes = new HashMap<>();
+    private final int freezingSlotsCount;
 
     /**
      * Initializes ImmutabilityCallbackFilter with with CodeFreeze service and type to proxify
@@ -42,34 +58,130 @@ public class ImmutabilityCallbackFilter implements CallbackFilter {
      * @param typeToProxify Type to proxify with this Filter
      */
     public ImmutabilityCallbackFilter(CodeFreeze codeFreeze, Class typeToProxify) {
-        this.codeFreeze = codeFreeze;
         this.typeToProxify = typeToProxify;
+        // Methods are classified up front, as the number of callbacks has to be known before the class is generated.
+        // CGLIB caches filters along with generated classes, so the filter doesn't keep the CodeFreeze service.
+        List<Method> methods = new ArrayList<>();
+        Enhancer.getMethods(typeToProxify, null, methods);
+        int slot = 0;
+        for (Method method : methods) {
+            int callbackIndex = classify(codeFreeze, method);
+            callbackIndexes.put(method, callbackIndex == FREEZING_CALLBACK_INDEX ? FREEZING_CALLBACK_INDEX + slot++ : callbackIndex);
+        }
+        this.freezingSlotsCount = slot;
     }
 
     @Override
     public int accept(Method method) {
+        Integer callbackIndex = callbackIndexes.get(method);
+        return callbackIndex != null ? callbackIndex : DELEGATING_CALLBACK_INDEX;
+    }
+
+    /**
+     * Returns number of slots: one per freezing getter and one of hashCode()
+     *
+     * @return Number of slots
+     */
+    public int getSlotsCount() {
+        return freezingSlotsCount + 1;
+    }
+
+    /**
+     * Returns number of freezing getters, each of them memoizes its value in its own slot
+     *
+     * @return Number of freezing slots
+     */
+    public int getFreezingSlotsCount() {
+        return freezingSlotsCount;
+    }
+
+    /**
+     * Returns slot, which hashCode() memoizes its value in
+     *
+     * @return Slot index
+     */
+    public int getHashCodeSlot() {
+        return freezingSlotsCount;
+    }
+
+    /**
+     * Returns types of callbacks, indexed the same way as accept() does
+     *
+     * @return Callback types
+     */
+    public Class[] getCallbackTypes() {
+        Class[] callbackTypes = new Class[FREEZING_CALLBACK_INDEX + freezingSlotsCount];
+        callbackTypes[EQUALS_CALLBACK_INDEX] = EqualsMethodInterceptor.class;
+        callbackTypes[EXCEPTION_CALLBACK_INDEX] = ExceptionMethodInterceptor.class;
+        callbackTypes[DELEGATING_CALLBACK_INDEX] = DelegatingMethodInterceptor.class;
+        callbackTypes[ARRAY_CALLBACK_INDEX] = ArrayCopyingMethodInterceptor.class;
+        callbackTypes[HASH_CODE_CALLBACK_INDEX] = HashCodeMethodInterceptor.class;
+        callbackTypes[TRANSIENT_FREEZING_CALLBACK_INDEX] = TransientFreezingMethodInterceptor.class;
+        Arrays.fill(callbackTypes, FREEZING_CALLBACK_INDEX, callbackTypes.length, FreezingMethodInterceptor.class);
+        return callbackTypes;
+    }
+
+    /**
+     * Checks if method is a mutator, which is not allowed to be called on immutable bean
+     *
+     * @param method Method to check
+     * @return True if method is a mutator
+     */
+    public static boolean isMutator(Method method) {
+        return Void.class.equals(method.getReturnType())
+                || method.getName().startsWith("set") || method.getName().startsWith("add") || method.getName().startsWith("remove");
+    }
+
+    /**
+     * Checks if objects of type can be consumed only once, so that their frozen versions can't be memoized
+     *
+     * @param type Type to check
+     * @return True for streams and iterators
+     */
+    public static boolean isSingleUse(Class<?> type) {
+        return BaseStream.class.isAssignableFrom(type) || Iterator.class.isAssignableFrom(type);
+    }
+
+    private static int classify(CodeFreeze codeFreeze, Method method) {
         Class<?> returnType = method.getReturnType();
 
         if ("equals".equals(method.getName())) {
             return EQUALS_CALLBACK_INDEX;
         }
 
-        if (Void.class.equals(returnType)
-                || method.getName().startsWith("set") || method.getName().startsWith("add") || method.getName().startsWith("remove")) {
+        if ("hashCode".equals(method.getName()) && method.getParameterCount() == 0) {
+            return HASH_CODE_CALLBACK_INDEX;
+        }
+
+        if (isMutator(method)) {
             return EXCEPTION_CALLBACK_INDEX;
         }
 
-        if (!codeFreeze.isEnhanceable(returnType) || method.getDeclaringClass().equals(Object.class)) {
+        if (method.getDeclaringClass().equals(Object.class)) {
+            return DELEGATING_CALLBACK_INDEX;
+        }
+
+        if (returnType.isArray()) {
+            // Parameterless getters copy the array once and return its clones, others copy it on every call
+            return method.getParameterCount() == 0 && isGetter(method) ? FREEZING_CALLBACK_INDEX : ARRAY_CALLBACK_INDEX;
+        }
+
+        if (!codeFreeze.isEnhanceable(returnType)) {
             return DELEGATING_CALLBACK_INDEX;
         }
 
-        if (method.getName().startsWith("get") || method.getName().startsWith("is")) {
-            return FREEZING_CALLBACK_INDEX;
+        if (isGetter(method)) {
+            // Results of methods with parameters depend on them, streams and iterators can be consumed only once
+            return method.getParameterCount() == 0 && !isSingleUse(returnType) ? FREEZING_CALLBACK_INDEX : TRANSIENT_FREEZING_CALLBACK_INDEX;
         }
 
         return DELEGATING_CALLBACK_INDEX;
     }
 
+    private static boolean isGetter(Method method) {
+        return method.getName().startsWith("get") || method.getName().startsWith("is");
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,74 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.filters;
+
+import net.sf.cglib.proxy.CallbackFilter;
+
+import java.lang.reflect.Method;
+
+/**
+ * CGLIB filter for snapshot classes: mutators and methods returning arrays are intercepted,
+ * the rest of methods work on copied state as is
+ */
+public class SnapshotCallbackFilter implements CallbackFilter {
+
+    public static final int NO_OP_CALLBACK_INDEX = 0;
+    public static final int MUTATOR_CALLBACK_INDEX = 1;
+    public static final int ARRAY_CALLBACK_INDEX = 2;
+
+    private final Class typeToSnapshot;
+
+    /**
+     * Initializes SnapshotCallbackFilter with type to snapshot
+     *
+     * @param typeToSnapshot Type to generate snapshot class for
+     */
+    public SnapshotCallbackFilter(Class typeToSnapshot) {
+        this.typeToSnapshot = typeToSnapshot;
+    }
+
+    @Override
+    public int accept(Method method) {
+        if (method.getDeclaringClass().equals(Object.class)) {
+            return NO_OP_CALLBACK_INDEX;
+        }
+        if (ImmutabilityCallbackFilter.isMutator(method)) {
+            return MUTATOR_CALLBACK_INDEX;
+        }
+        if (method.getReturnType().isArray()) {
+            return ARRAY_CALLBACK_INDEX;
+        }
+        return NO_OP_CALLBACK_INDEX;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        SnapshotCallbackFilter that = (SnapshotCallbackFilter) o;
+
+        return typeToSnapshot.equals(that.typeToSnapshot);
+
+    }
+
+    @Override
+    public int hashCode() {
+        return typeToSnapshot.hashCode();
+    }
+
+}
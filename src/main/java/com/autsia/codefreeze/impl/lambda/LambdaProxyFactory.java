@@ -0,0 +1,77 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.lambda;
+
+import com.autsia.codefreeze.CodeFreeze;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+
+/**
+ * Factory of frozen views generated by {@link LambdaProxyGenerator}
+ */
+public class LambdaProxyFactory {
+
+    // Accessor tables are handed over to static initializers of generated classes by class name
+    private static final ConcurrentMap<String, Object[]> PENDING_ACCESSORS = new ConcurrentHashMap<>();
+
+    private final BiFunction<Object, CodeFreeze, Object> constructor;
+
+    /**
+     * Initializes LambdaProxyFactory with constructor of generated class
+     *
+     * @param constructor Constructor bound to functional interface
+     */
+    LambdaProxyFactory(BiFunction<Object, CodeFreeze, Object> constructor) {
+        this.constructor = constructor;
+    }
+
+    /**
+     * Creates frozen view of bean
+     *
+     * @param delegate Bean to make immutable
+     * @param context  CodeFreeze service to be used for freezing of objects returned by getters
+     * @return Immutable version of bean
+     */
+    public Object newInstance(Object delegate, CodeFreeze context) {
+        return constructor.apply(delegate, context);
+    }
+
+    static void registerAccessors(String proxyClassName, Object[] accessors) {
+        PENDING_ACCESSORS.put(proxyClassName, accessors);
+    }
+
+    static void discardAccessors(String proxyClassName) {
+        PENDING_ACCESSORS.remove(proxyClassName);
+    }
+
+    /**
+     * Takes accessor table of generated class, is called from its static initializer
+     *
+     * @param proxyClassName Name of generated class
+     * @return Accessors to be stored in static final fields
+     */
+    public static Object[] takeAccessors(String proxyClassName) {
+        Object[] accessors = PENDING_ACCESSORS.remove(proxyClassName);
+        if (accessors == null) {
+            throw new IllegalStateException("No accessors registered for " + proxyClassName);
+        }
+        return accessors;
+    }
+
+}
@@ -0,0 +1,443 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.lambda;
+
+import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.Frozen;
+import com.autsia.codefreeze.FrozenArrays;
+import com.autsia.codefreeze.impl.filters.ImmutabilityCallbackFilter;
+import net.sf.cglib.core.*;
+import net.sf.cglib.proxy.Enhancer;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.*;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Generates frozen subclasses of beans without CGLIB Enhancer and its interceptors. Getters go through
+ * {@link Function}s bound to bean methods with {@link LambdaMetafactory}, the rest of delegated methods go through
+ * exact {@link MethodHandle} invocations. Both are kept in static final fields of generated class,
+ * so JIT treats them as constants and inlines the whole call chain down to the bean method.
+ * Methods are classified with {@link ImmutabilityCallbackFilter}, the same way CGLIB proxies do.
+ */
+public class LambdaProxyGenerator {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private static final String CLASS_SUFFIX = "$$FrozenByLambda$$";
+    private static final String DELEGATE_FIELD = "CODEFREEZE$DELEGATE";
+    private static final String CONTEXT_FIELD = "CODEFREEZE$CONTEXT";
+    private static final String ACCESSOR_FIELD = "CODEFREEZE$ACCESSOR_";
+    private static final String SLOT_FIELD = "CODEFREEZE$SLOT_";
+    private static final String HASH_CODE_FIELD = "CODEFREEZE$HASH_CODE";
+    private static final String UPDATER_SUFFIX = "$UPDATER";
+
+    private static final Type OBJECT = Type.getType(Object.class);
+    private static final Type CODE_FREEZE = Type.getType(CodeFreeze.class);
+    private static final Type FUNCTION = Type.getType(Function.class);
+    private static final Type METHOD_HANDLE = Type.getType(MethodHandle.class);
+    private static final Type FACTORY = Type.getType(LambdaProxyFactory.class);
+    private static final Type UPDATER = Type.getType(AtomicReferenceFieldUpdater.class);
+    private static final Signature APPLY = TypeUtils.parseSignature("Object apply(Object)");
+    private static final Signature FREEZE = TypeUtils.parseSignature("Object freeze(Object)");
+    private static final Type FROZEN_ARRAYS = Type.getType(FrozenArrays.class);
+    private static final Signature COPY = new Signature("copy", OBJECT, new Type[]{OBJECT, CODE_FREEZE});
+    private static final Signature CLONE = new Signature("clone", OBJECT, new Type[]{OBJECT});
+    private static final Signature EQUALS = TypeUtils.parseSignature("boolean equals(Object)");
+    private static final Signature TAKE_ACCESSORS = TypeUtils.parseSignature("Object[] takeAccessors(String)");
+    private static final Signature NEW_UPDATER = new Signature("newUpdater", UPDATER,
+            new Type[]{Type.getType(Class.class), Type.getType(Class.class), Type.getType(String.class)});
+    private static final Signature COMPARE_AND_SET = TypeUtils.parseSignature("boolean compareAndSet(Object, Object, Object)");
+    private static final Signature CONSTRUCTOR = new Signature(Constants.CONSTRUCTOR_NAME, Type.VOID_TYPE, new Type[]{OBJECT, CODE_FREEZE});
+
+    private final CodeFreeze codeFreeze;
+
+    /**
+     * Initializes LambdaProxyGenerator with CodeFreeze service
+     *
+     * @param codeFreeze CodeFreeze service instance, used for classification of getters
+     */
+    public LambdaProxyGenerator(CodeFreeze codeFreeze) {
+        this.codeFreeze = codeFreeze;
+    }
+
+    /**
+     * Generates frozen subclass of type
+     *
+     * @param type Type to generate frozen subclass for
+     * @return Factory of frozen views
+     */
+    @SuppressWarnings("unchecked")
+    public LambdaProxyFactory generate(Class<?> type) {
+        String className = getClassName(type);
+        ClassLoader classLoader = type.getClassLoader() != null ? type.getClassLoader() : getClass().getClassLoader();
+        List<Object> accessors = new ArrayList<>();
+        byte[] bytes = emit(type, className, accessors);
+        LambdaProxyFactory.registerAccessors(className, accessors.toArray());
+        try {
+            Class<?> proxyClass = ReflectUtils.defineClass(className, bytes, classLoader);
+            MethodHandle constructor = LOOKUP.findConstructor(proxyClass, MethodType.methodType(void.class, Object.class, CodeFreeze.class));
+            if (!isVisible(proxyClass)) {
+                MethodHandle genericConstructor = constructor.asType(MethodType.methodType(Object.class, Object.class, CodeFreeze.class));
+                return new LambdaProxyFactory((delegate, context) -> invoke(() -> genericConstructor.invokeExact(delegate, context)));
+            }
+            CallSite callSite = LambdaMetafactory.metafactory(LOOKUP, "apply", MethodType.methodType(BiFunction.class),
+                    MethodType.methodType(Object.class, Object.class, Object.class), constructor,
+                    MethodType.methodType(proxyClass, Object.class, CodeFreeze.class));
+            return new LambdaProxyFactory((BiFunction<Object, CodeFreeze, Object>) callSite.getTarget().invoke());
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to generate frozen class for " + type.getName(), e);
+        } finally {
+            // Static initializer has already taken the accessors unless the class failed to load
+            LambdaProxyFactory.discardAccessors(className);
+        }
+    }
+
+    private static String getClassName(Class<?> type) {
+        String className = type.getName() + CLASS_SUFFIX + COUNTER.getAndIncrement();
+        // Classes can't be defined in java.* packages
+        return className.startsWith("java.") ? LambdaProxyGenerator.class.getPackage().getName() + "." + className : className;
+    }
+
+    private byte[] emit(Class<?> type, String className, List<Object> accessors) {
+        Type superType = Type.getType(type);
+        ImmutabilityCallbackFilter callbackFilter = new ImmutabilityCallbackFilter(codeFreeze, type);
+        DebuggingClassWriter classWriter = new DebuggingClassWriter(ClassWriter.COMPUTE_FRAMES);
+        ClassEmitter ce = new ClassEmitter(classWriter);
+        ce.begin_class(Opcodes.V1_8, Constants.ACC_PUBLIC, className, superType, new Type[]{Type.getType(Frozen.class)}, Constants.SOURCE_FILE);
+        ce.declare_field(Constants.ACC_PRIVATE | Constants.ACC_FINAL, DELEGATE_FIELD, superType, null);
+        ce.declare_field(Constants.ACC_PRIVATE | Constants.ACC_FINAL, CONTEXT_FIELD, CODE_FREEZE, null);
+
+        CodeEmitter e = ce.begin_method(Constants.ACC_PUBLIC, CONSTRUCTOR, null);
+        e.load_this();
+        e.super_invoke_constructor();
+        e.load_this();
+        e.load_arg(0);
+        e.checkcast(superType);
+        e.putfield(DELEGATE_FIELD);
+        e.load_this();
+        e.load_arg(1);
+        e.putfield(CONTEXT_FIELD);
+        e.return_value();
+        e.end_method();
+
+        List<Method> methods = new ArrayList<>();
+        Enhancer.getMethods(type, null, methods);
+        int slotsCount = 0;
+        for (Method method : methods) {
+            if (method.getDeclaringClass() == Object.class && !Modifier.isPublic(method.getModifiers())) {
+                // Neither clone() nor finalize() have anything to delegate
+                continue;
+            }
+            int callbackIndex = callbackFilter.accept(method);
+            e = begin_method(ce, method);
+            switch (callbackIndex) {
+                case ImmutabilityCallbackFilter.EQUALS_CALLBACK_INDEX:
+                    emitEquals(ce, e);
+                    break;
+                case ImmutabilityCallbackFilter.EXCEPTION_CALLBACK_INDEX:
+                    e.throw_exception(Type.getType(UnsupportedOperationException.class),
+                            type.getSimpleName() + " class is immutable: mutators execution is not allowed.");
+                    break;
+                case ImmutabilityCallbackFilter.DELEGATING_CALLBACK_INDEX:
+                    emitDelegation(ce, e, method, superType, accessors, false);
+                    e.return_value();
+                    break;
+                case ImmutabilityCallbackFilter.HASH_CODE_CALLBACK_INDEX:
+                    emitMemoizedHashCode(ce, e, method, superType, accessors);
+                    break;
+                case ImmutabilityCallbackFilter.ARRAY_CALLBACK_INDEX:
+                    emitDelegation(ce, e, method, superType, accessors, false);
+                    e.load_this();
+                    e.getfield(CONTEXT_FIELD);
+                    e.invoke_static(FROZEN_ARRAYS, COPY);
+                    e.checkcast(Type.getType(method.getReturnType()));
+                    e.return_value();
+                    break;
+                case ImmutabilityCallbackFilter.TRANSIENT_FREEZING_CALLBACK_INDEX:
+                    emitDelegation(ce, e, method, superType, accessors, true);
+                    e.checkcast(Type.getType(method.getReturnType()));
+                    e.return_value();
+                    break;
+                default:
+                    emitMemoizedFreezing(ce, e, method, superType, accessors, SLOT_FIELD + slotsCount++);
+            }
+            e.end_method();
+        }
+
+        e = ce.begin_static();
+        for (int slot = 0; slot < slotsCount; slot++) {
+            EmitUtils.load_class(e, ce.getClassType());
+            EmitUtils.load_class(e, OBJECT);
+            e.push(SLOT_FIELD + slot);
+            e.invoke_static(UPDATER, NEW_UPDATER);
+            e.putstatic(ce.getClassType(), SLOT_FIELD + slot + UPDATER_SUFFIX, UPDATER);
+        }
+        e.push(className);
+        e.invoke_static(FACTORY, TAKE_ACCESSORS);
+        for (int i = 0; i < accessors.size(); i++) {
+            Type accessorType = accessors.get(i) instanceof Function ? FUNCTION : METHOD_HANDLE;
+            e.dup();
+            e.aaload(i);
+            e.checkcast(accessorType);
+            e.putstatic(ce.getClassType(), ACCESSOR_FIELD + i, accessorType);
+        }
+        e.pop();
+        e.return_value();
+        e.end_method();
+
+        ce.end_class();
+        return classWriter.toByteArray();
+    }
+
+    /**
+     * Begins overriding method, which calls superclass implementation while bean constructor is running
+     */
+    private static CodeEmitter begin_method(ClassEmitter ce, Method method) {
+        Signature signature = ReflectUtils.getSignature(method);
+        int access = method.getModifiers() & (Constants.ACC_PUBLIC | Constants.ACC_PROTECTED);
+        CodeEmitter e = ce.begin_method(access, signature, ReflectUtils.getExceptionTypes(method));
+        if (!Modifier.isAbstract(method.getModifiers())) {
+            Label constructed = e.make_label();
+            e.load_this();
+            e.getfield(DELEGATE_FIELD);
+            e.ifnonnull(constructed);
+            e.load_this();
+            e.load_args();
+            e.super_invoke(signature);
+            e.return_value();
+            e.mark(constructed);
+        }
+        return e;
+    }
+
+    private static void emitEquals(ClassEmitter ce, CodeEmitter e) {
+        // Frozen instances of the same object are equal without comparing the object
+        Label isNull = e.make_label();
+        Label isOther = e.make_label();
+        Label isSame = e.make_label();
+        e.load_arg(0);
+        e.load_this();
+        e.if_cmp(OBJECT, CodeEmitter.EQ, isSame);
+        e.load_arg(0);
+        e.instance_of(ce.getClassType());
+        e.if_jump(CodeEmitter.EQ, isOther);
+        e.load_arg(0);
+        e.checkcast(ce.getClassType());
+        e.getfield(ce.getClassType(), DELEGATE_FIELD, ce.getClassInfo().getSuperType());
+        e.load_this();
+        e.getfield(DELEGATE_FIELD);
+        e.if_cmp(OBJECT, CodeEmitter.EQ, isSame);
+        e.mark(isOther);
+        e.load_arg(0);
+        e.dup();
+        e.ifnull(isNull);
+        e.load_this();
+        e.getfield(DELEGATE_FIELD);
+        e.invoke_virtual(OBJECT, EQUALS);
+        e.return_value();
+        e.mark(isNull);
+        e.pop();
+        e.push(false);
+        e.return_value();
+        e.mark(isSame);
+        e.push(true);
+        e.return_value();
+    }
+
+    /**
+     * Emits hashCode(), which keeps hash code of delegate in the field, zero hash code is computed every time
+     */
+    private static void emitMemoizedHashCode(ClassEmitter ce, CodeEmitter e, Method method, Type superType,
+                                             List<Object> accessors) {
+        ce.declare_field(Constants.ACC_PRIVATE, HASH_CODE_FIELD, Type.INT_TYPE, null);
+        Label memoized = e.make_label();
+        e.load_this();
+        e.getfield(HASH_CODE_FIELD);
+        e.dup();
+        e.if_jump(CodeEmitter.NE, memoized);
+        e.pop();
+        emitDelegation(ce, e, method, superType, accessors, false);
+        e.dup();
+        e.load_this();
+        e.swap();
+        e.putfield(HASH_CODE_FIELD);
+        e.mark(memoized);
+        e.return_value();
+    }
+
+    /**
+     * Emits call of delegate's method, leaving its result on the stack: boxed one in case of freezing
+     */
+    private static void emitDelegation(ClassEmitter ce, CodeEmitter e, Method method, Type superType,
+                                       List<Object> accessors, boolean freezing) {
+        if (freezing) {
+            e.load_this();
+            e.getfield(CONTEXT_FIELD);
+        }
+        if (method.getParameterCount() == 0 && !method.getReturnType().isPrimitive()) {
+            getstatic(ce, e, accessors, getter(method), FUNCTION);
+            e.load_this();
+            e.getfield(DELEGATE_FIELD);
+            e.invoke_interface(FUNCTION, APPLY);
+            if (!freezing) {
+                e.checkcast(Type.getType(method.getReturnType()));
+            }
+        } else {
+            Class<?> returnType = freezing ? Object.class : method.getReturnType();
+            MethodType methodType = MethodType.methodType(returnType, method.getParameterTypes()).insertParameterTypes(0, method.getDeclaringClass());
+            MethodHandle handle = unreflect(method).asType(methodType.changeParameterType(0, Object.class));
+            getstatic(ce, e, accessors, handle, METHOD_HANDLE);
+            e.load_this();
+            e.getfield(DELEGATE_FIELD);
+            e.load_args();
+            Type[] parameterTypes = Type.getArgumentTypes(method);
+            Type[] argumentTypes = new Type[parameterTypes.length + 1];
+            argumentTypes[0] = OBJECT;
+            System.arraycopy(parameterTypes, 0, argumentTypes, 1, parameterTypes.length);
+            e.invoke_virtual(METHOD_HANDLE, new Signature("invokeExact", Type.getType(returnType), argumentTypes));
+        }
+        if (freezing) {
+            e.invoke_interface(CODE_FREEZE, FREEZE);
+        }
+    }
+
+    /**
+     * Emits freezing getter, which keeps frozen value in its own slot field. The first value set to the slot
+     * wins, so that concurrent callers get the same instance. Memoized arrays are returned as their clones.
+     */
+    private static void emitMemoizedFreezing(ClassEmitter ce, CodeEmitter e, Method method, Type superType,
+                                             List<Object> accessors, String slotField) {
+        ce.declare_field(Constants.ACC_PRIVATE | Constants.ACC_VOLATILE, slotField, OBJECT, null);
+        ce.declare_field(Constants.ACC_PRIVATE | Constants.ACC_STATIC | Constants.ACC_FINAL, slotField + UPDATER_SUFFIX, UPDATER, null);
+        Label memoized = e.make_label();
+        Label lost = e.make_label();
+        e.load_this();
+        e.getfield(slotField);
+        e.dup();
+        e.ifnonnull(memoized);
+        e.pop();
+        emitDelegation(ce, e, method, superType, accessors, true);
+        Local value = e.make_local(OBJECT);
+        e.store_local(value);
+        e.getstatic(ce.getClassType(), slotField + UPDATER_SUFFIX, UPDATER);
+        e.load_this();
+        e.aconst_null();
+        e.load_local(value);
+        e.invoke_virtual(UPDATER, COMPARE_AND_SET);
+        e.if_jump(CodeEmitter.EQ, lost);
+        e.load_local(value);
+        e.goTo(memoized);
+        e.mark(lost);
+        e.load_this();
+        e.getfield(slotField);
+        e.mark(memoized);
+        if (method.getReturnType().isArray()) {
+            e.invoke_static(FROZEN_ARRAYS, CLONE);
+        }
+        e.checkcast(Type.getType(method.getReturnType()));
+        e.return_value();
+    }
+
+    private static void getstatic(ClassEmitter ce, CodeEmitter e, List<Object> accessors, Object accessor, Type accessorType) {
+        String field = ACCESSOR_FIELD + accessors.size();
+        accessors.add(accessor);
+        ce.declare_field(Constants.ACC_PRIVATE | Constants.ACC_STATIC | Constants.ACC_FINAL, field, accessorType, null);
+        e.getstatic(ce.getClassType(), field, accessorType);
+    }
+
+    /**
+     * Binds getter to {@link Function} with LambdaMetafactory, falling back to method handle for the getters
+     * which are not public or come from class loaders, which the lambda classes can't see
+     */
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> getter(Method method) {
+        MethodHandle handle = unreflect(method);
+        if (isPublic(method.getDeclaringClass()) && isPublic(method.getReturnType()) && Modifier.isPublic(method.getModifiers())
+                && isVisible(method.getDeclaringClass()) && isVisible(method.getReturnType())) {
+            try {
+                CallSite callSite = LambdaMetafactory.metafactory(LOOKUP, "apply", MethodType.methodType(Function.class),
+                        MethodType.methodType(Object.class, Object.class), handle,
+                        MethodType.methodType(method.getReturnType(), method.getDeclaringClass()));
+                return (Function<Object, Object>) callSite.getTarget().invoke();
+            } catch (Throwable e) {
+                // Fall back to method handle
+            }
+        }
+        MethodHandle genericHandle = handle.asType(MethodType.methodType(Object.class, Object.class));
+        return bean -> invoke(() -> genericHandle.invokeExact(bean));
+    }
+
+    private static Object invoke(Invocation invocation) {
+        try {
+            return invocation.invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        try {
+            if (!isPublic(method.getDeclaringClass()) || !Modifier.isPublic(method.getModifiers())) {
+                method.setAccessible(true);
+            }
+            return LOOKUP.unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isVisible(Class<?> type) {
+        if (type.isPrimitive() || type.getClassLoader() == null) {
+            return true;
+        }
+        try {
+            return Class.forName(type.getName(), false, LambdaProxyGenerator.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static boolean isPublic(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        return type.isPrimitive() || Modifier.isPublic(type.getModifiers());
+    }
+
+    @FunctionalInterface
+    private interface Invocation {
+        Object invoke() throws Throwable;
+    }
+
+}
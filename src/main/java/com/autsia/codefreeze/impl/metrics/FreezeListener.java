@@ -0,0 +1,78 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.metrics;
+
+/**
+ * Listener of freezing events. Methods are called on the freezing threads, so they have to be fast and thread-safe.
+ * Every method does nothing by default.
+ */
+public interface FreezeListener {
+
+    /**
+     * Called when immutable version of bean is created
+     *
+     * @param type Type of bean
+     */
+    default void onProxyCreated(Class<?> type) {
+    }
+
+    /**
+     * Called when factory of immutable versions of type is requested
+     *
+     * @param type Type of bean
+     */
+    default void onFactoryLookup(Class<?> type) {
+    }
+
+    /**
+     * Called when factory isn't cached, so that its class had to be generated
+     *
+     * @param type           Type of bean
+     * @param durationNanos Time it took to generate class and create factory
+     */
+    default void onClassGenerated(Class<?> type, long durationNanos) {
+    }
+
+    /**
+     * Called when list, set or map is frozen
+     *
+     * @param size Number of elements or entries
+     */
+    default void onCollectionFrozen(int size) {
+    }
+
+    /**
+     * Called when freezing getter returns memoized frozen value
+     */
+    default void onMemoHit() {
+    }
+
+    /**
+     * Called when freezing getter freezes the value returned by bean
+     */
+    default void onMemoMiss() {
+    }
+
+    /**
+     * Called when mutator call is rejected
+     *
+     * @param type Type of bean
+     */
+    default void onMutatorRejected(Class<?> type) {
+    }
+
+}
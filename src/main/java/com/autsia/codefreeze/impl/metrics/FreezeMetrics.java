@@ -0,0 +1,190 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Listener which counts freezing events with {@link LongAdder}s, so that contended updates don't slow freezing down.
+ * Counters are exposed through JMX once {@link #registerMBean(String)} is called.
+ * Types are counted by their names, so that classes of redeployed applications are not retained.
+ */
+public class FreezeMetrics implements FreezeListener, FreezeMetricsMXBean {
+
+    private final LongAdder proxiesCreated = new LongAdder();
+    private final ConcurrentMap<String, LongAdder> proxiesCreatedByType = new ConcurrentHashMap<>();
+    private final LongAdder factoryLookups = new LongAdder();
+    private final LongAdder classesGenerated = new LongAdder();
+    private final LongAdder classGenerationNanos = new LongAdder();
+    private final LongAdder collectionsFrozen = new LongAdder();
+    private final LongAdder collectionElementsFrozen = new LongAdder();
+    private final LongAdder memoHits = new LongAdder();
+    private final LongAdder memoMisses = new LongAdder();
+    private final LongAdder rejectedMutatorCalls = new LongAdder();
+
+    @Override
+    public void onProxyCreated(Class<?> type) {
+        proxiesCreated.increment();
+        proxiesCreatedByType.computeIfAbsent(type.getName(), name -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void onFactoryLookup(Class<?> type) {
+        factoryLookups.increment();
+    }
+
+    @Override
+    public void onClassGenerated(Class<?> type, long durationNanos) {
+        classesGenerated.increment();
+        classGenerationNanos.add(durationNanos);
+    }
+
+    @Override
+    public void onCollectionFrozen(int size) {
+        collectionsFrozen.increment();
+        collectionElementsFrozen.add(size);
+    }
+
+    @Override
+    public void onMemoHit() {
+        memoHits.increment();
+    }
+
+    @Override
+    public void onMemoMiss() {
+        memoMisses.increment();
+    }
+
+    @Override
+    public void onMutatorRejected(Class<?> type) {
+        rejectedMutatorCalls.increment();
+    }
+
+    @Override
+    public long getProxiesCreated() {
+        return proxiesCreated.sum();
+    }
+
+    @Override
+    public Map<String, Long> getProxiesCreatedByType() {
+        Map<String, Long> counts = new TreeMap<>();
+        proxiesCreatedByType.forEach((type, count) -> counts.put(type, count.sum()));
+        return counts;
+    }
+
+    @Override
+    public long getFactoryCacheHits() {
+        // Counters are read one by one, so concurrent lookup could make the difference negative for a moment
+        return Math.max(0, factoryLookups.sum() - classesGenerated.sum());
+    }
+
+    @Override
+    public long getFactoryCacheMisses() {
+        return classesGenerated.sum();
+    }
+
+    @Override
+    public long getClassGenerationTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(classGenerationNanos.sum());
+    }
+
+    @Override
+    public long getCollectionsFrozen() {
+        return collectionsFrozen.sum();
+    }
+
+    @Override
+    public long getCollectionElementsFrozen() {
+        return collectionElementsFrozen.sum();
+    }
+
+    @Override
+    public long getMemoHits() {
+        return memoHits.sum();
+    }
+
+    @Override
+    public long getMemoMisses() {
+        return memoMisses.sum();
+    }
+
+    @Override
+    public long getRejectedMutatorCalls() {
+        return rejectedMutatorCalls.sum();
+    }
+
+    @Override
+    public void reset() {
+        proxiesCreated.reset();
+        proxiesCreatedByType.clear();
+        factoryLookups.reset();
+        classesGenerated.reset();
+        classGenerationNanos.reset();
+        collectionsFrozen.reset();
+        collectionElementsFrozen.reset();
+        memoHits.reset();
+        memoMisses.reset();
+        rejectedMutatorCalls.reset();
+    }
+
+    /**
+     * Registers metrics in the platform MBean server
+     *
+     * @param name Name distinguishing CodeFreeze instances, e.g. application name
+     * @return Object name the metrics are registered with
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = getObjectName(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to register metrics MBean " + name, e);
+        }
+    }
+
+    /**
+     * Unregisters metrics from the platform MBean server
+     *
+     * @param name Name metrics were registered with
+     */
+    public void unregisterMBean(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = getObjectName(name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to unregister metrics MBean " + name, e);
+        }
+    }
+
+    private static ObjectName getObjectName(String name) throws JMException {
+        return new ObjectName("com.autsia.codefreeze:type=FreezeMetrics,name=" + ObjectName.quote(name));
+    }
+
+}
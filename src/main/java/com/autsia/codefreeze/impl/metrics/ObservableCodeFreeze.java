@@ -0,0 +1,44 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.metrics;
+
+import com.autsia.codefreeze.CodeFreeze;
+
+/**
+ * CodeFreeze service, which reports freezing events to the listener. Callbacks shared between proxies take
+ * the listener from the context of the proxy, so that caches of callbacks don't retain the service.
+ */
+public interface ObservableCodeFreeze extends CodeFreeze {
+
+    /**
+     * Returns listener of freezing events
+     *
+     * @return Freeze listener or null if there's no listener
+     */
+    FreezeListener getListener();
+
+    /**
+     * Returns listener of the service, which has frozen the object
+     *
+     * @param context CodeFreeze service which an immutable object has been created by
+     * @return Freeze listener or null if there's no listener
+     */
+    static FreezeListener listenerOf(CodeFreeze context) {
+        return context instanceof ObservableCodeFreeze ? ((ObservableCodeFreeze) context).getListener() : null;
+    }
+
+}
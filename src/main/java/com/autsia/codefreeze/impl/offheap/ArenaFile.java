@@ -0,0 +1,266 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.offheap;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * File, which {@link OffHeapArena} is persisted to, so that frozen graphs can be read after restart of the JVM
+ * without freezing them again. The file is laid out as follows:
+ * <ul>
+ * <li>header: magic number, format version, size of the arena and reference of the root value</li>
+ * <li>content of the arena as is</li>
+ * <li>type table: names of registered types in the order of their ids, with signatures of bean layouts
+ * and names of enum constants</li>
+ * </ul>
+ * Mapping the file reads nothing but the header and the type table: the content is mapped with
+ * {@link FileChannel#map} and decoded by flyweight views on access, page by page. Offsets within the arena are ints,
+ * so the content is limited to 2 GB.
+ */
+public class ArenaFile {
+
+    private static final int MAGIC = 0x5A465243;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private static final Map<String, Class<?>> PRIMITIVE_TYPES = new HashMap<>();
+
+    static {
+        for (Class<?> type : Arrays.asList(boolean.class, byte.class, char.class, short.class, int.class,
+                float.class, long.class, double.class)) {
+            PRIMITIVE_TYPES.put(type.getName(), type);
+        }
+    }
+
+    private final Path path;
+    private final ClassLoader classLoader;
+    private int root = OffHeapArena.NULL_REFERENCE;
+
+    /**
+     * Initializes ArenaFile with the path of the file and the class loader to load stored types with
+     *
+     * @param path        Path of the file
+     * @param classLoader Class loader of the stored types
+     */
+    public ArenaFile(Path path, ClassLoader classLoader) {
+        this.path = path;
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Writes content of the arena to the file, replacing the file if it exists. The content is written to
+     * the temporary file in the same directory first, which is then atomically moved over the file, if the file
+     * system allows it. Caller should hold the lock of the arena, so that nothing is written to the arena meanwhile.
+     *
+     * @param arena Arena to persist
+     * @param root  Reference of the value to read when the file is mapped
+     * @param path  Path of the file
+     * @throws IOException if the file can't be written
+     */
+    public static void write(OffHeapArena arena, int root, Path path) throws IOException {
+        int size = arena.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(root).flip();
+        ByteBuffer content = arena.buffer().duplicate();
+        content.position(0).limit(size);
+        ByteBuffer typeTable = typeTable(arena);
+        // The file is written next to the target and moved over it, so that a crash never leaves it half-written
+        Path directory = path.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ByteBuffer[] buffers = {header, content, typeTable};
+                while (typeTable.hasRemaining()) {
+                    channel.write(buffers);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static ByteBuffer typeTable(OffHeapArena arena) {
+        int typeCount = arena.typeCount();
+        List<byte[]> strings = new ArrayList<>(typeCount * 2);
+        int size = 4;
+        for (int typeId = 0; typeId < typeCount; typeId++) {
+            byte[] name = arena.type(typeId).getName().getBytes(StandardCharsets.UTF_8);
+            byte[] signature = signature(arena.type(typeId), arena.factory(typeId)).getBytes(StandardCharsets.UTF_8);
+            strings.add(name);
+            strings.add(signature);
+            size += 1 + 4 + name.length + 4 + signature.length;
+        }
+        ByteBuffer typeTable = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        typeTable.putInt(typeCount);
+        for (int typeId = 0; typeId < typeCount; typeId++) {
+            typeTable.put(arena.factory(typeId) != null ? (byte) 1 : (byte) 0);
+            for (byte[] string : strings.subList(typeId * 2, typeId * 2 + 2)) {
+                typeTable.putInt(string.length).put(string);
+            }
+        }
+        typeTable.flip();
+        return typeTable;
+    }
+
+    /**
+     * Returns signature of the type, which stored values depend on: layout of beans and constants of enums
+     */
+    private static String signature(Class<?> type, FlyweightFactory factory) {
+        if (factory != null) {
+            return factory.getLayout().getSignature();
+        }
+        if (type.isEnum()) {
+            StringJoiner signature = new StringJoiner(",");
+            for (Object constant : type.getEnumConstants()) {
+                signature.add(((Enum<?>) constant).name());
+            }
+            return signature.toString();
+        }
+        return "";
+    }
+
+    /**
+     * Maps the file to memory and restores the arena from it. The file is mapped read-only, so the restored arena
+     * is full: nothing more can be written to it.
+     *
+     * @param factories Factories of flyweight views by bean type
+     * @return Restored arena
+     * @throws IOException if the file can't be read, isn't the arena file or its types don't match the loaded ones
+     */
+    public OffHeapArena map(Function<Class<?>, FlyweightFactory> factories) throws IOException {
+        OffHeapArena arena;
+        List<StoredType> storedTypes = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = read(channel, 0, HEADER_SIZE);
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException(path + " is not the arena file");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(path + " has unsupported format version " + version);
+            }
+            int size = header.getInt();
+            root = header.getInt();
+            long typeTableOffset = HEADER_SIZE + (long) size;
+            if (size < 0 || typeTableOffset > channel.size() || channel.size() - typeTableOffset > Integer.MAX_VALUE) {
+                throw new IOException(path + " is truncated or corrupted");
+            }
+            // Only the content is mapped, mapping stays valid after the channel is closed
+            arena = new OffHeapArena(channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, size), size);
+            ByteBuffer typeTable = read(channel, typeTableOffset, (int) (channel.size() - typeTableOffset));
+            int typeCount = typeTable.getInt();
+            for (int typeId = 0; typeId < typeCount; typeId++) {
+                boolean bean = typeTable.get() != 0;
+                storedTypes.add(new StoredType(getString(typeTable), bean, getString(typeTable)));
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException(path + " is truncated or corrupted", e);
+        }
+        for (StoredType storedType : storedTypes) {
+            restoreType(arena, storedType, factories);
+        }
+        return arena;
+    }
+
+    private void restoreType(OffHeapArena arena, StoredType storedType,
+                             Function<Class<?>, FlyweightFactory> factories) throws IOException {
+        Class<?> type = loadType(storedType.name);
+        FlyweightFactory factory = storedType.bean ? factories.apply(type) : null;
+        String signature = signature(type, factory);
+        if (!storedType.signature.equals(signature)) {
+            throw new IOException(storedType.name + " has changed since " + path + " was written: values stored as "
+                    + storedType.signature + " can't be read as " + signature);
+        }
+        // Types are registered in the order of their ids, so that restored ids are the same as stored ones
+        arena.typeId(type, factory);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Class<?> loadType(String name) throws IOException {
+        Class<?> type = PRIMITIVE_TYPES.get(name);
+        if (type != null) {
+            return type;
+        }
+        try {
+            return Class.forName(name, false, classLoader);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Type " + name + " stored in " + path + " is not found", e);
+        }
+    }
+
+    /**
+     * Returns reference of the root value, read by {@link #map}
+     *
+     * @return Reference of the root value
+     */
+    public int getRoot() {
+        return root;
+    }
+
+    private static class StoredType {
+
+        private final String name;
+        private final boolean bean;
+        private final String signature;
+
+        StoredType(String name, boolean bean, String signature) {
+            this.name = name;
+            this.bean = bean;
+            this.signature = signature;
+        }
+
+    }
+
+}
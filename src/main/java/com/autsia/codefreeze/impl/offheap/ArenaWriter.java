@@ -0,0 +1,340 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.offheap;
+
+import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.Frozen;
+import com.autsia.codefreeze.impl.ImmutableTypes;
+import com.autsia.codefreeze.impl.filters.ImmutabilityCallbackFilter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Writes bean graph into {@link OffHeapArena} within single freezing. Objects shared within the graph, including
+ * cyclic references, are written once. Space of beans and containers is allocated first and filled afterwards,
+ * so that the graph is walked without recursion and deep graphs don't overflow the stack.
+ */
+public class ArenaWriter {
+
+    private final OffHeapArena arena;
+    private final CodeFreeze codeFreeze;
+    private final Function<Class<?>, FlyweightFactory> factories;
+    private final ByteBuffer buffer;
+    private final Map<Object, Integer> references = new IdentityHashMap<>();
+    private final Deque<Object> unfilled = new ArrayDeque<>();
+
+    /**
+     * Initializes ArenaWriter, the caller has to hold the lock of the arena while writing
+     *
+     * @param arena      Arena to write to
+     * @param codeFreeze CodeFreeze service instance, used for telling beans from other objects
+     * @param factories  Factories of flyweight views by bean type
+     */
+    public ArenaWriter(OffHeapArena arena, CodeFreeze codeFreeze, Function<Class<?>, FlyweightFactory> factories) {
+        this.arena = arena;
+        this.codeFreeze = codeFreeze;
+        this.factories = factories;
+        this.buffer = arena.buffer();
+    }
+
+    /**
+     * Writes the object with everything reachable from it. Nothing is written if it fails.
+     *
+     * @param object Object to write
+     * @return Reference of the written object
+     * @throws IllegalArgumentException if some reachable object can't be stored off-heap
+     * @throws IllegalStateException    if the arena is full
+     */
+    public int write(Object object) {
+        int size = arena.size();
+        try {
+            int reference = reference(object);
+            while (!unfilled.isEmpty()) {
+                fill(unfilled.poll());
+            }
+            return reference;
+        } catch (RuntimeException | Error e) {
+            arena.truncate(size);
+            throw e;
+        }
+    }
+
+    private int reference(Object value) {
+        if (value == null) {
+            return OffHeapArena.NULL_REFERENCE;
+        }
+        if (value instanceof FlyweightView && ((FlyweightView) value).codeFreeze$arena() == arena) {
+            return ((FlyweightView) value).codeFreeze$offset();
+        }
+        Integer known = references.get(value);
+        if (known != null) {
+            return known;
+        }
+        int reference = allocate(value);
+        references.put(value, reference);
+        return reference;
+    }
+
+    /**
+     * Writes scalar values right away, allocates space of beans and containers to be filled later
+     */
+    private int allocate(Object value) {
+        Class<?> type = value.getClass();
+        if (value instanceof String) {
+            return writeBytes(OffHeapArena.STRING, ((String) value).getBytes(StandardCharsets.UTF_8));
+        }
+        if (value instanceof Enum) {
+            int reference = arena.allocate(9);
+            buffer.put(reference, OffHeapArena.ENUM);
+            buffer.putInt(reference + 1, arena.typeId(((Enum<?>) value).getDeclaringClass(), null));
+            buffer.putInt(reference + 5, ((Enum<?>) value).ordinal());
+            return reference;
+        }
+        if (type == BigInteger.class) {
+            return writeBytes(OffHeapArena.BIG_INTEGER, ((BigInteger) value).toByteArray());
+        }
+        if (type == BigDecimal.class) {
+            return writeBytes(OffHeapArena.BIG_DECIMAL, value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        if (type == UUID.class) {
+            int reference = arena.allocate(17);
+            buffer.put(reference, OffHeapArena.UUID_VALUE);
+            buffer.putLong(reference + 1, ((UUID) value).getMostSignificantBits());
+            buffer.putLong(reference + 9, ((UUID) value).getLeastSignificantBits());
+            return reference;
+        }
+        BeanLayout.Kind kind = BeanLayout.Kind.of(unbox(type));
+        if (kind != BeanLayout.Kind.REFERENCE) {
+            int reference = arena.allocate(1 + kind.getSize());
+            buffer.put(reference, boxedTag(kind));
+            put(kind, reference + 1, value);
+            return reference;
+        }
+        if (ImmutableTypes.isImmutable(type) && value instanceof Serializable) {
+            return writeBytes(OffHeapArena.SERIALIZED, serialize(value));
+        }
+        if (type.isArray()) {
+            Class<?> componentType = type.getComponentType();
+            int length = Array.getLength(value);
+            int reference = arena.allocate(9 + length * BeanLayout.Kind.of(componentType).getSize());
+            buffer.put(reference, OffHeapArena.ARRAY);
+            buffer.putInt(reference + 1, arena.typeId(componentType, null));
+            buffer.putInt(reference + 5, length);
+            unfilled.add(value);
+            return reference;
+        }
+        if (value instanceof Optional) {
+            return allocateContainer(value, OffHeapArena.OPTIONAL, 5, 0);
+        }
+        if (value instanceof Map) {
+            int size = ((Map<?, ?>) value).size();
+            return allocateContainer(value, OffHeapArena.MAP, 5 + size * 8, size);
+        }
+        if (value instanceof Collection) {
+            int size = ((Collection<?>) value).size();
+            return allocateContainer(value, value instanceof Set ? OffHeapArena.SET : OffHeapArena.LIST, 5 + size * 4, size);
+        }
+        Class<?> beanType = value instanceof Frozen ? type.getSuperclass() : type;
+        if (beanType.getName().startsWith("java.") || ImmutabilityCallbackFilter.isSingleUse(beanType)
+                || !codeFreeze.isEnhanceable(beanType)) {
+            throw new IllegalArgumentException(type.getName() + " can't be stored off-heap");
+        }
+        FlyweightFactory factory = factories.apply(beanType);
+        int reference = arena.allocate(factory.getLayout().getRecordSize());
+        buffer.put(reference, OffHeapArena.BEAN);
+        buffer.putInt(reference + 1, arena.typeId(beanType, factory));
+        unfilled.add(value);
+        return reference;
+    }
+
+    private int allocateContainer(Object container, byte tag, int length, int size) {
+        int reference = arena.allocate(length);
+        buffer.put(reference, tag);
+        buffer.putInt(reference + 1, size);
+        unfilled.add(container);
+        return reference;
+    }
+
+    private int writeBytes(byte tag, byte[] bytes) {
+        int reference = arena.allocate(5 + bytes.length);
+        buffer.put(reference, tag);
+        buffer.putInt(reference + 1, bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            buffer.put(reference + 5 + i, bytes[i]);
+        }
+        return reference;
+    }
+
+    private void fill(Object value) {
+        int reference = references.get(value);
+        int position = reference + 1;
+        switch (buffer.get(reference)) {
+            case OffHeapArena.BEAN:
+                fillBean(value, reference);
+                break;
+            case OffHeapArena.OPTIONAL:
+                buffer.putInt(position, reference(((Optional<?>) value).orElse(null)));
+                break;
+            case OffHeapArena.MAP:
+                int entry = position + 4;
+                int entries = 0;
+                for (Map.Entry<?, ?> mapEntry : ((Map<?, ?>) value).entrySet()) {
+                    checkSize(position, entries);
+                    buffer.putInt(entry, reference(mapEntry.getKey()));
+                    buffer.putInt(entry + 4, reference(mapEntry.getValue()));
+                    entry += 8;
+                    entries++;
+                }
+                buffer.putInt(position, entries);
+                break;
+            case OffHeapArena.ARRAY:
+                BeanLayout.Kind kind = BeanLayout.Kind.of(value.getClass().getComponentType());
+                int length = Array.getLength(value);
+                for (int i = 0; i < length; i++) {
+                    put(kind, position + 8 + i * kind.getSize(), Array.get(value, i));
+                }
+                break;
+            default:
+                int element = position + 4;
+                int elements = 0;
+                for (Object item : (Collection<?>) value) {
+                    checkSize(position, elements);
+                    buffer.putInt(element, reference(item));
+                    element += 4;
+                    elements++;
+                }
+                buffer.putInt(position, elements);
+        }
+    }
+
+    /**
+     * Checks that container hasn't grown since its space was allocated
+     */
+    private void checkSize(int position, int count) {
+        if (count == buffer.getInt(position)) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    private void fillBean(Object bean, int reference) {
+        BeanLayout layout = factories.apply(bean instanceof Frozen ? bean.getClass().getSuperclass() : bean.getClass()).getLayout();
+        for (BeanLayout.Property property : layout.getProperties()) {
+            int position = reference + property.getOffset();
+            Object value;
+            try {
+                value = property.getGetter().invoke(bean);
+            } catch (InvocationTargetException e) {
+                // Unchecked exception of the getter is thrown again by the view, primitives have no room for it
+                if (property.getKind() != BeanLayout.Kind.REFERENCE || !(e.getCause() instanceof RuntimeException)) {
+                    throw new IllegalArgumentException("Unable to store " + layout.getType().getName() + "."
+                            + property.getGetter().getName() + "() off-heap", e.getCause());
+                }
+                buffer.putInt(position, writeBytes(OffHeapArena.FAILURE, serialize(e.getCause())));
+                continue;
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+            put(property.getKind(), position, value);
+        }
+    }
+
+    private void put(BeanLayout.Kind kind, int position, Object value) {
+        switch (kind) {
+            case BOOLEAN:
+                buffer.put(position, (byte) ((Boolean) value ? 1 : 0));
+                break;
+            case BYTE:
+                buffer.put(position, (Byte) value);
+                break;
+            case CHAR:
+                buffer.putChar(position, (Character) value);
+                break;
+            case SHORT:
+                buffer.putShort(position, (Short) value);
+                break;
+            case INT:
+                buffer.putInt(position, (Integer) value);
+                break;
+            case FLOAT:
+                buffer.putFloat(position, (Float) value);
+                break;
+            case LONG:
+                buffer.putLong(position, (Long) value);
+                break;
+            case DOUBLE:
+                buffer.putDouble(position, (Double) value);
+                break;
+            default:
+                buffer.putInt(position, reference(value));
+        }
+    }
+
+    private static Class<?> unbox(Class<?> type) {
+        if (type == Boolean.class) return boolean.class;
+        if (type == Byte.class) return byte.class;
+        if (type == Character.class) return char.class;
+        if (type == Short.class) return short.class;
+        if (type == Integer.class) return int.class;
+        if (type == Float.class) return float.class;
+        if (type == Long.class) return long.class;
+        if (type == Double.class) return double.class;
+        return type;
+    }
+
+    private static byte boxedTag(BeanLayout.Kind kind) {
+        switch (kind) {
+            case BOOLEAN:
+                return OffHeapArena.BOOLEAN;
+            case BYTE:
+                return OffHeapArena.BYTE;
+            case CHAR:
+                return OffHeapArena.CHARACTER;
+            case SHORT:
+                return OffHeapArena.SHORT;
+            case INT:
+                return OffHeapArena.INTEGER;
+            case FLOAT:
+                return OffHeapArena.FLOAT;
+            case LONG:
+                return OffHeapArena.LONG;
+            default:
+                return OffHeapArena.DOUBLE;
+        }
+    }
+
+    private static byte[] serialize(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream outputStream = new ObjectOutputStream(bytes)) {
+            outputStream.writeObject(value);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(value.getClass().getName() + " can't be stored off-heap", e);
+        }
+        return bytes.toByteArray();
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.offheap;
+
+import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.impl.filters.ImmutabilityCallbackFilter;
+import net.sf.cglib.proxy.Enhancer;
+
+import java.lang.reflect.Method;
+import java.util.*;
+
+/**
+ * Layout of the off-heap record of particular type: properties are the getters, which
+ * {@link ImmutabilityCallbackFilter} doesn't classify as mutators. Primitive properties are stored in the record
+ * itself, the rest of them are references to values stored elsewhere in the arena. Properties are ordered by name,
+ * so that the layout of the same type is the same in every JVM.
+ */
+public class BeanLayout {
+
+    /**
+     * Record starts with the tag and the type id
+     */
+    static final int HEADER_SIZE = 5;
+
+    private static final Set<Class<?>> CONTAINER_TYPES = new HashSet<>(Arrays.asList(
+            Object.class, Iterable.class, Collection.class, List.class, Set.class, Map.class, Optional.class));
+
+    private final Class<?> type;
+    private final List<Property> properties;
+    private final Map<Method, Property> propertiesByGetter = new HashMap<>();
+    private final Set<Method> mutators = new HashSet<>();
+    private final int recordSize;
+
+    /**
+     * Derives layout of the type from its getters
+     *
+     * @param codeFreeze CodeFreeze service instance, used for classification of getters
+     * @param type       Bean type
+     * @throws IllegalArgumentException if some getter returns streams, iterators or collections of other types
+     *                                  than {@link Collection}, {@link List}, {@link Set} and {@link Map}
+     */
+    public BeanLayout(CodeFreeze codeFreeze, Class<?> type) {
+        this.type = type;
+        ImmutabilityCallbackFilter callbackFilter = new ImmutabilityCallbackFilter(codeFreeze, type);
+        List<Method> methods = new ArrayList<>();
+        Enhancer.getMethods(type, null, methods);
+        List<Method> getters = new ArrayList<>();
+        for (Method method : methods) {
+            if (callbackFilter.accept(method) == ImmutabilityCallbackFilter.EXCEPTION_CALLBACK_INDEX) {
+                mutators.add(method);
+            } else if (isGetter(method)) {
+                checkReturnType(method);
+                getters.add(method);
+            }
+        }
+        getters.sort(Comparator.comparing(Method::getName));
+        List<Property> properties = new ArrayList<>(getters.size());
+        int offset = HEADER_SIZE;
+        for (Method getter : getters) {
+            getter.setAccessible(true);
+            Property property = new Property(getter, Kind.of(getter.getReturnType()), offset);
+            properties.add(property);
+            propertiesByGetter.put(getter, property);
+            offset += property.getKind().getSize();
+        }
+        this.properties = Collections.unmodifiableList(properties);
+        this.recordSize = offset;
+    }
+
+    private static boolean isGetter(Method method) {
+        return (method.getName().startsWith("get") || method.getName().startsWith("is"))
+                && method.getParameterCount() == 0 && method.getReturnType() != void.class && !method.isBridge()
+                && method.getDeclaringClass() != Object.class;
+    }
+
+    private void checkReturnType(Method getter) {
+        Class<?> returnType = getter.getReturnType();
+        if (ImmutabilityCallbackFilter.isSingleUse(returnType)
+                || (Collection.class.isAssignableFrom(returnType) || Map.class.isAssignableFrom(returnType))
+                && !CONTAINER_TYPES.contains(returnType)) {
+            throw new IllegalArgumentException(type.getName() + "." + getter.getName() + "() returns "
+                    + returnType.getName() + ", which can't be stored off-heap");
+        }
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Returns properties in the order they are stored in the record
+     *
+     * @return Properties
+     */
+    public List<Property> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Returns property read by the getter
+     *
+     * @param getter Method of the type
+     * @return Property or null if the method is not a getter
+     */
+    public Property getProperty(Method getter) {
+        return propertiesByGetter.get(getter);
+    }
+
+    /**
+     * Checks if method is a mutator, which is not allowed to be called on immutable bean
+     *
+     * @param method Method of the type
+     * @return True if method is a mutator
+     */
+    public boolean isMutator(Method method) {
+        return mutators.contains(method);
+    }
+
+    /**
+     * Returns size of the record, including the header
+     *
+     * @return Size in bytes
+     */
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Returns signature of the layout: names and kinds of properties in the order they are stored.
+     * Records written with one layout can be read with another one only if their signatures are equal.
+     *
+     * @return Signature, e.g. "getId:REFERENCE,getMask:INT"
+     */
+    public String getSignature() {
+        StringJoiner signature = new StringJoiner(",");
+        for (Property property : properties) {
+            signature.add(property.getGetter().getName() + ":" + property.getKind());
+        }
+        return signature.toString();
+    }
+
+    /**
+     * Property of the bean, stored at fixed offset within the record
+     */
+    public static class Property {
+
+        private final Method getter;
+        private final Kind kind;
+        private final int offset;
+
+        Property(Method getter, Kind kind, int offset) {
+            this.getter = getter;
+            this.kind = kind;
+            this.offset = offset;
+        }
+
+        public Method getGetter() {
+            return getter;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * Returns offset of the property within the record
+         *
+         * @return Offset in bytes
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+    }
+
+    /**
+     * The way property is stored: primitives are stored as is, other values are referenced by their offsets
+     */
+    public enum Kind {
+
+        BOOLEAN(1), BYTE(1), CHAR(2), SHORT(2), INT(4), FLOAT(4), LONG(8), DOUBLE(8), REFERENCE(4);
+
+        private final int size;
+
+        Kind(int size) {
+            this.size = size;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        static Kind of(Class<?> type) {
+            if (!type.isPrimitive()) {
+                return REFERENCE;
+            }
+            return valueOf(type.getName().toUpperCase(Locale.ROOT));
+        }
+
+    }
+
+}
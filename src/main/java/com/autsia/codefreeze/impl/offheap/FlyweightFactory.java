@@ -0,0 +1,99 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.offheap;
+
+import com.autsia.codefreeze.impl.proxy.ProxyInstantiator;
+
+/**
+ * Creates flyweight views of particular type. Besides, implements equals(), hashCode() and toString()
+ * of generated flyweight classes: views are equal if they are views of the same record.
+ */
+public class FlyweightFactory {
+
+    private final BeanLayout layout;
+    private final ProxyInstantiator instantiator;
+
+    /**
+     * Initializes FlyweightFactory with the layout and the generated class
+     *
+     * @param layout    Layout of the bean record
+     * @param viewClass Generated flyweight class, which implements {@link FlyweightView}
+     */
+    FlyweightFactory(BeanLayout layout, Class<?> viewClass) {
+        this.layout = layout;
+        this.instantiator = new ProxyInstantiator(viewClass);
+    }
+
+    public BeanLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Creates new view of the record, without running constructor of the bean
+     *
+     * @param arena     Arena, which the bean is stored in
+     * @param reference Offset of the bean record
+     * @return Bound view
+     */
+    public Object newView(OffHeapArena arena, int reference) {
+        FlyweightView view = (FlyweightView) instantiator.newInstance();
+        view.codeFreeze$bind(arena, reference);
+        return view;
+    }
+
+    /**
+     * Implementation of equals() of flyweight views
+     *
+     * @param view  View
+     * @param other Object to compare with
+     * @return True if other object is the view of the same record
+     */
+    public static boolean equals(Object view, Object other) {
+        if (view == other) {
+            return true;
+        }
+        if (!(other instanceof FlyweightView)) {
+            return false;
+        }
+        FlyweightView flyweightView = (FlyweightView) view;
+        FlyweightView otherView = (FlyweightView) other;
+        return flyweightView.codeFreeze$offset() == otherView.codeFreeze$offset()
+                && flyweightView.codeFreeze$arena() == otherView.codeFreeze$arena();
+    }
+
+    /**
+     * Implementation of hashCode() of flyweight views
+     *
+     * @param view View
+     * @return Hash code of the record
+     */
+    public static int hashCode(Object view) {
+        FlyweightView flyweightView = (FlyweightView) view;
+        return 31 * System.identityHashCode(flyweightView.codeFreeze$arena()) + flyweightView.codeFreeze$offset();
+    }
+
+    /**
+     * Implementation of toString() of flyweight views
+     *
+     * @param view View
+     * @return Type of the bean and offset of its record
+     */
+    public static String toString(Object view) {
+        return view.getClass().getSuperclass().getName() + "@offheap:" + ((FlyweightView) view).codeFreeze$offset();
+    }
+
+}
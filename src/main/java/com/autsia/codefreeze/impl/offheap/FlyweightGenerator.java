@@ -0,0 +1,191 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.offheap;
+
+import com.autsia.codefreeze.CodeFreeze;
+import net.sf.cglib.core.*;
+import net.sf.cglib.proxy.Enhancer;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates flyweight subclasses of beans, which keep only the arena and the offset of the record. Getters read
+ * their properties from the arena at the offsets fixed by {@link BeanLayout}, mutators throw
+ * {@link UnsupportedOperationException}, the same as the rest of methods do, as there's no bean to call them on.
+ */
+public class FlyweightGenerator {
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private static final String CLASS_SUFFIX = "$$FrozenOffHeap$$";
+    private static final String ARENA_FIELD = "CODEFREEZE$ARENA";
+    private static final String OFFSET_FIELD = "CODEFREEZE$OFFSET";
+
+    private static final Type OBJECT = Type.getType(Object.class);
+    private static final Type ARENA = Type.getType(OffHeapArena.class);
+    private static final Type FLYWEIGHT_VIEW = Type.getType(FlyweightView.class);
+    private static final Type FLYWEIGHT_FACTORY = Type.getType(FlyweightFactory.class);
+    private static final Type UNSUPPORTED_OPERATION = Type.getType(UnsupportedOperationException.class);
+    private static final Signature GET_ARENA = new Signature("codeFreeze$arena", ARENA, new Type[0]);
+    private static final Signature GET_OFFSET = new Signature("codeFreeze$offset", Type.INT_TYPE, new Type[0]);
+    private static final Signature BIND = new Signature("codeFreeze$bind", Type.VOID_TYPE, new Type[]{ARENA, Type.INT_TYPE});
+    private static final Signature EQUALS = TypeUtils.parseSignature("boolean equals(Object)");
+    private static final Signature HASH_CODE = TypeUtils.parseSignature("int hashCode()");
+    private static final Signature TO_STRING = TypeUtils.parseSignature("String toString()");
+    private static final Signature VIEW_EQUALS = TypeUtils.parseSignature("boolean equals(Object, Object)");
+    private static final Signature VIEW_HASH_CODE = TypeUtils.parseSignature("int hashCode(Object)");
+    private static final Signature VIEW_TO_STRING = TypeUtils.parseSignature("String toString(Object)");
+
+    private final CodeFreeze codeFreeze;
+
+    /**
+     * Initializes FlyweightGenerator with CodeFreeze service
+     *
+     * @param codeFreeze CodeFreeze service instance, used for classification of getters
+     */
+    public FlyweightGenerator(CodeFreeze codeFreeze) {
+        this.codeFreeze = codeFreeze;
+    }
+
+    /**
+     * Generates flyweight subclass of type
+     *
+     * @param type Bean type
+     * @return Factory of flyweight views
+     */
+    public FlyweightFactory generate(Class<?> type) {
+        BeanLayout layout = new BeanLayout(codeFreeze, type);
+        String className = type.getName() + CLASS_SUFFIX + COUNTER.getAndIncrement();
+        ClassLoader classLoader = type.getClassLoader() != null ? type.getClassLoader() : getClass().getClassLoader();
+        try {
+            return new FlyweightFactory(layout, ReflectUtils.defineClass(className, emit(type, className, layout), classLoader));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to generate flyweight class for " + type.getName(), e);
+        }
+    }
+
+    private byte[] emit(Class<?> type, String className, BeanLayout layout) {
+        DebuggingClassWriter classWriter = new DebuggingClassWriter(ClassWriter.COMPUTE_FRAMES);
+        ClassEmitter ce = new ClassEmitter(classWriter);
+        ce.begin_class(Opcodes.V1_8, Constants.ACC_PUBLIC, className, Type.getType(type), new Type[]{FLYWEIGHT_VIEW}, Constants.SOURCE_FILE);
+        // Offset is written before the volatile arena, so that the view published through a data race is complete
+        ce.declare_field(Constants.ACC_PRIVATE | Constants.ACC_VOLATILE, ARENA_FIELD, ARENA, null);
+        ce.declare_field(Constants.ACC_PRIVATE, OFFSET_FIELD, Type.INT_TYPE, null);
+        emitViewMethods(ce);
+
+        List<Method> methods = new ArrayList<>();
+        Enhancer.getMethods(type, null, methods);
+        for (Method method : methods) {
+            if (method.getDeclaringClass() == Object.class && !Modifier.isPublic(method.getModifiers()) || method.isBridge()) {
+                // Neither clone() nor finalize() have anything to delegate, bridges call the overridden methods
+                continue;
+            }
+            Signature signature = ReflectUtils.getSignature(method);
+            int access = method.getModifiers() & (Constants.ACC_PUBLIC | Constants.ACC_PROTECTED);
+            CodeEmitter e = ce.begin_method(access, signature, ReflectUtils.getExceptionTypes(method));
+            BeanLayout.Property property = layout.getProperty(method);
+            if (property != null) {
+                emitGetter(e, method, property);
+            } else if (layout.isMutator(method)) {
+                e.throw_exception(UNSUPPORTED_OPERATION, type.getSimpleName() + " class is immutable: mutators execution is not allowed.");
+            } else if (signature.equals(EQUALS)) {
+                e.load_this();
+                e.load_arg(0);
+                e.invoke_static(FLYWEIGHT_FACTORY, VIEW_EQUALS);
+                e.return_value();
+            } else if (signature.equals(HASH_CODE)) {
+                e.load_this();
+                e.invoke_static(FLYWEIGHT_FACTORY, VIEW_HASH_CODE);
+                e.return_value();
+            } else if (signature.equals(TO_STRING)) {
+                e.load_this();
+                e.invoke_static(FLYWEIGHT_FACTORY, VIEW_TO_STRING);
+                e.return_value();
+            } else {
+                e.throw_exception(UNSUPPORTED_OPERATION, type.getSimpleName() + "." + method.getName() + "() can't be called on off-heap view");
+            }
+            e.end_method();
+        }
+
+        ce.end_class();
+        return classWriter.toByteArray();
+    }
+
+    private static void emitViewMethods(ClassEmitter ce) {
+        CodeEmitter e = ce.begin_method(Constants.ACC_PUBLIC, GET_ARENA, null);
+        e.load_this();
+        e.getfield(ARENA_FIELD);
+        e.return_value();
+        e.end_method();
+
+        e = ce.begin_method(Constants.ACC_PUBLIC, GET_OFFSET, null);
+        e.load_this();
+        e.getfield(OFFSET_FIELD);
+        e.return_value();
+        e.end_method();
+
+        e = ce.begin_method(Constants.ACC_PUBLIC, BIND, null);
+        Label unbound = e.make_label();
+        e.load_this();
+        e.getfield(ARENA_FIELD);
+        e.ifnull(unbound);
+        e.throw_exception(Type.getType(IllegalStateException.class), "View is already bound");
+        e.mark(unbound);
+        e.load_this();
+        e.load_arg(1);
+        e.putfield(OFFSET_FIELD);
+        e.load_this();
+        e.load_arg(0);
+        e.putfield(ARENA_FIELD);
+        e.return_value();
+        e.end_method();
+    }
+
+    /**
+     * Emits getter reading its property at the fixed offset from the start of the record
+     */
+    private static void emitGetter(CodeEmitter e, Method method, BeanLayout.Property property) {
+        e.load_this();
+        e.getfield(ARENA_FIELD);
+        e.load_this();
+        e.getfield(OFFSET_FIELD);
+        e.push(property.getOffset());
+        e.math(CodeEmitter.ADD, Type.INT_TYPE);
+        Type returnType = Type.getType(method.getReturnType());
+        if (property.getKind() == BeanLayout.Kind.REFERENCE) {
+            e.invoke_virtual(ARENA, new Signature("getReference", OBJECT, new Type[]{Type.INT_TYPE}));
+            e.checkcast(returnType);
+        } else {
+            String kind = property.getKind().name();
+            String accessor = "get" + kind.charAt(0) + kind.substring(1).toLowerCase(Locale.ROOT);
+            e.invoke_virtual(ARENA, new Signature(accessor, returnType, new Type[]{Type.INT_TYPE}));
+        }
+        e.return_value();
+    }
+
+}
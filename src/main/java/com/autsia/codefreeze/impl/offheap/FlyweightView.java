@@ -0,0 +1,49 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.offheap;
+
+import com.autsia.codefreeze.Frozen;
+
+/**
+ * Frozen view of the bean stored in {@link OffHeapArena}: getters decode properties from the arena on every call.
+ * Implemented by the generated flyweight classes, which keep nothing but the arena and the offset of the record.
+ */
+public interface FlyweightView extends Frozen {
+
+    /**
+     * Returns arena, which the bean is stored in
+     *
+     * @return Arena or null if view is not yet bound
+     */
+    OffHeapArena codeFreeze$arena();
+
+    /**
+     * Returns offset of the bean record in the arena
+     *
+     * @return Offset
+     */
+    int codeFreeze$offset();
+
+    /**
+     * Binds view to the record: once it'd been bound, it can't be bound again
+     *
+     * @param arena  Arena, which the bean is stored in
+     * @param offset Offset of the bean record
+     */
+    void codeFreeze$bind(OffHeapArena arena, int offset);
+
+}
@@ -0,0 +1,387 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.offheap;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Storage of frozen bean graphs in {@link ByteBuffer}, usually direct or memory-mapped one, so that stored graphs
+ * are invisible to GC. Values are written once and never change. Every value is referenced by its offset
+ * and starts with the tag telling its kind:
+ * <ul>
+ * <li>beans: type id followed by properties laid out by {@link BeanLayout}</li>
+ * <li>strings: length and UTF-8 bytes</li>
+ * <li>lists and sets: size and references of elements, maps: size and references of keys and values</li>
+ * <li>arrays: type id of the component type, length and elements</li>
+ * <li>boxed primitives, enums, BigInteger, BigDecimal and UUID in their own compact forms, the rest of immutable
+ * values and exceptions thrown by getters are serialized</li>
+ * </ul>
+ * Reading is thread-safe, writing is done by {@link ArenaWriter} under the lock of the arena.
+ * Offsets are ints, so the arena holds up to 2 GB.
+ */
+public class OffHeapArena {
+
+    static final int NULL_REFERENCE = -1;
+
+    static final byte BEAN = 1;
+    static final byte STRING = 2;
+    static final byte LIST = 3;
+    static final byte SET = 4;
+    static final byte MAP = 5;
+    static final byte OPTIONAL = 6;
+    static final byte ARRAY = 7;
+    static final byte ENUM = 8;
+    static final byte BOOLEAN = 9;
+    static final byte BYTE = 10;
+    static final byte CHARACTER = 11;
+    static final byte SHORT = 12;
+    static final byte INTEGER = 13;
+    static final byte LONG = 14;
+    static final byte FLOAT = 15;
+    static final byte DOUBLE = 16;
+    static final byte BIG_INTEGER = 17;
+    static final byte BIG_DECIMAL = 18;
+    static final byte UUID_VALUE = 19;
+    static final byte SERIALIZED = 20;
+    static final byte FAILURE = 21;
+
+    private final ByteBuffer buffer;
+    private final Map<Class<?>, Integer> typeIds = new HashMap<>();
+    private volatile ArenaType[] types = new ArenaType[0];
+    private volatile int size;
+
+    /**
+     * Initializes OffHeapArena with the buffer to store values in
+     *
+     * @param buffer Buffer, its content is written from the beginning, its position and limit are left as is
+     */
+    public OffHeapArena(ByteBuffer buffer) {
+        // Fixed byte order keeps the layout the same on every platform
+        this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.buffer.clear();
+    }
+
+    /**
+     * Initializes OffHeapArena with the buffer, which values are already written to, e.g. mapped from the file
+     *
+     * @param buffer Buffer with values written from the beginning
+     * @param size   Number of bytes written
+     */
+    OffHeapArena(ByteBuffer buffer, int size) {
+        this(buffer);
+        this.size = size;
+    }
+
+    /**
+     * Returns number of bytes written
+     *
+     * @return Size in bytes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns number of bytes the arena can hold
+     *
+     * @return Capacity in bytes
+     */
+    public int capacity() {
+        return buffer.capacity();
+    }
+
+    public boolean getBoolean(int position) {
+        return buffer.get(position) != 0;
+    }
+
+    public byte getByte(int position) {
+        return buffer.get(position);
+    }
+
+    public char getChar(int position) {
+        return buffer.getChar(position);
+    }
+
+    public short getShort(int position) {
+        return buffer.getShort(position);
+    }
+
+    public int getInt(int position) {
+        return buffer.getInt(position);
+    }
+
+    public float getFloat(int position) {
+        return buffer.getFloat(position);
+    }
+
+    public long getLong(int position) {
+        return buffer.getLong(position);
+    }
+
+    public double getDouble(int position) {
+        return buffer.getDouble(position);
+    }
+
+    /**
+     * Decodes value, which reference is stored at the position
+     *
+     * @param position Position of the reference
+     * @return Decoded value: flyweight view in case of bean
+     */
+    public Object getReference(int position) {
+        return getValue(buffer.getInt(position));
+    }
+
+    /**
+     * Decodes value. Beans are decoded to new flyweight views, lists to views decoding elements on access,
+     * sets and maps are decoded up front. Exception thrown by the getter when the value was written is thrown again.
+     *
+     * @param reference Offset of the value
+     * @return Decoded value
+     */
+    public Object getValue(int reference) {
+        if (reference == NULL_REFERENCE) {
+            return null;
+        }
+        int position = reference + 1;
+        byte tag = buffer.get(reference);
+        switch (tag) {
+            case BEAN:
+                return types[buffer.getInt(position)].factory.newView(this, reference);
+            case STRING:
+                return new String(getBytes(position), StandardCharsets.UTF_8);
+            case LIST:
+                return new ArenaListView<>(this, reference);
+            case SET:
+                return getSet(position);
+            case MAP:
+                return getMap(position);
+            case OPTIONAL:
+                return Optional.ofNullable(getReference(position));
+            case ARRAY:
+                return getArray(position);
+            case ENUM:
+                return types[buffer.getInt(position)].constants[buffer.getInt(position + 4)];
+            case BOOLEAN:
+                return getBoolean(position);
+            case BYTE:
+                return getByte(position);
+            case CHARACTER:
+                return getChar(position);
+            case SHORT:
+                return getShort(position);
+            case INTEGER:
+                return getInt(position);
+            case LONG:
+                return getLong(position);
+            case FLOAT:
+                return getFloat(position);
+            case DOUBLE:
+                return getDouble(position);
+            case BIG_INTEGER:
+                return new BigInteger(getBytes(position));
+            case BIG_DECIMAL:
+                return new BigDecimal(new String(getBytes(position), StandardCharsets.UTF_8));
+            case UUID_VALUE:
+                return new UUID(getLong(position), getLong(position + 8));
+            case SERIALIZED:
+                return deserialize(getBytes(position));
+            case FAILURE:
+                throw rethrow((Throwable) deserialize(getBytes(position)));
+            default:
+                throw new IllegalStateException("Unknown tag " + tag + " at offset " + reference);
+        }
+    }
+
+    private byte[] getBytes(int position) {
+        byte[] bytes = new byte[buffer.getInt(position)];
+        // Duplicate keeps the position of the shared buffer intact, so that reading stays thread-safe
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(position + 4);
+        duplicate.get(bytes);
+        return bytes;
+    }
+
+    private Set<Object> getSet(int position) {
+        int size = buffer.getInt(position);
+        Set<Object> set = new LinkedHashSet<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            set.add(getReference(position + 4 + i * 4));
+        }
+        return Collections.unmodifiableSet(set);
+    }
+
+    private Map<Object, Object> getMap(int position) {
+        int size = buffer.getInt(position);
+        Map<Object, Object> map = new LinkedHashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            int entry = position + 4 + i * 8;
+            map.put(getReference(entry), getReference(entry + 4));
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    private Object getArray(int position) {
+        Class<?> componentType = types[buffer.getInt(position)].type;
+        int length = buffer.getInt(position + 4);
+        if (componentType == byte.class) {
+            return getBytes(position + 4);
+        }
+        Object array = Array.newInstance(componentType, length);
+        BeanLayout.Kind kind = BeanLayout.Kind.of(componentType);
+        int elements = position + 8;
+        for (int i = 0; i < length; i++) {
+            Array.set(array, i, get(kind, elements + i * kind.getSize()));
+        }
+        return array;
+    }
+
+    /**
+     * Decodes property or array element of the kind
+     *
+     * @param kind     The way value is stored
+     * @param position Position of the value
+     * @return Boxed primitive or decoded reference
+     */
+    Object get(BeanLayout.Kind kind, int position) {
+        switch (kind) {
+            case BOOLEAN:
+                return getBoolean(position);
+            case BYTE:
+                return getByte(position);
+            case CHAR:
+                return getChar(position);
+            case SHORT:
+                return getShort(position);
+            case INT:
+                return getInt(position);
+            case FLOAT:
+                return getFloat(position);
+            case LONG:
+                return getLong(position);
+            case DOUBLE:
+                return getDouble(position);
+            default:
+                return getReference(position);
+        }
+    }
+
+    private static Object deserialize(byte[] bytes) {
+        try (ObjectInputStream inputStream = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return inputStream.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Unable to deserialize value stored off-heap", e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable throwable) {
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        return throwable instanceof RuntimeException ? (RuntimeException) throwable : new IllegalStateException(throwable);
+    }
+
+    // Writing is done by ArenaWriter, which holds the lock of the arena
+
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Allocates space for the value at the end of the arena
+     *
+     * @param length Number of bytes
+     * @return Offset of the allocated space
+     * @throws IllegalStateException if the arena is full
+     */
+    int allocate(int length) {
+        int offset = size;
+        if (length > buffer.capacity() - offset) {
+            throw new IllegalStateException("Off-heap arena is full: " + offset + " of " + buffer.capacity()
+                    + " bytes are used, " + length + " more bytes are needed");
+        }
+        size = offset + length;
+        return offset;
+    }
+
+    /**
+     * Discards values written after the offset
+     *
+     * @param size Number of bytes to keep
+     */
+    void truncate(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Returns id of the type, registering it if it's not registered yet
+     *
+     * @param type    Type of bean, enum or array component
+     * @param factory Factory of flyweight views in case of bean, null otherwise
+     * @return Type id
+     */
+    int typeId(Class<?> type, FlyweightFactory factory) {
+        Integer typeId = typeIds.get(type);
+        ArenaType[] registered = types;
+        if (typeId != null && (factory == null || registered[typeId].factory != null)) {
+            return typeId;
+        }
+        // Type registered as array component gets its factory once its instance is written
+        int id = typeId != null ? typeId : registered.length;
+        ArenaType[] extended = Arrays.copyOf(registered, Math.max(registered.length, id + 1));
+        extended[id] = new ArenaType(type, factory);
+        types = extended;
+        typeIds.put(type, id);
+        return id;
+    }
+
+    int typeCount() {
+        return types.length;
+    }
+
+    Class<?> type(int typeId) {
+        return types[typeId].type;
+    }
+
+    FlyweightFactory factory(int typeId) {
+        return types[typeId].factory;
+    }
+
+    private static class ArenaType {
+
+        private final Class<?> type;
+        private final FlyweightFactory factory;
+        private final Object[] constants;
+
+        ArenaType(Class<?> type, FlyweightFactory factory) {
+            this.type = type;
+            this.factory = factory;
+            this.constants = type.getEnumConstants();
+        }
+
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.parallel;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Fork/join task which freezes range of elements, halving the range until it's small enough to be frozen
+ * by single worker. Frozen elements are stored at the indexes of the source ones, so the order is preserved.
+ */
+public class ParallelFreezeTask extends RecursiveAction {
+
+    private final Object[] source;
+    private final Object[] target;
+    private final UnaryOperator<Object> freezer;
+    private final int from;
+    private final int to;
+    private final int batchSize;
+
+    /**
+     * Initializes task for the whole source array
+     *
+     * @param source    Elements to freeze
+     * @param target    Array of the same length to store frozen elements to
+     * @param freezer   Freezing function
+     * @param batchSize Maximum number of elements frozen sequentially
+     */
+    public ParallelFreezeTask(Object[] source, Object[] target, UnaryOperator<Object> freezer, int batchSize) {
+        this(source, target, freezer, 0, source.length, batchSize);
+    }
+
+    private ParallelFreezeTask(Object[] source, Object[] target, UnaryOperator<Object> freezer, int from, int to, int batchSize) {
+        this.source = source;
+        this.target = target;
+        this.freezer = freezer;
+        this.from = from;
+        this.to = to;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= batchSize) {
+            for (int i = from; i < to; i++) {
+                target[i] = freezer.apply(source[i]);
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(new ParallelFreezeTask(source, target, freezer, from, middle, batchSize),
+                new ParallelFreezeTask(source, target, freezer, middle, to, batchSize));
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.prewarm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Finds classes of a package and its subpackages in directories and JARs of the class path
+ */
+public class PackageScanner {
+
+    private static final String CLASS_EXTENSION = ".class";
+
+    private final ClassLoader classLoader;
+
+    /**
+     * Initializes PackageScanner with class loader to look up and load classes with
+     *
+     * @param classLoader Class loader
+     */
+    public PackageScanner(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Finds classes of the package and its subpackages. Classes which fail to load are skipped.
+     *
+     * @param packageName Package name, e.g. com.example.model
+     * @return Classes found
+     */
+    public Set<Class<?>> scan(String packageName) {
+        String path = packageName.replace('.', '/');
+        Set<String> classNames = new TreeSet<>();
+        try {
+            Enumeration<URL> resources = classLoader.getResources(path);
+            while (resources.hasMoreElements()) {
+                URL resource = resources.nextElement();
+                if ("file".equals(resource.getProtocol())) {
+                    scanDirectory(Paths.get(resource.toURI()), packageName, classNames);
+                } else if ("jar".equals(resource.getProtocol())) {
+                    scanJar((JarURLConnection) resource.openConnection(), path, classNames);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
+
+        Set<Class<?>> classes = new LinkedHashSet<>();
+        for (String className : classNames) {
+            try {
+                classes.add(Class.forName(className, false, classLoader));
+            } catch (ClassNotFoundException | LinkageError e) {
+                // Class can't be loaded, so it can't be frozen either
+            }
+        }
+        return classes;
+    }
+
+    private static void scanDirectory(Path directory, String packageName, Set<String> classNames) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.map(file -> directory.relativize(file).toString())
+                    .filter(PackageScanner::isClass)
+                    .forEach(file -> classNames.add(packageName + "." + toClassName(file.replace(File.separatorChar, '/'))));
+        }
+    }
+
+    private static void scanJar(JarURLConnection connection, String path, Set<String> classNames) throws IOException {
+        connection.setUseCaches(false);
+        try (JarFile jar = connection.getJarFile()) {
+            jar.stream()
+                    .map(entry -> entry.getName())
+                    .filter(name -> name.startsWith(path + "/") && isClass(name))
+                    .forEach(name -> classNames.add(toClassName(name)));
+        }
+    }
+
+    private static boolean isClass(String file) {
+        return file.endsWith(CLASS_EXTENSION) && !file.endsWith("package-info" + CLASS_EXTENSION)
+                && !file.endsWith("module-info" + CLASS_EXTENSION);
+    }
+
+    private static String toClassName(String file) {
+        return file.substring(0, file.length() - CLASS_EXTENSION.length()).replace('/', '.');
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.prewarm;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Outcome of proxy factories prewarming
+ */
+public class PrewarmResult {
+
+    private final Set<Class<?>> types;
+    private final Duration duration;
+
+    /**
+     * Initializes PrewarmResult
+     *
+     * @param types    Types which got their factories
+     * @param duration Wall-clock time prewarming took
+     */
+    public PrewarmResult(Set<Class<?>> types, Duration duration) {
+        this.types = Collections.unmodifiableSet(types);
+        this.duration = duration;
+    }
+
+    /**
+     * Returns types which got their factories, including the ones reachable through getters
+     *
+     * @return Prewarmed types
+     */
+    public Set<Class<?>> getTypes() {
+        return types;
+    }
+
+    /**
+     * Returns wall-clock time prewarming took
+     *
+     * @return Prewarming duration
+     */
+    public Duration getDuration() {
+        return duration;
+    }
+
+    @Override
+    public String toString() {
+        return "Prewarmed " + types.size() + " types in " + duration.toMillis() + " ms";
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.proxy;
+
+import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.Frozen;
+
+/**
+ * State of the frozen bean, which is kept in the fields generated on the proxy class,
+ * so that callbacks can be shared by all proxies.
+ * Besides, proxy class has one public volatile slot field per freezing getter and one for hash code, see {@link FrozenProxyTransformer#slotField(int)}.
+ */
+public interface FrozenProxy extends Frozen {
+
+    /**
+     * Returns delegated object
+     *
+     * @return Delegated object or null if proxy is not yet initialized
+     */
+    Object codeFreeze$delegate();
+
+    /**
+     * Returns CodeFreeze service used for freezing of objects returned by getters
+     *
+     * @return CodeFreeze service or null if proxy is not yet initialized
+     */
+    CodeFreeze codeFreeze$context();
+
+    /**
+     * Initializes proxy with its state: once it'd been initialized, it can't be initialized again
+     *
+     * @param delegate Delegated object
+     * @param context  CodeFreeze service used for freezing of objects returned by getters
+     */
+    void codeFreeze$initialize(Object delegate, CodeFreeze context);
+
+}
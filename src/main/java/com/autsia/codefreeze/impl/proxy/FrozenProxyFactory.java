@@ -0,0 +1,167 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.proxy;
+
+import com.autsia.codefreeze.CodeFreeze;
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.Factory;
+
+import java.text.MessageFormat;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Creates frozen proxies of particular class, sharing the same callbacks between all of them
+ */
+public class FrozenProxyFactory {
+
+    // Proxy state is assigned after construction, so the constructor itself works against the pending delegate
+    private static final ThreadLocal<Object> PENDING_DELEGATE = new ThreadLocal<>();
+    private static final long DELEGATE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int YIELDS = 100;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final ProxyInstantiator instantiator;
+    private final Factory factory;
+    private final Callback[] callbacks;
+
+    /**
+     * Initializes FrozenProxyFactory with the proxy class and callbacks. Proxies are created without running
+     * constructors, unless the JVM doesn't allow to bypass them.
+     *
+     * @param proxyClass CGLIB proxy class, which implements {@link FrozenProxy}
+     * @param callbacks  Stateless callbacks to share between proxies, which don't depend on CodeFreeze instance
+     */
+    public FrozenProxyFactory(Class<?> proxyClass, Callback[] callbacks) {
+        this.callbacks = callbacks;
+        // Proxies published through a data race bind these callbacks if their own callback fields are not visible yet
+        Enhancer.registerStaticCallbacks(proxyClass, callbacks);
+        if (ProxyInstantiator.isAvailable()) {
+            this.instantiator = new ProxyInstantiator(proxyClass);
+            this.factory = null;
+        } else {
+            this.instantiator = null;
+            try {
+                this.factory = (Factory) proxyClass.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Creates new proxy
+     *
+     * @param delegate Delegated object
+     * @param context  CodeFreeze service used for freezing of objects returned by getters
+     * @return Initialized proxy
+     */
+    public Object newInstance(Object delegate, CodeFreeze context) {
+        if (instantiator != null) {
+            Factory proxy = (Factory) instantiator.newInstance();
+            proxy.setCallbacks(callbacks);
+            ((FrozenProxy) proxy).codeFreeze$initialize(delegate, context);
+            return proxy;
+        }
+        Object previousDelegate = PENDING_DELEGATE.get();
+        PENDING_DELEGATE.set(delegate);
+        try {
+            Object proxy = factory.newInstance(callbacks);
+            ((FrozenProxy) proxy).codeFreeze$initialize(delegate, context);
+            return proxy;
+        } finally {
+            if (previousDelegate == null) {
+                PENDING_DELEGATE.remove();
+            } else {
+                PENDING_DELEGATE.set(previousDelegate);
+            }
+        }
+    }
+
+    /**
+     * Returns delegated object of the proxy, including the proxy which is being constructed at the moment
+     *
+     * @param proxy Frozen proxy
+     * @return Delegated object
+     */
+    public static Object delegateOf(Object proxy) {
+        Object delegate = ((FrozenProxy) proxy).codeFreeze$delegate();
+        if (delegate != null) {
+            return delegate;
+        }
+        Object pendingDelegate = PENDING_DELEGATE.get();
+        return pendingDelegate != null ? pendingDelegate : awaitDelegate((FrozenProxy) proxy);
+    }
+
+    /**
+     * Returns delegated object of the proxy, unless the proxy is being constructed by the current thread
+     *
+     * @param proxy Frozen proxy
+     * @return Delegated object or null if methods are called from the constructor of the proxy
+     */
+    public static Object initializedDelegate(Object proxy) {
+        Object delegate = ((FrozenProxy) proxy).codeFreeze$delegate();
+        if (delegate != null || PENDING_DELEGATE.get() != null) {
+            return delegate;
+        }
+        return awaitDelegate((FrozenProxy) proxy);
+    }
+
+    /**
+     * Called by generated classes before CGLIB binds callbacks, which happens when the callback field reads null.
+     * Unless constructors of proxies are run, that's only possible in the thread which has got the proxy through
+     * a data race: waiting for the volatile delegate makes callbacks, which are set before it, visible.
+     *
+     * @param proxy Frozen proxy or snapshot
+     */
+    public static void awaitCallbacks(Object proxy) {
+        if (ProxyInstantiator.isAvailable()) {
+            awaitDelegate((FrozenProxy) proxy);
+        }
+    }
+
+    /**
+     * Waits for the proxy, which has been initialized by another thread and published through a data race,
+     * to become visible as initialized one: delegate is written to the volatile field, so the wait is short.
+     * Proxy which stays uninitialized has escaped before its initialization or the initialization has failed.
+     *
+     * @param proxy Frozen proxy or snapshot
+     * @return Delegated object, snapshot itself for snapshots
+     * @throws IllegalStateException if the proxy isn't initialized within a second
+     */
+    public static Object awaitDelegate(FrozenProxy proxy) {
+        Object delegate = proxy.codeFreeze$delegate();
+        if (delegate != null) {
+            return delegate;
+        }
+        long start = System.nanoTime();
+        for (int spins = 0; (delegate = proxy.codeFreeze$delegate()) == null; spins++) {
+            if (System.nanoTime() - start > DELEGATE_TIMEOUT_NANOS) {
+                throw new IllegalStateException(MessageFormat.format("{0} instance is used before it is initialized",
+                        proxy.getClass().getSuperclass().getName()));
+            }
+            if (spins < YIELDS) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+        return delegate;
+    }
+
+}
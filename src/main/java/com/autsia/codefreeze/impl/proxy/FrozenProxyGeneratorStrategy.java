@@ -0,0 +1,83 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.proxy;
+
+import net.sf.cglib.core.ClassGenerator;
+import net.sf.cglib.core.DefaultGeneratorStrategy;
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.transform.TransformingClassGenerator;
+
+/**
+ * CGLIB generator strategy which applies {@link FrozenProxyTransformer} to the generated proxy classes
+ * and optionally takes their bytecode from {@link ProxyClassCache}
+ */
+public class FrozenProxyGeneratorStrategy extends DefaultGeneratorStrategy {
+
+    private final int slotsCount;
+    private final ProxyClassCache classCache;
+    private final String fingerprint;
+    private final FrozenProxyNamingPolicy namingPolicy;
+
+    /**
+     * Initializes FrozenProxyGeneratorStrategy with number of memoization slots
+     *
+     * @param slotsCount Number of freezing getters
+     */
+    public FrozenProxyGeneratorStrategy(int slotsCount) {
+        this(slotsCount, null, null, null);
+    }
+
+    /**
+     * Initializes FrozenProxyGeneratorStrategy with number of memoization slots and class cache
+     *
+     * @param slotsCount   Number of freezing getters
+     * @param classCache   Cache of generated classes
+     * @param fingerprint  Fingerprint of proxy class
+     * @param namingPolicy Naming policy the proxy class is named with
+     */
+    public FrozenProxyGeneratorStrategy(int slotsCount, ProxyClassCache classCache, String fingerprint,
+                                        FrozenProxyNamingPolicy namingPolicy) {
+        this.slotsCount = slotsCount;
+        this.classCache = classCache;
+        this.fingerprint = fingerprint;
+        this.namingPolicy = namingPolicy;
+    }
+
+    @Override
+    public byte[] generate(ClassGenerator cg) throws Exception {
+        if (classCache == null || !(cg instanceof Enhancer)) {
+            return super.generate(cg);
+        }
+        String className = namingPolicy.getClassName();
+        byte[] bytecode = classCache.load(className, fingerprint);
+        if (bytecode == null) {
+            bytecode = super.generate(cg);
+            classCache.store(className, fingerprint, bytecode);
+        }
+        return bytecode;
+    }
+
+    @Override
+    protected ClassGenerator transform(ClassGenerator cg) throws Exception {
+        // Strategy is inherited by FastClass generators of MethodProxy, those classes must be left as is
+        if (!(cg instanceof Enhancer)) {
+            return cg;
+        }
+        return new TransformingClassGenerator(cg, new FrozenProxyTransformer(slotsCount));
+    }
+
+}
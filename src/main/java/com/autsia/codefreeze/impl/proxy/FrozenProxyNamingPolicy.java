@@ -0,0 +1,66 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.proxy;
+
+import net.sf.cglib.core.NamingPolicy;
+import net.sf.cglib.core.Predicate;
+
+/**
+ * CGLIB naming policy which names proxy class after its fingerprint, so that the same class gets the same name
+ * in every JVM run, unlike the default policy relying on hash codes of objects
+ */
+public class FrozenProxyNamingPolicy implements NamingPolicy {
+
+    private final String fingerprint;
+    private String className;
+
+    /**
+     * Initializes FrozenProxyNamingPolicy with proxy class fingerprint
+     *
+     * @param fingerprint Fingerprint computed by {@link ProxyClassCache#fingerprint}
+     */
+    public FrozenProxyNamingPolicy(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    @Override
+    public String getClassName(String prefix, String source, Object key, Predicate names) {
+        if (prefix == null) {
+            prefix = "net.sf.cglib.empty.Object";
+        } else if (prefix.startsWith("java")) {
+            // Classes can't be defined in java.* packages
+            prefix = "$" + prefix;
+        }
+        String base = prefix + "$$FrozenByCGLIB$$" + fingerprint.substring(0, 16);
+        String attempt = base;
+        for (int index = 2; names.evaluate(attempt); index++) {
+            attempt = base + "_" + index;
+        }
+        className = attempt;
+        return className;
+    }
+
+    /**
+     * Returns name given to the proxy class
+     *
+     * @return Class name or null if it hasn't been named yet
+     */
+    public String getClassName() {
+        return className;
+    }
+
+}
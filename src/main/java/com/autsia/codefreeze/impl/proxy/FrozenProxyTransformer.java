@@ -0,0 +1,136 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.proxy;
+
+import com.autsia.codefreeze.CodeFreeze;
+import net.sf.cglib.core.CodeEmitter;
+import net.sf.cglib.core.Constants;
+import net.sf.cglib.core.Signature;
+import net.sf.cglib.core.TypeUtils;
+import net.sf.cglib.transform.ClassEmitterTransformer;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Type;
+
+/**
+ * CGLIB transformer which adds state fields to the proxy class and implements {@link FrozenProxy} on top of them.
+ * Results of freezing getters are memoized in slot fields, one field per getter.
+ */
+public class FrozenProxyTransformer extends ClassEmitterTransformer {
+
+    private static final Type FROZEN_PROXY = Type.getType(FrozenProxy.class);
+    private static final Type CODE_FREEZE = Type.getType(CodeFreeze.class);
+    private static final Type FROZEN_PROXY_FACTORY = Type.getType(FrozenProxyFactory.class);
+
+    private static final String BIND_CALLBACKS = "CGLIB$BIND_CALLBACKS";
+
+    private static final String DELEGATE_FIELD = "CODEFREEZE$DELEGATE";
+    private static final String CONTEXT_FIELD = "CODEFREEZE$CONTEXT";
+    private static final String SLOT_FIELD_PREFIX = "CODEFREEZE$SLOT_";
+
+    private static final Signature DELEGATE =
+            new Signature("codeFreeze$delegate", Constants.TYPE_OBJECT, Constants.TYPES_EMPTY);
+    private static final Signature CONTEXT =
+            new Signature("codeFreeze$context", CODE_FREEZE, Constants.TYPES_EMPTY);
+    private static final Signature INITIALIZE =
+            new Signature("codeFreeze$initialize", Type.VOID_TYPE, new Type[]{Constants.TYPE_OBJECT, CODE_FREEZE});
+    private static final Signature AWAIT_CALLBACKS =
+            new Signature("awaitCallbacks", Type.VOID_TYPE, new Type[]{Constants.TYPE_OBJECT});
+
+    private final int slotsCount;
+
+    /**
+     * Initializes FrozenProxyTransformer with number of memoization slots
+     *
+     * @param slotsCount Number of freezing getters
+     */
+    public FrozenProxyTransformer(int slotsCount) {
+        this.slotsCount = slotsCount;
+    }
+
+    /**
+     * Returns name of the field generated for the memoization slot
+     *
+     * @param slot Slot index
+     * @return Field name
+     */
+    public static String slotField(int slot) {
+        return SLOT_FIELD_PREFIX + slot;
+    }
+
+    @Override
+    public void begin_class(int version, int access, String className, Type superType, Type[] interfaces, String source) {
+        super.begin_class(version, access, className, superType, TypeUtils.add(interfaces, FROZEN_PROXY), source);
+    }
+
+    /**
+     * CGLIB binds callbacks when the callback field of the proxy reads null. Besides the constructor, that happens
+     * in the thread which has got the proxy through a data race, so the binding waits for the proxy to be
+     * initialized first: callbacks are set before the volatile delegate, so they are visible once it is.
+     */
+    @Override
+    public CodeEmitter begin_method(int access, Signature sig, Type[] exceptions) {
+        CodeEmitter e = super.begin_method(access, sig, exceptions);
+        if (BIND_CALLBACKS.equals(sig.getName())) {
+            e.load_arg(0);
+            e.invoke_static(FROZEN_PROXY_FACTORY, AWAIT_CALLBACKS);
+        }
+        return e;
+    }
+
+    @Override
+    public void end_class() {
+        declare_field(Constants.ACC_PRIVATE | Constants.ACC_VOLATILE, DELEGATE_FIELD, Constants.TYPE_OBJECT, null);
+        declare_field(Constants.ACC_PRIVATE, CONTEXT_FIELD, CODE_FREEZE, null);
+        for (int slot = 0; slot < slotsCount; slot++) {
+            // Slots are public to let callbacks access them via AtomicReferenceFieldUpdater
+            declare_field(Constants.ACC_PUBLIC | Constants.ACC_VOLATILE, slotField(slot), Constants.TYPE_OBJECT, null);
+        }
+        emitGetter(DELEGATE, DELEGATE_FIELD);
+        emitGetter(CONTEXT, CONTEXT_FIELD);
+        emitInitialize();
+        super.end_class();
+    }
+
+    private void emitGetter(Signature signature, String field) {
+        CodeEmitter e = begin_method(Constants.ACC_PUBLIC, signature, null);
+        e.load_this();
+        e.getfield(field);
+        e.return_value();
+        e.end_method();
+    }
+
+    /**
+     * Assigns state only once, delegate is written last so that its volatile write publishes the context
+     */
+    private void emitInitialize() {
+        CodeEmitter e = begin_method(Constants.ACC_PUBLIC, INITIALIZE, null);
+        Label initialized = e.make_label();
+        e.load_this();
+        e.getfield(DELEGATE_FIELD);
+        e.ifnonnull(initialized);
+        e.load_this();
+        e.load_arg(1);
+        e.putfield(CONTEXT_FIELD);
+        e.load_this();
+        e.load_arg(0);
+        e.putfield(DELEGATE_FIELD);
+        e.mark(initialized);
+        e.return_value();
+        e.end_method();
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.proxy;
+
+import net.sf.cglib.proxy.CallbackFilter;
+import net.sf.cglib.proxy.Enhancer;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Directory of generated proxy classes, reused by later JVM runs instead of generating them again.
+ * Every class is stored under fingerprint of everything its bytecode depends on: library version and the code
+ * generating proxies, bytecode of proxified class and its superclasses, and the way its methods are intercepted.
+ */
+public class ProxyClassCache {
+
+    private static final String VERSION_RESOURCE = "/com/autsia/codefreeze/version.properties";
+    private static final String LIBRARY_VERSION = loadLibraryVersion();
+    private static final Class<?>[] GENERATOR_CLASSES = {FrozenProxyGeneratorStrategy.class, FrozenProxyTransformer.class};
+
+    private final Path directory;
+
+    /**
+     * Initializes ProxyClassCache with cache directory, which is created if it doesn't exist
+     *
+     * @param directory Cache directory
+     */
+    public ProxyClassCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Computes fingerprint of proxy class
+     *
+     * @param type           Proxified class
+     * @param callbackFilter Filter defining callbacks of proxy methods
+     * @return Fingerprint or null if bytecode of some involved class is not available
+     */
+    public static String fingerprint(Class<?> type, CallbackFilter callbackFilter) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(LIBRARY_VERSION.getBytes(StandardCharsets.UTF_8));
+        for (Class<?> generatorClass : GENERATOR_CLASSES) {
+            if (!updateWithBytecode(digest, generatorClass)) {
+                return null;
+            }
+        }
+        for (Class<?> superclass = type; superclass != null && superclass != Object.class; superclass = superclass.getSuperclass()) {
+            if (!updateWithBytecode(digest, superclass)) {
+                return null;
+            }
+        }
+        List<Method> methods = new ArrayList<>();
+        Enhancer.getMethods(type, null, methods);
+        for (Method method : methods) {
+            String interception = method.getName() + Type.getMethodDescriptor(method) + callbackFilter.accept(method);
+            digest.update(interception.getBytes(StandardCharsets.UTF_8));
+        }
+        StringBuilder fingerprint = new StringBuilder();
+        for (byte b : digest.digest()) {
+            fingerprint.append(String.format("%02x", b));
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * Loads proxy class bytecode
+     *
+     * @param className   Proxy class name
+     * @param fingerprint Proxy class fingerprint
+     * @return Bytecode or null if it's not cached
+     */
+    public byte[] load(String className, String fingerprint) {
+        Path file = getFile(className, fingerprint);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            byte[] bytecode = Files.readAllBytes(file);
+            // Unreadable or foreign class is treated as a cache miss and is overwritten
+            return className.replace('.', '/').equals(new ClassReader(bytecode).getClassName()) ? bytecode : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores proxy class bytecode. Failures are ignored, as the cache is just an optimization.
+     *
+     * @param className   Proxy class name
+     * @param fingerprint Proxy class fingerprint
+     * @param bytecode    Bytecode
+     */
+    public void store(String className, String fingerprint, byte[] bytecode) {
+        try {
+            Files.createDirectories(directory);
+            // Concurrent JVMs may store the same class, so it's written to temporary file first and then moved atomically
+            Path temporaryFile = Files.createTempFile(directory, className, ".tmp");
+            try {
+                Files.write(temporaryFile, bytecode);
+                Files.move(temporaryFile, getFile(className, fingerprint), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporaryFile);
+            }
+        } catch (IOException e) {
+            // Class will be generated once again next time
+        }
+    }
+
+    private Path getFile(String className, String fingerprint) {
+        return directory.resolve(className + "-" + fingerprint + ".class");
+    }
+
+    private static boolean updateWithBytecode(MessageDigest digest, Class<?> type) {
+        String resource = "/" + type.getName().replace('.', '/') + ".class";
+        try (InputStream in = type.getResourceAsStream(resource)) {
+            if (in == null) {
+                return false;
+            }
+            ByteArrayOutputStream bytecode = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                bytecode.write(buffer, 0, read);
+            }
+            digest.update(type.getName().getBytes(StandardCharsets.UTF_8));
+            digest.update(bytecode.toByteArray());
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static String loadLibraryVersion() {
+        Properties properties = new Properties();
+        try (InputStream in = ProxyClassCache.class.getResourceAsStream(VERSION_RESOURCE)) {
+            if (in != null) {
+                properties.load(in);
+            }
+        } catch (IOException e) {
+            // Unknown version
+        }
+        return properties.getProperty("version", "unknown");
+    }
+
+}
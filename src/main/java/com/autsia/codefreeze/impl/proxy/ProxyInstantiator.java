@@ -0,0 +1,89 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.proxy;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Creates instances of proxy classes without running their constructors, the way deserialization does it,
+ * so that creating proxy costs the allocation only. Relies on {@code sun.reflect.ReflectionFactory},
+ * callers fall back to constructors on JVMs which don't have it.
+ */
+public class ProxyInstantiator {
+
+    private static final Object[] NO_ARGUMENTS = {};
+    private static final Object REFLECTION_FACTORY;
+    private static final Method NEW_CONSTRUCTOR_FOR_SERIALIZATION;
+
+    static {
+        Object reflectionFactory = null;
+        Method newConstructorForSerialization = null;
+        try {
+            Class<?> reflectionFactoryClass = Class.forName("sun.reflect.ReflectionFactory");
+            reflectionFactory = reflectionFactoryClass.getMethod("getReflectionFactory").invoke(null);
+            newConstructorForSerialization = reflectionFactoryClass.getMethod("newConstructorForSerialization", Class.class, Constructor.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Constructors are run then
+        }
+        REFLECTION_FACTORY = reflectionFactory;
+        NEW_CONSTRUCTOR_FOR_SERIALIZATION = newConstructorForSerialization;
+    }
+
+    private final Constructor<?> constructor;
+
+    /**
+     * Initializes ProxyInstantiator with the class to instantiate
+     *
+     * @param type Class to instantiate, only constructor of {@link Object} is run for its instances
+     */
+    public ProxyInstantiator(Class<?> type) {
+        if (!isAvailable()) {
+            throw new UnsupportedOperationException("Constructors can't be bypassed on this JVM");
+        }
+        try {
+            this.constructor = (Constructor<?>) NEW_CONSTRUCTOR_FOR_SERIALIZATION.invoke(REFLECTION_FACTORY, type, Object.class.getDeclaredConstructor());
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+        constructor.setAccessible(true);
+    }
+
+    /**
+     * Tells whether instances can be created without running constructors on this JVM
+     *
+     * @return true if constructors are bypassed
+     */
+    public static boolean isAvailable() {
+        return NEW_CONSTRUCTOR_FOR_SERIALIZATION != null;
+    }
+
+    /**
+     * Creates new instance with all fields set to default values
+     *
+     * @return New instance
+     */
+    public Object newInstance() {
+        try {
+            return constructor.newInstance(NO_ARGUMENTS);
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
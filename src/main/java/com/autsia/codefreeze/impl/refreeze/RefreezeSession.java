@@ -0,0 +1,271 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.refreeze;
+
+import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.Frozen;
+import com.autsia.codefreeze.impl.filters.ImmutabilityCallbackFilter;
+import com.google.common.collect.Ordering;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+
+/**
+ * Single re-freezing of bean graph against its previous frozen version. Both graphs are walked together through
+ * getters: objects, which getters return the same values as the previous frozen versions do, are reused as is,
+ * while the rest are frozen again. Children of changed objects are registered in identities of the session,
+ * so that lazily frozen children of new immutable objects resolve to the reused ones.
+ */
+public class RefreezeSession {
+
+    private static final Object FAILED = new Object();
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    private static final ClassValue<Method[]> GETTERS = new ClassValue<Method[]>() {
+        @Override
+        protected Method[] computeValue(Class<?> type) {
+            return Arrays.stream(type.getMethods())
+                    .filter(RefreezeSession::isGetter)
+                    .peek(method -> method.setAccessible(true))
+                    .toArray(Method[]::new);
+        }
+    };
+
+    private final CodeFreeze context;
+    private final Predicate<Object> immutable;
+    private final ConcurrentMap<Object, Object> identities;
+    private final Set<Object> visiting = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<Object> children = new ArrayList<>();
+
+    /**
+     * Initializes RefreezeSession
+     *
+     * @param context    CodeFreeze service, which freezes objects within the session
+     * @param immutable  Check of objects, which don't need freezing
+     * @param identities Source objects mapped to immutable ones by the context
+     */
+    public RefreezeSession(CodeFreeze context, Predicate<Object> immutable, ConcurrentMap<Object, Object> identities) {
+        this.context = context;
+        this.immutable = immutable;
+        this.identities = identities;
+    }
+
+    /**
+     * Creates immutable version of bean, which shares unchanged objects with the previous immutable version
+     *
+     * @param previous Previous immutable version, may be null
+     * @param bean     Bean to make immutable
+     * @param <T>      Bean type
+     * @return Immutable version of bean, previous version itself if nothing changed
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T refreeze(T previous, T bean) {
+        return (T) refreezeObject(previous, bean);
+    }
+
+    private Object refreezeObject(Object previous, Object bean) {
+        if (bean == null) {
+            return null;
+        }
+        if (isValue(bean)) {
+            return bean.equals(previous) ? previous : bean;
+        }
+        Object known = identities.get(bean);
+        if (known != null && (known == previous || previous == null)) {
+            return known;
+        }
+        if (bean.getClass().isArray()) {
+            // Arrays are copied by getters anyway, so only their elements are shared
+            return refreezeArray(previous, bean) ? previous : bean;
+        }
+        if (previous == null || !visiting.add(bean)) {
+            // Cycles are frozen again, as their objects can't be compared before the walk is finished
+            return context.freeze(bean);
+        }
+        boolean unchanged;
+        int mark = children.size();
+        try {
+            if (bean instanceof Map) {
+                unchanged = refreezeMap(previous, (Map<?, ?>) bean);
+            } else if (bean instanceof Collection) {
+                unchanged = refreezeCollection(previous, (Collection<?>) bean);
+            } else if (bean instanceof Optional) {
+                Object element = previous instanceof Optional ? ((Optional<?>) previous).orElse(null) : null;
+                unchanged = previous instanceof Optional && refreezeChild(element, ((Optional<?>) bean).orElse(null)) == element;
+            } else if (previous instanceof Frozen && bean.getClass().isInstance(previous)) {
+                unchanged = refreezeBean(previous, bean);
+            } else {
+                unchanged = false;
+            }
+        } finally {
+            visiting.remove(bean);
+        }
+        if (!unchanged) {
+            // Objects reachable through several getters keep the immutable version they were registered with first
+            for (int i = mark; i < children.size(); i += 2) {
+                identities.putIfAbsent(children.get(i), children.get(i + 1));
+            }
+        }
+        if (children.size() > mark) {
+            children.subList(mark, children.size()).clear();
+        }
+        return unchanged ? previous : context.freeze(bean);
+    }
+
+    /**
+     * Re-freezes child object, keeping its immutable version until its parent turns out to be changed or unchanged
+     */
+    private Object refreezeChild(Object previous, Object child) {
+        Object frozen = refreezeObject(previous, child);
+        // Arrays aren't registered, as every getter call has to return a new copy
+        if (child != null && frozen != child && !child.getClass().isArray() && !isValue(child)) {
+            children.add(child);
+            children.add(frozen);
+        }
+        return frozen;
+    }
+
+    private boolean refreezeBean(Object previous, Object bean) {
+        boolean unchanged = true;
+        // Every getter is walked even after the change is found, so that unchanged children are registered
+        for (Method getter : GETTERS.get(bean.getClass())) {
+            Object previousValue = invoke(getter, previous);
+            Object value = invoke(getter, bean);
+            if (previousValue == FAILED || value == FAILED) {
+                unchanged &= previousValue == value;
+            } else {
+                unchanged &= refreezeChild(previousValue, value) == previousValue;
+            }
+        }
+        return unchanged;
+    }
+
+    private boolean refreezeCollection(Object previous, Collection<?> collection) {
+        boolean unchanged = isSameKind(previous, collection) && ((Collection<?>) previous).size() == collection.size();
+        Iterator<?> previousElements = previous instanceof Collection ? ((Collection<?>) previous).iterator()
+                : Collections.emptyIterator();
+        // Elements are paired by position, as source and frozen collections keep the same order
+        for (Object element : collection) {
+            Object previousElement = previousElements.hasNext() ? previousElements.next() : null;
+            unchanged &= refreezeChild(previousElement, element) == previousElement;
+        }
+        return unchanged;
+    }
+
+    private boolean refreezeMap(Object previous, Map<?, ?> map) {
+        Map<?, ?> previousMap = previous instanceof Map ? (Map<?, ?>) previous : Collections.emptyMap();
+        boolean unchanged = isSameKind(previous, map) && previousMap.size() == map.size();
+        // Frozen maps keep the order of source maps, so reordered entries make a changed map unless it's sorted
+        boolean ordered = !(map instanceof SortedMap);
+        Iterator<? extends Map.Entry<?, ?>> previousEntries = previousMap.entrySet().iterator();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            Map.Entry<?, ?> previousEntry = previousEntries.hasNext() ? previousEntries.next() : null;
+            Object key = entry.getKey();
+            Object previousKey;
+            Object previousValue;
+            if (isValue(key)) {
+                // Immutable keys are looked up, so that added or removed entries don't shift the rest of them
+                previousKey = key;
+                previousValue = previousMap.get(key);
+                unchanged &= !ordered || previousEntry != null && key.equals(previousEntry.getKey());
+            } else {
+                previousKey = previousEntry != null ? previousEntry.getKey() : null;
+                previousValue = previousEntry != null ? previousEntry.getValue() : null;
+            }
+            unchanged &= refreezeChild(previousKey, key) == previousKey;
+            unchanged &= refreezeChild(previousValue, entry.getValue()) == previousValue;
+        }
+        return unchanged;
+    }
+
+    private boolean refreezeArray(Object previous, Object array) {
+        int length = Array.getLength(array);
+        boolean unchanged = previous != null && previous.getClass() == array.getClass() && Array.getLength(previous) == length;
+        for (int i = 0; i < length; i++) {
+            Object previousElement = unchanged ? Array.get(previous, i) : null;
+            unchanged &= refreezeChild(previousElement, Array.get(array, i)) == previousElement;
+        }
+        return unchanged;
+    }
+
+    /**
+     * Checks if previous immutable collection is of the kind the collection is frozen to, including its ordering
+     */
+    private static boolean isSameKind(Object previous, Object collection) {
+        if (collection instanceof SortedSet) {
+            return previous instanceof SortedSet
+                    && isSameOrdering(((SortedSet<?>) previous).comparator(), ((SortedSet<?>) collection).comparator());
+        }
+        if (collection instanceof SortedMap) {
+            return previous instanceof SortedMap
+                    && isSameOrdering(((SortedMap<?, ?>) previous).comparator(), ((SortedMap<?, ?>) collection).comparator());
+        }
+        if (collection instanceof Queue) {
+            // Lists like LinkedList are frozen to lists which are deques as well
+            return previous instanceof Queue && (collection instanceof List == previous instanceof List);
+        }
+        return collection instanceof List && previous instanceof List
+                || collection instanceof Set && previous instanceof Set
+                || collection instanceof Map && previous instanceof Map;
+    }
+
+    private static boolean isSameOrdering(Comparator<?> previous, Comparator<?> comparator) {
+        return Objects.equals(previous != null ? previous : Ordering.natural(), comparator != null ? comparator : Ordering.natural());
+    }
+
+    /**
+     * Checks if object is returned by freezing as is, so that it's compared by equals()
+     */
+    private boolean isValue(Object object) {
+        if (immutable.test(object)) {
+            return true;
+        }
+        Class<?> type = object.getClass();
+        return !type.isArray() && !(object instanceof Collection) && !(object instanceof Map)
+                && !(object instanceof Optional) && !context.isEnhanceable(type);
+    }
+
+    /**
+     * Getters, which values are the content of bean: the ones without parameters, except streams and iterators
+     */
+    private static boolean isGetter(Method method) {
+        String name = method.getName();
+        return (name.startsWith("get") || name.startsWith("is")) && method.getParameterCount() == 0
+                && !Modifier.isStatic(method.getModifiers()) && !method.isBridge()
+                && method.getDeclaringClass() != Object.class && method.getReturnType() != void.class
+                && !ImmutabilityCallbackFilter.isSingleUse(method.getReturnType());
+    }
+
+    /**
+     * Calls getter, which failure is compared as a value: getters of both versions fail if nothing changed
+     */
+    private static Object invoke(Method getter, Object target) {
+        try {
+            return getter.invoke(target, NO_ARGUMENTS);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        } catch (InvocationTargetException e) {
+            return FAILED;
+        }
+    }
+
+}
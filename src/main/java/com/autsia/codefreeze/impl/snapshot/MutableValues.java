@@ -0,0 +1,111 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.snapshot;
+
+import com.autsia.codefreeze.Frozen;
+import com.autsia.codefreeze.impl.ImmutableTypes;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Copies of mutable objects, which can't be snapshotted (e.g. final classes), so that snapshots don't share them
+ * with the source graph. Objects are copied once with their public clone() method or, failing that, with
+ * serialization. Objects which can be neither cloned nor serialized are shared.
+ */
+public final class MutableValues {
+
+    // ClassValue keeps computed values on classes themselves, so that classes are not retained
+    private static final ClassValue<Method> CLONE_METHODS = new ClassValue<Method>() {
+        @Override
+        protected Method computeValue(Class<?> type) {
+            if (!Cloneable.class.isAssignableFrom(type)) {
+                return null;
+            }
+            try {
+                Method clone = type.getMethod("clone");
+                clone.setAccessible(true);
+                return clone;
+            } catch (NoSuchMethodException | RuntimeException e) {
+                return null;
+            }
+        }
+    };
+
+    private MutableValues() {
+    }
+
+    /**
+     * Copies value, unless it's immutable, frozen or can't be copied
+     *
+     * @param value Value to copy
+     * @param <T>   Value type
+     * @return Copy of value or value itself
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T copy(T value) {
+        if (value == null || value instanceof Frozen || ImmutableTypes.isImmutable(value.getClass()) || value.getClass().isArray()
+                || value instanceof Collection || value instanceof Map || value instanceof Optional) {
+            return value;
+        }
+        Method clone = CLONE_METHODS.get(value.getClass());
+        if (clone != null) {
+            try {
+                return (T) clone.invoke(value);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                // Fall back to serialization
+            }
+        }
+        if (value instanceof Serializable) {
+            try {
+                return (T) deserialize(serialize(value), value.getClass().getClassLoader());
+            } catch (IOException | ClassNotFoundException e) {
+                // Serializable types may still reference objects, which are not serializable
+            }
+        }
+        return value;
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes, ClassLoader classLoader) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass description) throws IOException, ClassNotFoundException {
+                // Classes of the value may come from the class loader, which the stream doesn't see
+                try {
+                    return Class.forName(description.getName(), false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    return super.resolveClass(description);
+                }
+            }
+        }) {
+            return input.readObject();
+        }
+    }
+
+}
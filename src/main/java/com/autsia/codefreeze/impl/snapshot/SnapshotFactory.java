@@ -0,0 +1,113 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.snapshot;
+
+import com.autsia.codefreeze.impl.callbacks.SnapshotArrayInterceptor;
+import com.autsia.codefreeze.impl.callbacks.SnapshotMutatorInterceptor;
+import com.autsia.codefreeze.impl.filters.SnapshotCallbackFilter;
+import com.autsia.codefreeze.impl.proxy.FrozenProxyGeneratorStrategy;
+import com.autsia.codefreeze.impl.proxy.ProxyInstantiator;
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.Factory;
+import net.sf.cglib.proxy.NoOp;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Factory of snapshot instances of particular type: subclasses which hold their own copy of the state
+ */
+public class SnapshotFactory {
+
+    private static final Callback[] CALLBACKS = {NoOp.INSTANCE, new SnapshotMutatorInterceptor(), new SnapshotArrayInterceptor()};
+
+    private final ProxyInstantiator instantiator;
+    private final Factory factory;
+    private final List<Field> fields;
+
+    /**
+     * Generates snapshot class for type
+     *
+     * @param type Type to snapshot
+     */
+    public SnapshotFactory(Class<?> type) {
+        Enhancer enhancer = new Enhancer();
+        // Slot-less FrozenProxy fields mark snapshots and seal them
+        enhancer.setStrategy(new FrozenProxyGeneratorStrategy(0));
+        enhancer.setSuperclass(type);
+        // CGLIB fails to resolve the default class loader for types which come from non-system class loaders
+        enhancer.setClassLoader(type.getClassLoader());
+        enhancer.setCallbackFilter(new SnapshotCallbackFilter(type));
+        enhancer.setCallbackTypes(new Class[]{NoOp.class, SnapshotMutatorInterceptor.class, SnapshotArrayInterceptor.class});
+        Class<?> snapshotClass = enhancer.createClass();
+        // Snapshots published through a data race bind these callbacks if their own callback fields are not visible yet
+        Enhancer.registerStaticCallbacks(snapshotClass, CALLBACKS);
+        if (ProxyInstantiator.isAvailable()) {
+            this.instantiator = new ProxyInstantiator(snapshotClass);
+            this.factory = null;
+        } else {
+            this.instantiator = null;
+            try {
+                this.factory = (Factory) snapshotClass.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        this.fields = Collections.unmodifiableList(getInstanceFields(type));
+    }
+
+    /**
+     * Creates unsealed snapshot instance, without running constructor unless the JVM doesn't allow to bypass it
+     *
+     * @return Snapshot instance
+     */
+    public Object newInstance() {
+        if (instantiator == null) {
+            return factory.newInstance(CALLBACKS);
+        }
+        Factory snapshot = (Factory) instantiator.newInstance();
+        snapshot.setCallbacks(CALLBACKS);
+        return snapshot;
+    }
+
+    /**
+     * Returns instance fields of the type and its superclasses, which hold the state to be copied
+     *
+     * @return Fields
+     */
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    private static List<Field> getInstanceFields(Class<?> type) {
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> superclass = type; superclass != null && superclass != Object.class; superclass = superclass.getSuperclass()) {
+            for (Field field : superclass.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    field.setAccessible(true);
+                    fields.add(field);
+                }
+            }
+        }
+        return fields;
+    }
+
+}
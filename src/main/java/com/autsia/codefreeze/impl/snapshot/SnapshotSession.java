@@ -0,0 +1,332 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.impl.snapshot;
+
+import com.autsia.codefreeze.CodeFreeze;
+import com.autsia.codefreeze.impl.collections.FrozenDeque;
+import com.autsia.codefreeze.impl.collections.FrozenListDeque;
+import com.autsia.codefreeze.impl.proxy.FrozenProxy;
+import com.autsia.codefreeze.impl.proxy.FrozenProxyFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Ordering;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Single snapshotting of bean graph. Graph is walked iteratively, so that deep graphs don't overflow the stack:
+ * snapshot instances are created for every reachable bean first, then their fields are copied, then collections
+ * are copied into Guava immutable ones, and finally snapshots are sealed.
+ * Shared objects and cycles are copied to the same snapshot instance, mutable objects of types which can't be
+ * snapshotted are copied once with {@link MutableValues}. Getters of snapshots are not intercepted: the volatile write
+ * of the delegate, which seals snapshot, comes after all of its fields are written, and snapshot isn't published before it.
+ */
+public class SnapshotSession {
+
+    // Sessions running in the current thread, which snapshots are not sealed yet
+    private static final ThreadLocal<SnapshotSession> CURRENT = new ThreadLocal<>();
+
+    private final CodeFreeze codeFreeze;
+    private final Function<Class<?>, SnapshotFactory> factories;
+    private final Map<Object, Object> copies = new IdentityHashMap<>();
+    private final Map<Object, Object> containerCopies = new IdentityHashMap<>();
+    private final Set<Object> visitedContainers = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<Object> sources = new ArrayList<>();
+    private final List<DeferredField> deferredFields = new ArrayList<>();
+    private final Set<Object> unsealed = Collections.newSetFromMap(new IdentityHashMap<>());
+    private SnapshotSession outer;
+    private boolean constructing;
+
+    /**
+     * Initializes SnapshotSession
+     *
+     * @param codeFreeze CodeFreeze service, which decides which types are enhanceable and is kept by snapshots
+     * @param factories  Snapshot factories by type
+     */
+    public SnapshotSession(CodeFreeze codeFreeze, Function<Class<?>, SnapshotFactory> factories) {
+        this.codeFreeze = codeFreeze;
+        this.factories = factories;
+    }
+
+    /**
+     * Copies bean graph into snapshots
+     *
+     * @param bean Bean to snapshot
+     * @param <T>  Bean type
+     * @return Snapshot of bean or bean itself if it can't be copied
+     */
+    public <T> T snapshot(T bean) {
+        // Snapshots are not sealed until the end of the session, so their methods don't wait for sealing meanwhile
+        outer = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return copy(bean);
+        } finally {
+            if (outer == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(outer);
+            }
+        }
+    }
+
+    /**
+     * Checks whether snapshot is sealed. Snapshots of the sessions running in the current thread are not sealed until
+     * the end of their sessions, while the ones populated by other threads and published through a data race are
+     * waited for.
+     *
+     * @param snapshot Snapshot instance
+     * @return False if snapshot is being populated by the current thread
+     */
+    public static boolean isSealed(Object snapshot) {
+        if (((FrozenProxy) snapshot).codeFreeze$delegate() != null) {
+            return true;
+        }
+        for (SnapshotSession session = CURRENT.get(); session != null; session = session.outer) {
+            if (session.constructing || session.unsealed.contains(snapshot)) {
+                return false;
+            }
+        }
+        FrozenProxyFactory.awaitDelegate((FrozenProxy) snapshot);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T copy(T bean) {
+        Deque<Object> pending = new ArrayDeque<>();
+        discover(bean, pending);
+        while (!pending.isEmpty()) {
+            Object source = pending.poll();
+            for (Field field : factories.apply(source.getClass()).getFields()) {
+                if (!field.getType().isPrimitive()) {
+                    discover(get(field, source), pending);
+                }
+            }
+        }
+        for (Object source : sources) {
+            populate(source);
+        }
+        // Beans discovered later are deeper in the graph: their collections are set first,
+        // so that hash codes of their snapshots are final by the time they get into sets and maps of parents
+        for (int i = deferredFields.size() - 1; i >= 0; i--) {
+            DeferredField deferred = deferredFields.get(i);
+            Object value = copyContainer(deferred.value);
+            set(deferred.field, deferred.copy, deferred.field.getType().isInstance(value) ? value : deferred.value);
+        }
+        for (Object source : sources) {
+            Object copy = copies.get(source);
+            ((FrozenProxy) copy).codeFreeze$initialize(copy, codeFreeze);
+        }
+        unsealed.clear();
+        Object root = unwrap(bean);
+        return (T) (isContainer(root) ? copyContainer(root) : copyValue(root));
+    }
+
+    /**
+     * Checks whether object is sealed snapshot
+     *
+     * @param object Object to check
+     * @return True if object is snapshot
+     */
+    public static boolean isSnapshot(Object object) {
+        return object instanceof FrozenProxy && ((FrozenProxy) object).codeFreeze$delegate() == object;
+    }
+
+    private void discover(Object value, Deque<Object> pending) {
+        value = unwrap(value);
+        if (value == null || isSnapshot(value)) {
+            return;
+        }
+        if (value instanceof Optional) {
+            ((Optional<?>) value).ifPresent(element -> discover(element, pending));
+            return;
+        }
+        if (isContainer(value) || value.getClass().isArray()) {
+            if (visitedContainers.add(value)) {
+                if (value instanceof Collection) {
+                    ((Collection<?>) value).forEach(element -> discover(element, pending));
+                } else if (value instanceof Map) {
+                    ((Map<?, ?>) value).forEach((key, element) -> {
+                        discover(key, pending);
+                        discover(element, pending);
+                    });
+                } else if (!value.getClass().getComponentType().isPrimitive()) {
+                    for (Object element : (Object[]) value) {
+                        discover(element, pending);
+                    }
+                }
+            }
+        } else if (!copies.containsKey(value) && codeFreeze.isEnhanceable(value.getClass())) {
+            // Mutators called from the constructor, unless it's bypassed, change the snapshot being created
+            constructing = true;
+            Object copy;
+            try {
+                copy = factories.apply(value.getClass()).newInstance();
+            } finally {
+                constructing = false;
+            }
+            copies.put(value, copy);
+            unsealed.add(copy);
+            sources.add(value);
+            pending.add(value);
+        }
+    }
+
+    private void populate(Object source) {
+        Object copy = copies.get(source);
+        for (Field field : factories.apply(source.getClass()).getFields()) {
+            Object value = get(field, source);
+            if (field.getType().isPrimitive()) {
+                set(field, copy, value);
+                continue;
+            }
+            value = unwrap(value);
+            if (isContainer(value)) {
+                deferredFields.add(new DeferredField(field, copy, value));
+            } else {
+                set(field, copy, copyValue(value));
+            }
+        }
+    }
+
+    private Object copyValue(Object value) {
+        if (value == null) {
+            return null;
+        }
+        Object copy = copies.get(value);
+        if (copy != null) {
+            return copy;
+        }
+        if (value.getClass().isArray()) {
+            return copyArray(value);
+        }
+        if (value instanceof Optional) {
+            return ((Optional<?>) value).map(this::copyElement);
+        }
+        // Snapshots and immutable objects are shared with the source graph, mutable objects are copied once if possible
+        return MutableValues.copy(value);
+    }
+
+    private Object copyArray(Object array) {
+        Object copy = containerCopies.get(array);
+        if (copy == null) {
+            int length = Array.getLength(array);
+            copy = Array.newInstance(array.getClass().getComponentType(), length);
+            containerCopies.put(array, copy);
+            for (int i = 0; i < length; i++) {
+                Array.set(copy, i, copyElement(Array.get(array, i)));
+            }
+        }
+        return copy;
+    }
+
+    private Object copyContainer(Object container) {
+        Object copy = containerCopies.get(container);
+        if (copy != null) {
+            return copy;
+        }
+        if (container instanceof List) {
+            ImmutableList.Builder<Object> builder = ImmutableList.builder();
+            ((List<?>) container).forEach(element -> builder.add(copyElement(element)));
+            // Lists like LinkedList are deques as well, and getters may return them as such
+            copy = container instanceof Queue ? new FrozenListDeque<>(builder.build()) : builder.build();
+        } else if (container instanceof Set) {
+            ImmutableSet.Builder<Object> builder = container instanceof SortedSet
+                    ? new ImmutableSortedSet.Builder<>(comparator(((SortedSet<?>) container).comparator()))
+                    : ImmutableSet.builder();
+            ((Set<?>) container).forEach(element -> builder.add(copyElement(element)));
+            copy = builder.build();
+        } else if (container instanceof Queue) {
+            ArrayDeque<Object> elements = new ArrayDeque<>();
+            ((Queue<?>) container).forEach(element -> elements.add(copyElement(element)));
+            copy = new FrozenDeque<>(elements);
+        } else {
+            ImmutableMap.Builder<Object, Object> builder = container instanceof SortedMap
+                    ? new ImmutableSortedMap.Builder<>(comparator(((SortedMap<?, ?>) container).comparator()))
+                    : ImmutableMap.builder();
+            ((Map<?, ?>) container).forEach((key, value) -> builder.put(copyElement(key), copyElement(value)));
+            copy = builder.build();
+        }
+        containerCopies.put(container, copy);
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparator<Object> comparator(Comparator<?> comparator) {
+        return comparator != null ? (Comparator<Object>) comparator : (Comparator) Ordering.natural();
+    }
+
+    private Object copyElement(Object element) {
+        element = unwrap(element);
+        return isContainer(element) ? copyContainer(element) : copyValue(element);
+    }
+
+    /**
+     * Frozen proxies are snapshotted by their delegates, snapshots are kept as is
+     */
+    private static Object unwrap(Object value) {
+        if (value instanceof FrozenProxy) {
+            Object delegate = ((FrozenProxy) value).codeFreeze$delegate();
+            return delegate != null ? delegate : value;
+        }
+        return value;
+    }
+
+    private static boolean isContainer(Object value) {
+        return value instanceof List || value instanceof Set || value instanceof Map || value instanceof Queue;
+    }
+
+    private static Object get(Field field, Object target) {
+        try {
+            return field.get(target);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void set(Field field, Object target, Object value) {
+        try {
+            field.set(target, value);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Collection or map field, which is set once snapshots of its elements are populated
+     */
+    private static class DeferredField {
+
+        private final Field field;
+        private final Object copy;
+        private final Object value;
+
+        private DeferredField(Field field, Object copy, Object value) {
+            this.field = field;
+            this.copy = copy;
+            this.value = value;
+        }
+
+    }
+
+}
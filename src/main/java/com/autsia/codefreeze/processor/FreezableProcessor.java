@@ -0,0 +1,139 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.processor;
+
+import com.autsia.codefreeze.Freezable;
+import com.autsia.codefreeze.generated.FrozenWrapperFactory;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates immutable wrappers for {@link Freezable} beans and registers their factories
+ * as {@link FrozenWrapperFactory} services
+ */
+@SupportedAnnotationTypes("com.autsia.codefreeze.Freezable")
+public class FreezableProcessor extends AbstractProcessor {
+
+    private static final String REGISTRY = "META-INF/services/" + FrozenWrapperFactory.class.getName();
+
+    private final Set<String> factories = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(Freezable.class)) {
+            if (isFreezable(element)) {
+                FrozenWrapperWriter writer = new FrozenWrapperWriter(processingEnv, (TypeElement) element);
+                try {
+                    writer.write();
+                    factories.add(writer.getFactoryName());
+                } catch (IOException e) {
+                    error(element, "Unable to generate immutable wrapper: " + e.getMessage());
+                }
+            }
+        }
+        if (roundEnv.processingOver() && !factories.isEmpty()) {
+            writeRegistry();
+        }
+        return true;
+    }
+
+    private boolean isFreezable(Element element) {
+        if (element.getKind() != ElementKind.CLASS) {
+            error(element, "@Freezable is applicable to classes only");
+            return false;
+        }
+        Set<Modifier> modifiers = element.getModifiers();
+        if (modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.PRIVATE)) {
+            error(element, "@Freezable class can't be final or private");
+            return false;
+        }
+        if (element.getEnclosingElement().getKind() != ElementKind.PACKAGE && !modifiers.contains(Modifier.STATIC)) {
+            error(element, "@Freezable nested class has to be static");
+            return false;
+        }
+        boolean hasParameterlessConstructor = ElementFilter.constructorsIn(element.getEnclosedElements()).stream()
+                .anyMatch(c -> c.getParameters().isEmpty() && c.getThrownTypes().isEmpty()
+                        && !c.getModifiers().contains(Modifier.PRIVATE));
+        if (!hasParameterlessConstructor) {
+            error(element, "@Freezable class has to declare non-private parameterless constructor without checked exceptions");
+            return false;
+        }
+        return true;
+    }
+
+    private void writeRegistry() {
+        // Keep factories registered by previous incremental compilations, unless they are stale
+        Set<String> registered = new TreeSet<>(factories);
+        try {
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", REGISTRY);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+                reader.lines().map(String::trim).filter(line -> !line.isEmpty() && !registered.contains(line) && isCurrent(line))
+                        .forEach(registered::add);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // There's no registry yet
+        }
+        try {
+            FileObject registry = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", REGISTRY);
+            try (Writer writer = new OutputStreamWriter(registry.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (String factory : registered) {
+                    writer.write(factory);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + REGISTRY + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks if factory registered by previous compilation still exists and wraps existing {@link Freezable} bean
+     */
+    private boolean isCurrent(String factory) {
+        // Registry lists binary names, while elements are looked up by canonical ones
+        TypeElement factoryElement = processingEnv.getElementUtils().getTypeElement(factory.replace('$', '.'));
+        if (factoryElement == null || !(factoryElement.getEnclosingElement() instanceof TypeElement)) {
+            return false;
+        }
+        TypeMirror bean = ((TypeElement) factoryElement.getEnclosingElement()).getSuperclass();
+        Element beanElement = processingEnv.getTypeUtils().asElement(bean);
+        return beanElement != null && beanElement.getAnnotation(Freezable.class) != null;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+}
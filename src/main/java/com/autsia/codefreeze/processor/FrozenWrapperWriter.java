@@ -0,0 +1,331 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.processor;
+
+import com.autsia.codefreeze.impl.InstantiableTypes;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Writes source of immutable wrapper for particular bean type. Methods are classified the same way
+ * {@link com.autsia.codefreeze.impl.filters.ImmutabilityCallbackFilter} does it for CGLIB proxies.
+ */
+class FrozenWrapperWriter {
+
+    private static final String SUFFIX = "_Frozen";
+    private static final String CODE_FREEZE = "com.autsia.codefreeze.CodeFreeze";
+    private static final String FACTORY = "com.autsia.codefreeze.generated.FrozenWrapperFactory";
+
+    private final ProcessingEnvironment processingEnv;
+    private final Elements elements;
+    private final Types types;
+    private final TypeElement type;
+    private final PackageElement typePackage;
+    private final String wrapperName;
+    private int slotsCount;
+
+    /**
+     * Initializes FrozenWrapperWriter for bean type
+     *
+     * @param processingEnv Annotation processing environment
+     * @param type          Bean type to generate wrapper for
+     */
+    FrozenWrapperWriter(ProcessingEnvironment processingEnv, TypeElement type) {
+        this.processingEnv = processingEnv;
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        this.type = type;
+        this.typePackage = elements.getPackageOf(type);
+        // Nested class Outer.Inner gets top-level wrapper Outer_Inner_Frozen
+        String qualifiedName = type.getQualifiedName().toString();
+        String relativeName = typePackage.isUnnamed() ? qualifiedName : qualifiedName.substring(typePackage.getQualifiedName().length() + 1);
+        this.wrapperName = relativeName.replace('.', '_') + SUFFIX;
+    }
+
+    /**
+     * Returns binary name of generated factory, as it's listed in services registry
+     *
+     * @return Factory name
+     */
+    String getFactoryName() {
+        return getQualifiedWrapperName() + "$Factory";
+    }
+
+    /**
+     * Generates wrapper source
+     *
+     * @throws IOException If source can't be written
+     */
+    void write() throws IOException {
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(getQualifiedWrapperName(), type);
+        try (PrintWriter out = new PrintWriter(file.openWriter())) {
+            String typeName = type.getQualifiedName().toString();
+            String typeParameters = typeParameters(type.getTypeParameters());
+            String superType = typeName + typeArguments(type.getTypeParameters());
+            String visibility = type.getModifiers().contains(Modifier.PUBLIC) ? "public " : "";
+
+            if (!typePackage.isUnnamed()) {
+                out.println("package " + typePackage.getQualifiedName() + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * Immutable wrapper of {@link " + typeName + "}, generated by " + FreezableProcessor.class.getName());
+            out.println(" */");
+            out.println("@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+            out.println(visibility + "final class " + wrapperName + typeParameters + " extends " + superType + " implements com.autsia.codefreeze.Frozen {");
+            out.println();
+            out.println("    private final " + superType + " delegate;");
+            out.println("    private final " + CODE_FREEZE + " codeFreeze;");
+
+            StringBuilder methods = new StringBuilder();
+            for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(type))) {
+                if (isOverridable(method)) {
+                    writeMethod(out, methods, method);
+                }
+            }
+
+            out.println();
+            out.println("    " + wrapperName + "(" + superType + " delegate, " + CODE_FREEZE + " codeFreeze) {");
+            out.println("        this.delegate = delegate;");
+            out.println("        this.codeFreeze = codeFreeze;");
+            out.println("    }");
+            out.print(methods);
+            out.println();
+            out.println("    public static final class Factory implements " + FACTORY + "<" + typeName + "> {");
+            out.println();
+            out.println("        @Override");
+            out.println("        public Class<" + typeName + "> getType() {");
+            out.println("            return " + typeName + ".class;");
+            out.println("        }");
+            out.println();
+            out.println("        @Override");
+            out.println("        public " + typeName + " newInstance(" + typeName + " bean, " + CODE_FREEZE + " codeFreeze) {");
+            out.println("            return new " + wrapperName + "(bean, codeFreeze);");
+            out.println("        }");
+            out.println();
+            out.println("    }");
+            out.println();
+            out.println("}");
+        }
+    }
+
+    private String getQualifiedWrapperName() {
+        return typePackage.isUnnamed() ? wrapperName : typePackage.getQualifiedName() + "." + wrapperName;
+    }
+
+    private boolean isOverridable(ExecutableElement method) {
+        Set<Modifier> modifiers = method.getModifiers();
+        if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        TypeElement owner = (TypeElement) method.getEnclosingElement();
+        if (owner.getQualifiedName().contentEquals(Object.class.getName())) {
+            return modifiers.contains(Modifier.PUBLIC);
+        }
+        if (modifiers.contains(Modifier.PUBLIC) || elements.getPackageOf(owner).equals(typePackage)) {
+            return true;
+        }
+        if (modifiers.contains(Modifier.PROTECTED)) {
+            // Protected method of superclass from another package can't be called on delegate
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Protected method is not delegated by immutable wrapper", method);
+        }
+        return false;
+    }
+
+    /**
+     * Writes method declaration to the wrapper body and field declaration of memoized getter result, if any
+     */
+    private void writeMethod(PrintWriter fields, StringBuilder methods, ExecutableElement method) {
+        ExecutableType executableType = (ExecutableType) types.asMemberOf((DeclaredType) type.asType(), method);
+        String name = method.getSimpleName().toString();
+        TypeMirror returnType = executableType.getReturnType();
+        boolean isVoid = returnType.getKind() == TypeKind.VOID;
+        boolean isAbstract = method.getModifiers().contains(Modifier.ABSTRACT);
+        String arguments = method.getParameters().stream().map(p -> p.getSimpleName().toString()).collect(Collectors.joining(", "));
+        String call = name + "(" + arguments + ")";
+        String ret = isVoid ? "" : "return ";
+
+        methods.append("\n    @Override\n    ").append(signature(method, executableType)).append(" {\n");
+        if (!isAbstract) {
+            // Methods called from bean's constructor are executed before delegate is assigned
+            methods.append("        if (this.delegate == null) {\n")
+                    .append("            ").append(ret).append("super.").append(call).append(";\n");
+            if (isVoid) {
+                methods.append("            return;\n");
+            }
+            methods.append("        }\n");
+        }
+
+        if ("equals".equals(name) && method.getParameters().size() == 1) {
+            String argument = method.getParameters().get(0).getSimpleName().toString();
+            // Wrappers of the same object are equal without comparing the object, which might be expensive
+            methods.append("        if (").append(argument).append(" == this || ").append(argument).append(" instanceof ").append(wrapperName)
+                    .append(" && ((").append(wrapperName).append(") ").append(argument).append(").delegate == this.delegate) {\n")
+                    .append("            return true;\n")
+                    .append("        }\n")
+                    .append("        return ").append(argument).append(" != null && ").append(argument).append(".equals(this.delegate);\n");
+        } else if ("hashCode".equals(name) && method.getParameters().isEmpty()) {
+            fields.println("    private int hashCode;");
+            // Zero hash code is computed every time, the same way String does it
+            methods.append("        int value = this.hashCode;\n")
+                    .append("        if (value == 0) {\n")
+                    .append("            value = this.delegate.hashCode();\n")
+                    .append("            this.hashCode = value;\n")
+                    .append("        }\n")
+                    .append("        return value;\n");
+        } else if (name.startsWith("set") || name.startsWith("add") || name.startsWith("remove")) {
+            methods.append("        throw new UnsupportedOperationException(\"")
+                    .append(type.getSimpleName()).append(" class is immutable: mutators execution is not allowed.\");\n");
+        } else if (isFreezing(name, returnType) && method.getParameters().isEmpty() && method.getTypeParameters().isEmpty()
+                && !isSubtype(types.erasure(returnType), "java.util.stream.BaseStream") && !isSubtype(types.erasure(returnType), "java.util.Iterator")) {
+            writeMemoized(fields, methods, returnType, "this.codeFreeze.freeze(this.delegate." + call + ")", "value");
+        } else if (returnType.getKind() == TypeKind.ARRAY && method.getParameters().isEmpty() && method.getTypeParameters().isEmpty()
+                && (name.startsWith("get") || name.startsWith("is"))) {
+            // Array is copied once and its clones are returned, so that elements are not frozen again
+            writeMemoized(fields, methods, returnType, "com.autsia.codefreeze.FrozenArrays.copy(this.delegate." + call + ", this.codeFreeze)",
+                    "com.autsia.codefreeze.FrozenArrays.clone(value)");
+        } else if (isFreezing(name, returnType)) {
+            methods.append("        return this.codeFreeze.freeze(this.delegate.").append(call).append(");\n");
+        } else if (returnType.getKind() == TypeKind.ARRAY) {
+            methods.append("        return com.autsia.codefreeze.FrozenArrays.copy(this.delegate.").append(call).append(", this.codeFreeze);\n");
+        } else {
+            methods.append("        ").append(ret).append("this.delegate.").append(call).append(";\n");
+        }
+        methods.append("    }\n");
+    }
+
+    /**
+     * Writes getter body, which keeps computed value in its own slot field. The first value set to the slot wins,
+     * so that concurrent callers get the same instance.
+     */
+    private void writeMemoized(PrintWriter fields, StringBuilder methods, TypeMirror returnType, String computation, String result) {
+        String slot = "frozen" + slotsCount;
+        String updater = "FROZEN" + slotsCount++;
+        String erasure = types.erasure(returnType).toString();
+        fields.println("    private volatile " + returnType + " " + slot + ";");
+        fields.println("    private static final java.util.concurrent.atomic.AtomicReferenceFieldUpdater<" + wrapperName + ", " + erasure + "> "
+                + updater + " = java.util.concurrent.atomic.AtomicReferenceFieldUpdater.newUpdater("
+                + wrapperName + ".class, " + erasure + ".class, \"" + slot + "\");");
+        methods.append("        ").append(returnType).append(" value = this.").append(slot).append(";\n")
+                .append("        if (value == null) {\n")
+                .append("            value = ").append(computation).append(";\n")
+                .append("            if (!").append(updater).append(".compareAndSet(this, null, value)) {\n")
+                .append("                value = this.").append(slot).append(";\n")
+                .append("            }\n")
+                .append("        }\n")
+                .append("        return ").append(result).append(";\n");
+    }
+
+    private String signature(ExecutableElement method, ExecutableType executableType) {
+        StringBuilder signature = new StringBuilder();
+        if (method.getModifiers().contains(Modifier.PUBLIC)) {
+            signature.append("public ");
+        } else if (method.getModifiers().contains(Modifier.PROTECTED)) {
+            signature.append("protected ");
+        }
+        if (!method.getTypeParameters().isEmpty()) {
+            signature.append(typeParameters(method.getTypeParameters()).substring(1)).append(" ");
+        }
+        signature.append(executableType.getReturnType()).append(" ").append(method.getSimpleName()).append("(");
+        List<? extends VariableElement> parameters = method.getParameters();
+        List<? extends TypeMirror> parameterTypes = executableType.getParameterTypes();
+        for (int i = 0; i < parameters.size(); i++) {
+            String parameterType = parameterTypes.get(i).toString();
+            if (method.isVarArgs() && i == parameters.size() - 1) {
+                parameterType = parameterType.substring(0, parameterType.length() - 2) + "...";
+            }
+            signature.append(i > 0 ? ", " : "").append(parameterType).append(" ").append(parameters.get(i).getSimpleName());
+        }
+        signature.append(")");
+        if (!executableType.getThrownTypes().isEmpty()) {
+            signature.append(" throws ").append(executableType.getThrownTypes().stream()
+                    .map(TypeMirror::toString).collect(Collectors.joining(", ")));
+        }
+        return signature.toString();
+    }
+
+    /**
+     * Compile-time counterpart of {@link com.autsia.codefreeze.CodeFreeze#isEnhanceable(Class)}
+     */
+    private boolean isFreezing(String name, TypeMirror returnType) {
+        if (!name.startsWith("get") && !name.startsWith("is")) {
+            return false;
+        }
+        TypeMirror erasure = types.erasure(returnType);
+        if (erasure.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        TypeElement returnElement = (TypeElement) types.asElement(erasure);
+        String returnName = returnElement.getQualifiedName().toString();
+        if ("java.util.Optional".equals(returnName) || "java.util.stream.Stream".equals(returnName) || "java.util.Iterator".equals(returnName)) {
+            return true;
+        }
+        if (returnElement.getModifiers().contains(Modifier.FINAL)) {
+            return false;
+        }
+        if (isSubtype(erasure, "java.util.Collection") || isSubtype(erasure, "java.util.Map")) {
+            return true;
+        }
+        boolean hasPublicParameterlessConstructor = false;
+        boolean hasAccessibleConstructor = false;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(returnElement.getEnclosedElements())) {
+            Set<Modifier> modifiers = constructor.getModifiers();
+            hasPublicParameterlessConstructor |= modifiers.contains(Modifier.PUBLIC) && constructor.getParameters().isEmpty();
+            hasAccessibleConstructor |= modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.PROTECTED);
+        }
+        // Values which can't be proxified at runtime are returned by CodeFreeze#freeze as is
+        return InstantiableTypes.isInstantiable(returnName, hasPublicParameterlessConstructor, hasAccessibleConstructor, true);
+    }
+
+    private boolean isSubtype(TypeMirror type, String supertype) {
+        return types.isSubtype(type, types.erasure(elements.getTypeElement(supertype).asType()));
+    }
+
+    private static String typeParameters(List<? extends TypeParameterElement> typeParameters) {
+        if (typeParameters.isEmpty()) {
+            return "";
+        }
+        return typeParameters.stream().map(p -> {
+            String bounds = p.getBounds().stream()
+                    .map(TypeMirror::toString)
+                    .filter(bound -> !Object.class.getName().equals(bound))
+                    .collect(Collectors.joining(" & "));
+            return bounds.isEmpty() ? p.getSimpleName().toString() : p.getSimpleName() + " extends " + bounds;
+        }).collect(Collectors.joining(", ", "<", ">"));
+    }
+
+    private static String typeArguments(List<? extends TypeParameterElement> typeParameters) {
+        if (typeParameters.isEmpty()) {
+            return "";
+        }
+        return typeParameters.stream().map(p -> p.getSimpleName().toString()).collect(Collectors.joining(", ", "<", ">"));
+    }
+
+}
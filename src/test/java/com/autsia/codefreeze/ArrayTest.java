@@ -0,0 +1,149 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import com.autsia.codefreeze.model.ArrayEntity;
+import com.autsia.codefreeze.model.TestEntity;
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.testng.Assert.*;
+
+/**
+ * Frozen beans don't expose their arrays
+ */
+public class ArrayTest {
+
+    private ArrayEntity createEntity() {
+        ArrayEntity entity = new ArrayEntity();
+        entity.setPayload(new byte[]{1, 2, 3});
+        entity.setValues(new int[]{4, 5, 6});
+        TestEntity element = new TestEntity();
+        element.setId(BigInteger.ONE);
+        entity.setEntities(new TestEntity[]{element, null});
+        return entity;
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testPrimitiveArrayIsCopied(CodeFreeze codeFreeze) throws Exception {
+        ArrayEntity entity = createEntity();
+        ArrayEntity frozen = codeFreeze.freeze(entity);
+        frozen.getPayload()[0] = 0;
+        frozen.getValues()[0] = 0;
+        assertEquals(frozen.getPayload(), new byte[]{1, 2, 3});
+        assertEquals(frozen.getValues(), new int[]{4, 5, 6});
+        assertEquals(entity.getPayload()[0], 1);
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class,
+            expectedExceptions = UnsupportedOperationException.class)
+    public void testObjectArrayElementsAreFrozen(CodeFreeze codeFreeze) throws Exception {
+        ArrayEntity frozen = codeFreeze.freeze(createEntity());
+        TestEntity[] entities = frozen.getEntities();
+        assertEquals(entities.length, 2);
+        assertNull(entities[1]);
+        assertEquals(entities[0].getId(), BigInteger.ONE);
+        entities[0].setName("");
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testObjectArrayIsCopied(CodeFreeze codeFreeze) throws Exception {
+        ArrayEntity entity = createEntity();
+        ArrayEntity frozen = codeFreeze.freeze(entity);
+        frozen.getEntities()[0] = null;
+        assertNotNull(frozen.getEntities()[0]);
+        assertNotNull(entity.getEntities()[0]);
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testObjectArrayElementsAreFrozenOnce(CodeFreeze codeFreeze) throws Exception {
+        ArrayEntity frozen = codeFreeze.freeze(createEntity());
+        TestEntity[] entities = frozen.getEntities();
+        assertNotSame(frozen.getEntities(), entities);
+        assertSame(frozen.getEntities()[0], entities[0]);
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testSnapshotArrayIsNotExposed(CodeFreeze codeFreeze) throws Exception {
+        ArrayEntity snapshot = codeFreeze.snapshot(createEntity());
+        snapshot.getPayload()[0] = 0;
+        snapshot.getEntities()[0] = null;
+        assertEquals(snapshot.getPayload(), new byte[]{1, 2, 3});
+        assertNotNull(snapshot.getEntities()[0]);
+        assertSame(snapshot.getEntities()[0], snapshot.getEntities()[0]);
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class,
+            expectedExceptions = ReadOnlyBufferException.class)
+    public void testReadOnlyView(CodeFreeze codeFreeze) throws Exception {
+        ArrayEntity frozen = codeFreeze.freeze(createEntity());
+        ByteBuffer view = frozen.getPayloadView();
+        assertEquals(view.get(2), 3);
+        view.put(0, (byte) 0);
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testGetterViewIsNotCopied(CodeFreeze codeFreeze) throws Exception {
+        ArrayEntity frozen = codeFreeze.freeze(createEntity());
+        IntBuffer values = FrozenArrays.view(frozen, ArrayEntity::getValues, FrozenArrays::view);
+        assertTrue(values.isReadOnly());
+        assertEquals(values.get(2), 6);
+        List<TestEntity> entities = FrozenArrays.view(frozen, ArrayEntity::getEntities,
+                array -> FrozenArrays.view(array, codeFreeze));
+        assertSame(entities.get(0), frozen.getEntities()[0]);
+        // Views wrap the frozen array itself, while getters keep returning its clones
+        Function<int[], int[]> identity = array -> array;
+        int[] viewed = FrozenArrays.view(frozen, ArrayEntity::getValues, identity);
+        assertSame(FrozenArrays.view(frozen, ArrayEntity::getValues, identity), viewed);
+        assertNotSame(frozen.getValues(), frozen.getValues());
+    }
+
+    @Test
+    public void testFreezeArray() throws Exception {
+        int[] array = {1, 2, 3};
+        int[] frozen = new CGLIBCodeFreeze().freeze(array);
+        assertNotSame(frozen, array);
+        assertEquals(frozen, array);
+    }
+
+    @Test
+    public void testPrimitiveViewIsNotCopied() throws Exception {
+        int[] array = {1, 2, 3};
+        IntBuffer view = FrozenArrays.view(array);
+        array[0] = 0;
+        assertEquals(view.get(0), 0);
+        assertTrue(view.isReadOnly());
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testObjectArrayView() throws Exception {
+        TestEntity element = new TestEntity();
+        element.setId(BigInteger.TEN);
+        List<TestEntity> view = FrozenArrays.view(new TestEntity[]{element}, new CGLIBCodeFreeze());
+        assertEquals(view.get(0).getId(), BigInteger.TEN);
+        assertSame(view.get(0), view.get(0));
+        view.get(0).setName("");
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import com.autsia.codefreeze.model.TestEntity;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.*;
+
+/**
+ * Proof reuse of proxy classes stored on disk
+ */
+public class ClassCacheTest {
+
+    private Path cacheDirectory;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        cacheDirectory = Files.createTempDirectory("codefreeze");
+    }
+
+    @Test
+    public void testProxyClassIsStored() throws Exception {
+        newCodeFreeze().freeze(new TestEntity());
+        List<Path> files = listCacheDirectory();
+        assertEquals(files.size(), 1);
+        assertTrue(files.get(0).getFileName().toString().startsWith(TestEntity.class.getName() + "$$FrozenByCGLIB$$"));
+    }
+
+    @Test
+    public void testProxyClassIsLoadedFromCache() throws Exception {
+        Class<?> proxyClass = newCodeFreeze().freeze(new TestEntity()).getClass();
+        Path cachedClass = listCacheDirectory().get(0);
+        FileTime storedTime = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(cachedClass, storedTime);
+
+        // The same class loaded by another class loader needs its own proxy class, just like in a new JVM run
+        ModelClassLoader classLoader = new ModelClassLoader(getClass().getClassLoader());
+        Class<?> isolatedType = classLoader.loadClass(TestEntity.class.getName());
+        Object frozenEntity = newCodeFreeze().freeze(isolatedType.newInstance());
+
+        assertSame(frozenEntity.getClass().getClassLoader(), classLoader);
+        assertEquals(frozenEntity.getClass().getName(), proxyClass.getName());
+        assertEquals(Files.getLastModifiedTime(cachedClass), storedTime);
+        assertEquals(listCacheDirectory().size(), 1);
+        try {
+            isolatedType.getMethod("setId", BigInteger.class).invoke(frozenEntity, BigInteger.TEN);
+            fail("Setter of frozen entity has to fail");
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof UnsupportedOperationException);
+        }
+    }
+
+    private CGLIBCodeFreeze newCodeFreeze() {
+        CGLIBCodeFreeze codeFreeze = new CGLIBCodeFreeze();
+        codeFreeze.setClassCacheDirectory(cacheDirectory);
+        return codeFreeze;
+    }
+
+    private List<Path> listCacheDirectory() throws IOException {
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import com.autsia.codefreeze.impl.GeneratedCodeFreeze;
+import com.autsia.codefreeze.impl.LambdaCodeFreeze;
+import com.autsia.codefreeze.impl.metrics.FreezeMetrics;
+import com.autsia.codefreeze.model.TestEntity;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.testng.Assert.*;
+
+/**
+ * Proof that long-living CodeFreeze doesn't pin classes of redeployed applications in metaspace,
+ * and that long-living classes don't pin discarded CodeFreeze instances
+ */
+public class ClassUnloadingTest {
+
+    private static final int REDEPLOYS = 30;
+
+    @Test(dataProvider = "runtimeCodeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testRedeployedClassesAreUnloaded(CodeFreeze codeFreeze) throws Exception {
+        List<WeakReference<ClassLoader>> classLoaders = new ArrayList<>();
+        // Deployments are retained until Metaspace is measured, so that GC can't unload them earlier
+        List<ClassLoader> deployments = new ArrayList<>();
+        for (int i = 0; i < REDEPLOYS; i++) {
+            ClassLoader classLoader = deploy(codeFreeze);
+            deployments.add(classLoader);
+            classLoaders.add(new WeakReference<>(classLoader));
+        }
+        long metaspaceUsedBeforeGc = getMetaspaceUsed();
+        deployments.clear();
+
+        for (int i = 0; i < 10 && classLoaders.stream().anyMatch(reference -> reference.get() != null); i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+
+        assertTrue(classLoaders.stream().allMatch(reference -> reference.get() == null), "Class loaders are retained");
+        assertTrue(getMetaspaceUsed() < metaspaceUsedBeforeGc, "Metaspace is not released");
+    }
+
+    @DataProvider
+    public Object[][] codeFreezeSuppliers() {
+        return new Object[][]{
+                {(Supplier<CGLIBCodeFreeze>) CGLIBCodeFreeze::new},
+                {(Supplier<CGLIBCodeFreeze>) LambdaCodeFreeze::new},
+                {(Supplier<CGLIBCodeFreeze>) GeneratedCodeFreeze::new}};
+    }
+
+    @Test(dataProvider = "codeFreezeSuppliers")
+    public void testDiscardedCodeFreezeIsCollected(Supplier<CGLIBCodeFreeze> codeFreezeSupplier) throws Exception {
+        List<WeakReference<Object>> references = useAndDiscard(codeFreezeSupplier.get());
+
+        for (int i = 0; i < 10 && references.stream().anyMatch(reference -> reference.get() != null); i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+
+        assertNull(references.get(0).get(), "CodeFreeze is retained");
+        assertNull(references.get(1).get(), "Listener is retained");
+    }
+
+    /**
+     * Freezes beans of the application class, so that caches get filled, and lets everything but the class go
+     */
+    private static List<WeakReference<Object>> useAndDiscard(CGLIBCodeFreeze codeFreeze) {
+        FreezeMetrics listener = new FreezeMetrics();
+        codeFreeze.setListener(listener);
+        TestEntity entity = new TestEntity();
+        entity.setInnerEntity(new TestEntity());
+        TestEntity frozenEntity = codeFreeze.freeze(entity);
+        assertNotNull(frozenEntity.getInnerEntity());
+        expectThrows(UnsupportedOperationException.class, () -> frozenEntity.setName(""));
+        codeFreeze.snapshot(entity);
+        List<WeakReference<Object>> references = new ArrayList<>();
+        references.add(new WeakReference<>(codeFreeze));
+        references.add(new WeakReference<>(listener));
+        return references;
+    }
+
+    /**
+     * Loads model classes in their own class loader and uses their frozen instances, including nested ones
+     */
+    private ClassLoader deploy(CodeFreeze codeFreeze) throws Exception {
+        ClassLoader classLoader = new ModelClassLoader(getClass().getClassLoader());
+        Class<?> type = classLoader.loadClass(TestEntity.class.getName());
+        Object entity = type.newInstance();
+        type.getMethod("setInnerEntity", type).invoke(entity, type.newInstance());
+        type.getMethod("setName", String.class).invoke(entity, "entity");
+
+        Object frozenEntity = codeFreeze.freeze(entity);
+        assertNotNull(type.getMethod("getInnerEntity").invoke(frozenEntity));
+        assertEquals(type.getMethod("getName").invoke(frozenEntity), "entity");
+        return classLoader;
+    }
+
+    private static long getMetaspaceUsed() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> "Metaspace".equals(pool.getName()))
+                .mapToLong(pool -> pool.getUsage().getUsed())
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("There's no Metaspace memory pool"));
+    }
+
+}
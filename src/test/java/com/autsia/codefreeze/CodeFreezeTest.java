@@ -18,6 +18,7 @@ package com.autsia.codefreeze;
 
 import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
 import com.autsia.codefreeze.model.TestEntity;
+import net.sf.cglib.proxy.Factory;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -363,4 +364,20 @@ public class CodeFreezeTest {
         assertTrue(testEntity.equals(testEntity.getInnerEntity()));
     }
 
+    @Test
+    public void testGetterResultIsMemoized() throws Exception {
+        assertSame(testEntity.getInnerEntity(), testEntity.getInnerEntity());
+        assertSame(testEntity.getEntityList(), testEntity.getEntityList());
+        assertSame(testEntity.getInnerEntity().getEntityMap(), testEntity.getInnerEntity().getEntityMap());
+    }
+
+    @Test
+    public void testCallbacksAreShared() throws Exception {
+        Factory firstLevelEntity = (Factory) testEntity;
+        Factory secondLevelEntity = (Factory) testEntity.getInnerEntity();
+        for (int i = 0; i < firstLevelEntity.getCallbacks().length; i++) {
+            assertSame(firstLevelEntity.getCallback(i), secondLevelEntity.getCallback(i));
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import com.autsia.codefreeze.impl.GeneratedCodeFreeze;
+import com.autsia.codefreeze.impl.LambdaCodeFreeze;
+import com.autsia.codefreeze.model.TestEntity;
+import org.testng.annotations.DataProvider;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * Data providers and beans shared by the tests which run against several CodeFreeze implementations
+ */
+public final class CodeFreezes {
+
+    private CodeFreezes() {
+    }
+
+    /**
+     * Every implementation with its default settings
+     */
+    @DataProvider
+    public static Object[][] codeFreezes() {
+        return new Object[][]{{new CGLIBCodeFreeze()}, {new LambdaCodeFreeze()}, {new GeneratedCodeFreeze()}};
+    }
+
+    /**
+     * Every implementation, and the CGLIB one with lazy collections in addition
+     */
+    @DataProvider
+    public static Object[][] collectionCodeFreezes() {
+        CGLIBCodeFreeze lazyCodeFreeze = new CGLIBCodeFreeze();
+        lazyCodeFreeze.setLazyCollections(true);
+        return new Object[][]{
+                {new CGLIBCodeFreeze()}, {lazyCodeFreeze}, {new LambdaCodeFreeze()}, {new GeneratedCodeFreeze()}};
+    }
+
+    /**
+     * Implementations which create frozen beans without running their constructors
+     */
+    @DataProvider
+    public static Object[][] bypassingCodeFreezes() {
+        return new Object[][]{{new CGLIBCodeFreeze()}, {new GeneratedCodeFreeze()}};
+    }
+
+    /**
+     * Implementations which define frozen classes at runtime, next to the classes of beans
+     */
+    @DataProvider
+    public static Object[][] runtimeCodeFreezes() {
+        return new Object[][]{{new CGLIBCodeFreeze()}, {new LambdaCodeFreeze()}};
+    }
+
+    /**
+     * Creates a bean with an inner bean and a list of beans
+     */
+    static TestEntity createEntity() {
+        TestEntity entity = new TestEntity();
+        entity.setId(BigInteger.ONE);
+        entity.setInnerEntity(new TestEntity());
+        entity.setEntityList(new ArrayList<>(Collections.singletonList(new TestEntity())));
+        return entity;
+    }
+
+}
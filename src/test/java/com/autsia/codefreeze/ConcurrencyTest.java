@@ -0,0 +1,162 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import com.autsia.codefreeze.impl.proxy.ProxyInstantiator;
+import com.autsia.codefreeze.model.TestEntity;
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.UnaryOperator;
+
+import static org.testng.Assert.*;
+
+/**
+ * Frozen beans shared by concurrent readers: every reader gets the same memoized instances and mutators are rejected
+ */
+public class ConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 200;
+    private static final int RACY_PUBLICATIONS = 20_000;
+
+    // Neither volatile nor guarded: frozen beans are handed over to the reader through a data race
+    private TestEntity racyEntity;
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testConcurrentReaders(CodeFreeze codeFreeze) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                TestEntity frozen = codeFreeze.freeze(CodeFreezes.createEntity());
+                CyclicBarrier barrier = new CyclicBarrier(THREADS);
+                List<Future<Object[]>> results = new ArrayList<>();
+                for (int i = 0; i < THREADS; i++) {
+                    // Readers hit the getters of fresh bean at once, racing to memoize their values
+                    results.add(executor.submit(() -> {
+                        barrier.await();
+                        try {
+                            frozen.setName("");
+                            fail();
+                        } catch (UnsupportedOperationException e) {
+                            // expected
+                        }
+                        return new Object[]{frozen.getInnerEntity(), frozen.getEntityList(), frozen.hashCode()};
+                    }));
+                }
+                Object[] expected = results.get(0).get();
+                for (Future<Object[]> result : results) {
+                    Object[] actual = result.get();
+                    assertSame(actual[0], expected[0]);
+                    assertSame(actual[1], expected[1]);
+                    assertEquals(actual[2], expected[2]);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testConcurrentFreezing(CodeFreeze codeFreeze) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            TestEntity entity = CodeFreezes.createEntity();
+            CyclicBarrier barrier = new CyclicBarrier(THREADS);
+            List<Future<TestEntity>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                // Proxy classes and factories are created concurrently, then frozen beans are handed back to this thread
+                results.add(executor.submit(() -> {
+                    barrier.await();
+                    return codeFreeze.freeze(entity);
+                }));
+            }
+            for (Future<TestEntity> result : results) {
+                TestEntity frozen = result.get();
+                assertEquals(frozen.getId(), BigInteger.ONE);
+                try {
+                    frozen.getInnerEntity().setName("");
+                    fail();
+                } catch (UnsupportedOperationException e) {
+                    // expected
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRacyPublication() throws Exception {
+        CodeFreeze codeFreeze = new CGLIBCodeFreeze();
+        assertRacyPublication(codeFreeze::freeze);
+    }
+
+    @Test
+    public void testRacySnapshotPublication() throws Exception {
+        CodeFreeze codeFreeze = new CGLIBCodeFreeze();
+        assertRacyPublication(codeFreeze::snapshot);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, timeOut = 10000)
+    public void testUninitializedProxyIsRejected() throws Exception {
+        Class<?> proxyClass = new CGLIBCodeFreeze().freeze(CodeFreezes.createEntity()).getClass();
+        // Proxy which has escaped before its initialization never gets its delegate
+        TestEntity uninitialized = (TestEntity) new ProxyInstantiator(proxyClass).newInstance();
+        uninitialized.getId();
+    }
+
+    private void assertRacyPublication(UnaryOperator<TestEntity> publisher) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < RACY_PUBLICATIONS; i++) {
+                    racyEntity = publisher.apply(CodeFreezes.createEntity());
+                }
+            });
+            Future<Integer> reader = executor.submit(() -> {
+                int checked = 0;
+                TestEntity previous = null;
+                while (!writer.isDone() || checked == 0) {
+                    TestEntity frozen = racyEntity;
+                    if (frozen == null || frozen == previous) {
+                        continue;
+                    }
+                    previous = frozen;
+                    try {
+                        frozen.setName("");
+                        fail("Mutator of immutable bean published through a data race has succeeded");
+                    } catch (UnsupportedOperationException e) {
+                        // expected
+                    }
+                    assertEquals(frozen.getId(), BigInteger.ONE);
+                    assertNotNull(frozen.getInnerEntity());
+                    checked++;
+                }
+                return checked;
+            });
+            writer.get();
+            assertTrue(reader.get() > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
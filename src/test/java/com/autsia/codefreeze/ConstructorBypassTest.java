@@ -0,0 +1,70 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import com.autsia.codefreeze.impl.LambdaCodeFreeze;
+import com.autsia.codefreeze.model.ConstructedEntity;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Proof frozen beans and snapshots are created without running constructors of beans
+ */
+public class ConstructorBypassTest {
+
+    private ConstructedEntity entity;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        entity = new ConstructedEntity("parent");
+        entity.getChildren().add(new ConstructedEntity("child"));
+        ConstructedEntity.CONSTRUCTOR_CALLS.set(0);
+    }
+
+    @Test(dataProvider = "bypassingCodeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testFreezeWithoutParameterlessConstructor(CodeFreeze codeFreeze) throws Exception {
+        assertTrue(codeFreeze.isEnhanceable(ConstructedEntity.class));
+        ConstructedEntity frozen = codeFreeze.freeze(entity);
+        assertTrue(frozen instanceof Frozen);
+        assertEquals(frozen.getName(), "parent");
+        assertEquals(frozen.getChildren().get(0).getName(), "child");
+        assertEquals(ConstructedEntity.CONSTRUCTOR_CALLS.get(), 0);
+    }
+
+    @Test(dataProvider = "bypassingCodeFreezes", dataProviderClass = CodeFreezes.class,
+            expectedExceptions = UnsupportedOperationException.class)
+    public void testSetterOfFrozenBean(CodeFreeze codeFreeze) throws Exception {
+        codeFreeze.freeze(entity).getChildren().get(0).setName("");
+    }
+
+    @Test
+    public void testSnapshotWithoutParameterlessConstructor() throws Exception {
+        ConstructedEntity snapshot = new CGLIBCodeFreeze().snapshot(entity);
+        assertEquals(snapshot.getName(), "parent");
+        assertEquals(snapshot.getChildren().get(0).getName(), "child");
+        assertEquals(ConstructedEntity.CONSTRUCTOR_CALLS.get(), 0);
+    }
+
+    @Test
+    public void testLambdaBackendNeedsParameterlessConstructor() throws Exception {
+        assertFalse(new LambdaCodeFreeze().isEnhanceable(ConstructedEntity.class));
+    }
+
+}
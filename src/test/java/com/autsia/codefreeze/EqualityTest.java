@@ -0,0 +1,73 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.model.CountingEntity;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Hash code of frozen bean is computed once, frozen beans of the same object are equal without comparing it
+ */
+public class EqualityTest {
+
+    private CountingEntity createEntity(String name) {
+        CountingEntity entity = new CountingEntity();
+        entity.setName(name);
+        return entity;
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testHashCodeIsMemoized(CodeFreeze codeFreeze) throws Exception {
+        CountingEntity entity = createEntity("name");
+        CountingEntity frozen = codeFreeze.freeze(entity);
+        assertEquals(frozen.hashCode(), "name".hashCode());
+        assertEquals(frozen.hashCode(), "name".hashCode());
+        assertEquals(entity.getHashCodeCalls(), 1);
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testEqualsItself(CodeFreeze codeFreeze) throws Exception {
+        CountingEntity entity = createEntity("name");
+        CountingEntity frozen = codeFreeze.freeze(entity);
+        assertTrue(frozen.equals(frozen));
+        assertEquals(entity.getEqualsCalls(), 0);
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testEqualsFrozenOfSameObject(CodeFreeze codeFreeze) throws Exception {
+        CountingEntity entity = createEntity("name");
+        CountingEntity first = codeFreeze.freeze(entity);
+        CountingEntity second = codeFreeze.freeze(entity);
+        assertNotSame(first, second);
+        assertTrue(first.equals(second));
+        assertEquals(entity.getEqualsCalls(), 0);
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testEqualsFrozenOfEqualObject(CodeFreeze codeFreeze) throws Exception {
+        CountingEntity first = codeFreeze.freeze(createEntity("name"));
+        CountingEntity second = codeFreeze.freeze(createEntity("name"));
+        CountingEntity third = codeFreeze.freeze(createEntity("other"));
+        assertTrue(first.equals(createEntity("name")));
+        assertFalse(first.equals(third));
+        assertFalse(first.equals(null));
+        assertEquals(first.hashCode(), second.hashCode());
+    }
+
+}
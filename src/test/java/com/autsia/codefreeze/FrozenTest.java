@@ -0,0 +1,112 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import com.autsia.codefreeze.model.TestEntity;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+/**
+ * Frozen and immutable objects are returned by freezing as is
+ */
+public class FrozenTest {
+
+    @DataProvider
+    public Object[][] immutables() {
+        return new Object[][]{{"string"}, {1}, {1L}, {'c'}, {true}, {BigInteger.ONE}, {BigDecimal.ONE},
+                {TimeUnit.SECONDS}, {LocalDate.now()}, {UUID.randomUUID()}};
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testFrozenIsMarked(CodeFreeze codeFreeze) throws Exception {
+        TestEntity frozen = codeFreeze.freeze(CodeFreezes.createEntity());
+        assertTrue(frozen instanceof Frozen);
+        assertTrue(frozen.getInnerEntity() instanceof Frozen);
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testRefreezeReturnsSameInstance(CodeFreeze codeFreeze) throws Exception {
+        TestEntity frozen = codeFreeze.freeze(CodeFreezes.createEntity());
+        assertSame(codeFreeze.freeze(frozen), frozen);
+        assertSame(new CGLIBCodeFreeze().freeze(frozen), frozen);
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testRefreezeOfFrozenListReturnsSameInstance(CodeFreeze codeFreeze) throws Exception {
+        List<TestEntity> frozen = codeFreeze.freeze(CodeFreezes.createEntity()).getEntityList();
+        assertSame(codeFreeze.freeze(frozen), frozen);
+    }
+
+    @Test(dataProvider = "immutables")
+    public void testImmutableTypes(Object immutable) throws Exception {
+        assertSame(new CGLIBCodeFreeze().freeze(immutable), immutable);
+    }
+
+    @Test
+    public void testImmutableCollectionOfImmutables() throws Exception {
+        ImmutableMap<String, List<Integer>> map = ImmutableMap.of("key", ImmutableList.of(1, 2));
+        assertSame(new CGLIBCodeFreeze().freeze(map), map);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testImmutableCollectionOfMutablesIsFrozen() throws Exception {
+        ImmutableList<TestEntity> list = ImmutableList.of(CodeFreezes.createEntity());
+        List<TestEntity> frozen = new CGLIBCodeFreeze().freeze(list);
+        assertNotSame(frozen, list);
+        frozen.get(0).setName("");
+    }
+
+    @Test
+    public void testLazyViewIsFrozen() throws Exception {
+        CGLIBCodeFreeze codeFreeze = new CGLIBCodeFreeze();
+        codeFreeze.setLazyCollections(true);
+        List<TestEntity> frozen = codeFreeze.freeze(new ArrayList<>(Collections.singletonList(CodeFreezes.createEntity())));
+        assertTrue(frozen instanceof Frozen);
+        assertSame(codeFreeze.freeze(frozen), frozen);
+    }
+
+    @Test
+    public void testSnapshotIsFrozen() throws Exception {
+        CodeFreeze codeFreeze = new CGLIBCodeFreeze();
+        TestEntity snapshot = codeFreeze.snapshot(CodeFreezes.createEntity());
+        assertTrue(snapshot instanceof Frozen);
+        assertSame(codeFreeze.freeze(snapshot), snapshot);
+    }
+
+    @Test
+    public void testRegisteredImmutableType() throws Exception {
+        CGLIBCodeFreeze codeFreeze = new CGLIBCodeFreeze();
+        codeFreeze.registerImmutableType(TestEntity.class);
+        TestEntity entity = CodeFreezes.createEntity();
+        assertSame(codeFreeze.freeze(entity), entity);
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.generated.FrozenWrapperFactory;
+import com.autsia.codefreeze.impl.GeneratedCodeFreeze;
+import com.autsia.codefreeze.model.ConstructedEntity;
+import com.autsia.codefreeze.model.ConstructedHolderEntity;
+import com.autsia.codefreeze.model.TestEntity;
+import net.sf.cglib.proxy.Factory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/**
+ * Proof immutability of wrappers generated at build time
+ */
+public class GeneratedCodeFreezeTest {
+
+    private CodeFreeze codeFreeze = new GeneratedCodeFreeze();
+
+    private TestEntity entity;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        entity = new TestEntity();
+        entity.setId(BigInteger.ONE);
+        entity.setName("entity");
+        entity.setInnerEntity(new TestEntity());
+        entity.setEntityList(new ArrayList<>(Collections.singletonList(new TestEntity())));
+    }
+
+    @Test
+    public void testGeneratedWrapperIsUsed() throws Exception {
+        TestEntity frozenEntity = codeFreeze.freeze(entity);
+        assertEquals(frozenEntity.getClass().getName(), TestEntity.class.getName() + "_Frozen");
+        assertFalse(frozenEntity instanceof Factory);
+    }
+
+    @Test
+    public void testGettersAreDelegated() throws Exception {
+        TestEntity frozenEntity = codeFreeze.freeze(entity);
+        assertEquals(frozenEntity.getId(), BigInteger.ONE);
+        assertEquals(frozenEntity.getName(), "entity");
+        assertTrue(frozenEntity.equals(entity));
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testSetter() throws Exception {
+        codeFreeze.freeze(entity).setId(BigInteger.TEN);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testInnerEntitySetter() throws Exception {
+        codeFreeze.freeze(entity).getInnerEntity().setId(BigInteger.TEN);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testListElementSetter() throws Exception {
+        List<TestEntity> entityList = codeFreeze.freeze(entity).getEntityList();
+        entityList.get(0).setId(BigInteger.TEN);
+    }
+
+    @Test
+    public void testGetterResultIsMemoized() throws Exception {
+        TestEntity frozenEntity = codeFreeze.freeze(entity);
+        assertSame(frozenEntity.getInnerEntity(), frozenEntity.getInnerEntity());
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testGetterOfBeanWithoutParameterlessConstructor() throws Exception {
+        ConstructedHolderEntity holder = new ConstructedHolderEntity();
+        holder.setConstructed(new ConstructedEntity("constructed"));
+        ConstructedHolderEntity frozenHolder = codeFreeze.freeze(holder);
+        assertEquals(frozenHolder.getClass().getName(), ConstructedHolderEntity.class.getName() + "_Frozen");
+        frozenHolder.getConstructed().setName("");
+    }
+
+    @Test
+    public void testStaleRegistryEntryIsSkipped() throws Exception {
+        Path directory = Files.createTempDirectory("registry");
+        Path registry = directory.resolve("META-INF/services/" + FrozenWrapperFactory.class.getName());
+        Files.createDirectories(registry.getParent());
+        Files.write(registry, Collections.singletonList("com.autsia.codefreeze.model.Removed_Frozen$Factory"));
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{directory.toUri().toURL()}, getClass().getClassLoader())) {
+            TestEntity frozenEntity = new GeneratedCodeFreeze(classLoader).freeze(entity);
+            assertEquals(frozenEntity.getClass().getName(), TestEntity.class.getName() + "_Frozen");
+        }
+    }
+
+}
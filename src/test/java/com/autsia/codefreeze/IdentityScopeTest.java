@@ -0,0 +1,179 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import com.autsia.codefreeze.impl.IdentityScope;
+import com.autsia.codefreeze.impl.metrics.FreezeListener;
+import com.autsia.codefreeze.model.TestEntity;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.*;
+
+/**
+ * Proof identity preservation of frozen objects
+ */
+public class IdentityScopeTest {
+
+    private CGLIBCodeFreeze codeFreeze;
+
+    private TestEntity entity;
+    private TestEntity sharedEntity;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        codeFreeze = new CGLIBCodeFreeze();
+        sharedEntity = new TestEntity();
+        sharedEntity.setId(BigInteger.TEN);
+        entity = new TestEntity();
+        entity.setId(BigInteger.ONE);
+        entity.setInnerEntity(sharedEntity);
+        entity.setEntityList(new ArrayList<>(Arrays.asList(entity, sharedEntity)));
+        entity.setEntitySet(new HashSet<>(Collections.singleton(sharedEntity)));
+        entity.setEntityMap(new HashMap<>(Collections.singletonMap(sharedEntity, entity)));
+    }
+
+    @Test
+    public void testNoneScopeCreatesNewInstances() throws Exception {
+        assertNotSame(codeFreeze.freeze(entity), codeFreeze.freeze(entity));
+    }
+
+    @Test
+    public void testGlobalScopeReusesInstances() throws Exception {
+        codeFreeze.setIdentityScope(IdentityScope.GLOBAL);
+        TestEntity frozenEntity = codeFreeze.freeze(entity);
+        assertSame(codeFreeze.freeze(entity), frozenEntity);
+        assertSame(codeFreeze.freeze(sharedEntity), frozenEntity.getInnerEntity());
+    }
+
+    @Test
+    public void testSessionScopeCreatesNewInstancesPerSession() throws Exception {
+        codeFreeze.setIdentityScope(IdentityScope.SESSION);
+        assertNotSame(codeFreeze.freeze(entity), codeFreeze.freeze(entity));
+    }
+
+    @Test
+    public void testSessionScopeSharedObject() throws Exception {
+        codeFreeze.setIdentityScope(IdentityScope.SESSION);
+        TestEntity frozenEntity = codeFreeze.freeze(entity);
+        TestEntity frozenSharedEntity = frozenEntity.getInnerEntity();
+        assertSame(frozenEntity.getEntityList().get(1), frozenSharedEntity);
+        assertSame(frozenEntity.getEntitySet().iterator().next(), frozenSharedEntity);
+        assertSame(frozenEntity.getEntityMap().keySet().iterator().next(), frozenSharedEntity);
+    }
+
+    @Test
+    public void testSessionScopeCycle() throws Exception {
+        codeFreeze.setIdentityScope(IdentityScope.SESSION);
+        TestEntity frozenEntity = codeFreeze.freeze(entity);
+        assertSame(frozenEntity.getEntityList().get(0), frozenEntity);
+        assertSame(frozenEntity.getEntityMap().values().iterator().next(), frozenEntity);
+    }
+
+    @Test
+    public void testSessionScopeCycleWithLazyCollections() throws Exception {
+        codeFreeze.setIdentityScope(IdentityScope.SESSION);
+        codeFreeze.setLazyCollections(true);
+        TestEntity frozenEntity = codeFreeze.freeze(entity);
+        assertSame(frozenEntity.getEntityList().get(0), frozenEntity);
+        assertSame(frozenEntity.getEntityList().get(1), frozenEntity.getInnerEntity());
+    }
+
+    @Test
+    public void testEagerlyFrozenCyclicCollection() throws Exception {
+        codeFreeze.setIdentityScope(IdentityScope.SESSION);
+        List<TestEntity> frozenList = codeFreeze.freeze(entity.getEntityList());
+        assertSame(frozenList.get(0).getEntityList().get(0), frozenList.get(0));
+    }
+
+    @DataProvider
+    public Object[][] identityScopes() {
+        return new Object[][]{{IdentityScope.SESSION}, {IdentityScope.GLOBAL}};
+    }
+
+    @Test(dataProvider = "identityScopes")
+    public void testSelfContainingList(IdentityScope identityScope) throws Exception {
+        codeFreeze.setIdentityScope(identityScope);
+        List<Object> list = new ArrayList<>();
+        list.add(sharedEntity);
+        list.add(list);
+        List<Object> frozenList = codeFreeze.freeze(list);
+        assertEquals(frozenList.size(), 2);
+        assertSame(frozenList.get(1), frozenList);
+        assertTrue(frozenList.get(0) instanceof Frozen);
+    }
+
+    @Test(dataProvider = "identityScopes")
+    public void testSelfContainingMap(IdentityScope identityScope) throws Exception {
+        codeFreeze.setIdentityScope(identityScope);
+        Map<String, Object> map = new HashMap<>();
+        map.put("self", map);
+        Map<String, Object> frozenMap = codeFreeze.freeze(map);
+        assertSame(frozenMap.get("self"), frozenMap);
+    }
+
+    @Test(timeOut = 10000)
+    public void testUnresolvedPlaceholderIsNotShared() throws Exception {
+        codeFreeze.setIdentityScope(IdentityScope.GLOBAL);
+        List<Object> list = new ArrayList<>();
+        list.add(sharedEntity);
+        list.add(list);
+        CountDownLatch paused = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        Thread main = Thread.currentThread();
+        codeFreeze.setListener(new FreezeListener() {
+            @Override
+            public void onProxyCreated(Class<?> type) {
+                if (Thread.currentThread() != main && paused.getCount() > 0) {
+                    // The other thread stops in the middle of freezing the list
+                    paused.countDown();
+                    Uninterruptibles.awaitUninterruptibly(released);
+                }
+            }
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<Object>> other = executor.submit(() -> codeFreeze.freeze(list));
+            paused.await();
+            List<Object> frozenList = codeFreeze.freeze(list);
+            assertEquals(frozenList.size(), 2);
+            assertSame(frozenList.get(1), frozenList);
+            released.countDown();
+            assertSame(other.get(), frozenList);
+        } finally {
+            released.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testSharedObjectModification() throws Exception {
+        codeFreeze.setIdentityScope(IdentityScope.GLOBAL);
+        codeFreeze.freeze(sharedEntity).setName(TestEntity.class.getSimpleName());
+    }
+
+}
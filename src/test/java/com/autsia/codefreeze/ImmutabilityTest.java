@@ -0,0 +1,91 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.model.TestEntity;
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+import java.util.*;
+
+import static org.testng.Assert.*;
+
+/**
+ * Proof immutability in the common cases of CodeFreezeTest for every implementation
+ */
+public class ImmutabilityTest {
+
+    private static TestEntity createEntity(TestEntity innerEntity) {
+        TestEntity entity = new TestEntity();
+        entity.setId(BigInteger.ONE);
+        entity.setMask(BigInteger.ONE.intValue());
+        entity.setName(TestEntity.class.getSimpleName());
+        entity.setInnerEntity(innerEntity);
+        entity.setEntityList(new ArrayList<>(Collections.singletonList(new TestEntity())));
+        entity.setEntitySet(new HashSet<>(Collections.singleton(new TestEntity())));
+        entity.setEntityMap(new HashMap<>(Collections.singletonMap(new TestEntity(), new TestEntity())));
+        return entity;
+    }
+
+    private static TestEntity freeze(CodeFreeze codeFreeze) {
+        return codeFreeze.freeze(createEntity(createEntity(null)));
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testGetters(CodeFreeze codeFreeze) throws Exception {
+        TestEntity frozen = freeze(codeFreeze);
+        assertEquals(frozen.getId(), BigInteger.ONE);
+        assertEquals(frozen.getMask(), 1);
+        assertEquals(frozen.getInnerEntity().getName(), TestEntity.class.getSimpleName());
+        assertNull(frozen.getInnerEntity().getInnerEntity());
+        assertEquals(frozen.getInnerEntity().getEntityList().size(), 1);
+        assertEquals(frozen.getInnerEntity().getEntitySet().size(), 1);
+        assertEquals(frozen.getInnerEntity().getEntityMap().size(), 1);
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testSetters(CodeFreeze codeFreeze) throws Exception {
+        TestEntity frozen = freeze(codeFreeze);
+        expectThrows(UnsupportedOperationException.class, () -> frozen.setName(""));
+        expectThrows(UnsupportedOperationException.class, () -> frozen.getInnerEntity().setId(BigInteger.TEN));
+        expectThrows(UnsupportedOperationException.class, () -> frozen.getInnerEntity().setInnerEntity(null));
+        expectThrows(UnsupportedOperationException.class,
+                () -> frozen.getInnerEntity().getEntityList().get(0).setName(""));
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testCollectionModification(CodeFreeze codeFreeze) throws Exception {
+        TestEntity inner = freeze(codeFreeze).getInnerEntity();
+        expectThrows(UnsupportedOperationException.class, () -> inner.getEntityList().add(new TestEntity()));
+        expectThrows(UnsupportedOperationException.class, () -> inner.getEntitySet().add(new TestEntity()));
+        expectThrows(UnsupportedOperationException.class,
+                () -> inner.getEntityMap().put(new TestEntity(), new TestEntity()));
+        expectThrows(UnsupportedOperationException.class, () -> inner.getEntityList().iterator().remove());
+        expectThrows(UnsupportedOperationException.class, () -> inner.getEntitySet().iterator().remove());
+        expectThrows(UnsupportedOperationException.class,
+                () -> inner.getEntityMap().entrySet().iterator().remove());
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testGetterResultIsMemoized(CodeFreeze codeFreeze) throws Exception {
+        TestEntity frozen = freeze(codeFreeze);
+        assertSame(frozen.getInnerEntity(), frozen.getInnerEntity());
+        assertSame(frozen.getEntityList(), frozen.getEntityList());
+        assertSame(frozen.getInnerEntity().getEntityMap(), frozen.getInnerEntity().getEntityMap());
+    }
+
+}
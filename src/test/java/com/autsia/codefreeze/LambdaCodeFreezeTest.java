@@ -0,0 +1,39 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.LambdaCodeFreeze;
+import com.autsia.codefreeze.model.TestEntity;
+import net.sf.cglib.proxy.Factory;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Proof LambdaMetafactory based implementation doesn't rely on CGLIB proxies
+ */
+public class LambdaCodeFreezeTest {
+
+    @Test
+    public void testNoEnhancerProxy() throws Exception {
+        // TestEntity constructor calls setter, which has to reach the superclass while frozen instance is created
+        TestEntity frozenEntity = new LambdaCodeFreeze().freeze(new TestEntity());
+        assertFalse(frozenEntity instanceof Factory);
+        assertTrue(frozenEntity instanceof TestEntity);
+    }
+
+}
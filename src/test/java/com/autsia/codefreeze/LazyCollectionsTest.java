@@ -0,0 +1,170 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import com.autsia.codefreeze.model.TestEntity;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+import java.util.*;
+
+import static org.testng.Assert.*;
+
+/**
+ * Proof immutability of lazily frozen collections
+ */
+public class LazyCollectionsTest {
+
+    private CGLIBCodeFreeze codeFreeze = new CGLIBCodeFreeze();
+
+    private TestEntity testEntity;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        codeFreeze.setLazyCollections(true);
+        TestEntity entity = new TestEntity();
+        entity.setId(BigInteger.ONE);
+        entity.setEntityList(new LinkedList<>(Collections.singletonList(entity)));
+        entity.setEntitySet(new HashSet<>(Collections.singleton(entity)));
+        entity.setEntityMap(new HashMap<>(Collections.singletonMap(entity, entity)));
+        testEntity = codeFreeze.freeze(entity);
+    }
+
+    @Test
+    public void testListElementIsMemoized() throws Exception {
+        List<TestEntity> list = testEntity.getEntityList();
+        assertSame(list.get(0), list.get(0));
+        assertSame(list.iterator().next(), list.get(0));
+    }
+
+    @Test
+    public void testSetElementIsMemoized() throws Exception {
+        Set<TestEntity> set = testEntity.getEntitySet();
+        assertSame(set.iterator().next(), set.iterator().next());
+    }
+
+    @Test
+    public void testMapValueIsMemoized() throws Exception {
+        Map<TestEntity, TestEntity> map = testEntity.getEntityMap();
+        Map.Entry<TestEntity, TestEntity> entry = map.entrySet().iterator().next();
+        assertSame(map.entrySet().iterator().next().getKey(), entry.getKey());
+        assertSame(map.entrySet().iterator().next().getValue(), entry.getValue());
+    }
+
+    @Test
+    public void testContains() throws Exception {
+        TestEntity element = testEntity.getEntityList().get(0);
+        assertTrue(testEntity.getEntitySet().contains(element));
+        assertTrue(testEntity.getEntityMap().containsKey(element));
+        assertNotNull(testEntity.getEntityMap().get(element));
+    }
+
+    @Test
+    public void testSizeOfLargeList() throws Exception {
+        List<BigInteger> list = Collections.nCopies(200_000, BigInteger.ONE);
+        assertEquals(codeFreeze.freeze(list).size(), list.size());
+    }
+
+    @Test
+    public void testLargeListElementsAreMemoized() throws Exception {
+        List<TestEntity> source = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            source.add(new TestEntity());
+        }
+        List<TestEntity> list = codeFreeze.freeze(source);
+        for (int index : new int[]{0, 1023, 1024, 2999}) {
+            assertSame(list.get(index), list.get(index));
+        }
+        List<TestEntity> sequentialList = codeFreeze.freeze(Collections.unmodifiableList(new LinkedList<>(source)));
+        Iterator<TestEntity> iterator = sequentialList.iterator();
+        TestEntity element = null;
+        for (int i = 0; i <= 1024; i++) {
+            element = iterator.next();
+        }
+        assertSame(sequentialList.get(1024), element);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testListElementModification() throws Exception {
+        testEntity.getEntityList().get(0).setName(TestEntity.class.getSimpleName());
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testSetElementModification() throws Exception {
+        testEntity.getEntitySet().iterator().next().setName(TestEntity.class.getSimpleName());
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testMapValueModification() throws Exception {
+        testEntity.getEntityMap().values().iterator().next().setName(TestEntity.class.getSimpleName());
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testListFieldModification() throws Exception {
+        testEntity.getEntityList().add(new TestEntity());
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testSetFieldModification() throws Exception {
+        testEntity.getEntitySet().add(new TestEntity());
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testMapFieldModification() throws Exception {
+        testEntity.getEntityMap().put(new TestEntity(), new TestEntity());
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testListRemoval() throws Exception {
+        Iterator<TestEntity> iterator = testEntity.getEntityList().iterator();
+        iterator.next();
+        iterator.remove();
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testSetRemoval() throws Exception {
+        Iterator<TestEntity> iterator = testEntity.getEntitySet().iterator();
+        iterator.next();
+        iterator.remove();
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testMapRemoval() throws Exception {
+        Iterator<TestEntity> iterator = testEntity.getEntityMap().keySet().iterator();
+        iterator.next();
+        iterator.remove();
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testEmptyListClear() throws Exception {
+        List<TestEntity> list = new ArrayList<>();
+        codeFreeze.freeze(list).clear();
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testSubListModification() throws Exception {
+        testEntity.getEntityList().subList(0, 1).clear();
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testMapEntryModification() throws Exception {
+        testEntity.getEntityMap().entrySet().iterator().next().setValue(new TestEntity());
+    }
+
+}
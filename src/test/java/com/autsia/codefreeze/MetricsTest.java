@@ -0,0 +1,155 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import com.autsia.codefreeze.impl.LambdaCodeFreeze;
+import com.autsia.codefreeze.impl.metrics.FreezeMetrics;
+import com.autsia.codefreeze.model.TestEntity;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.*;
+
+/**
+ * Freezing events are counted by metrics
+ */
+public class MetricsTest {
+
+    private CGLIBCodeFreeze codeFreeze;
+    private FreezeMetrics metrics;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        codeFreeze = new CGLIBCodeFreeze();
+        metrics = new FreezeMetrics();
+        codeFreeze.setListener(metrics);
+    }
+
+    private TestEntity createEntity() {
+        TestEntity entity = new TestEntity();
+        entity.setId(BigInteger.ONE);
+        entity.setInnerEntity(new TestEntity());
+        entity.setEntityList(new ArrayList<>(Arrays.asList(new TestEntity(), new TestEntity())));
+        return entity;
+    }
+
+    @Test
+    public void testProxiesAndFactories() throws Exception {
+        codeFreeze.freeze(createEntity());
+        codeFreeze.freeze(createEntity());
+        assertEquals(metrics.getProxiesCreated(), 2);
+        assertEquals(metrics.getProxiesCreatedByType().get(TestEntity.class.getName()), Long.valueOf(2));
+        assertEquals(metrics.getFactoryCacheMisses(), 1);
+        assertEquals(metrics.getFactoryCacheHits(), 1);
+    }
+
+    @Test
+    public void testWrappersAreNotCountedAsProxies() throws Exception {
+        codeFreeze.freeze(Optional.of(createEntity()));
+        codeFreeze.freeze(Stream.of(new TestEntity())).forEach(Objects::requireNonNull);
+        codeFreeze.freeze(Collections.singletonList(new TestEntity()).iterator()).next();
+        codeFreeze.freeze(new TestEntity[]{new TestEntity()});
+        assertEquals(metrics.getProxiesCreated(), 4);
+        assertEquals(metrics.getProxiesCreatedByType().keySet(), Collections.singleton(TestEntity.class.getName()));
+    }
+
+    @Test
+    public void testClassGenerationTimeOfLambdaBackend() throws Exception {
+        LambdaCodeFreeze lambdaCodeFreeze = new LambdaCodeFreeze();
+        lambdaCodeFreeze.setListener(metrics);
+        lambdaCodeFreeze.freeze(createEntity());
+        assertEquals(metrics.getFactoryCacheMisses(), 1);
+        assertEquals(metrics.getProxiesCreated(), 1);
+    }
+
+    @Test
+    public void testCollections() throws Exception {
+        TestEntity frozen = codeFreeze.freeze(createEntity());
+        frozen.getEntityList();
+        assertEquals(metrics.getCollectionsFrozen(), 1);
+        assertEquals(metrics.getCollectionElementsFrozen(), 2);
+    }
+
+    @Test
+    public void testMemoization() throws Exception {
+        TestEntity frozen = codeFreeze.freeze(createEntity());
+        frozen.getInnerEntity();
+        frozen.getInnerEntity();
+        frozen.getInnerEntity();
+        assertEquals(metrics.getMemoMisses(), 1);
+        assertEquals(metrics.getMemoHits(), 2);
+    }
+
+    @Test
+    public void testRejectedMutators() throws Exception {
+        TestEntity frozen = codeFreeze.freeze(createEntity());
+        for (int i = 0; i < 3; i++) {
+            try {
+                frozen.setName("");
+                fail();
+            } catch (UnsupportedOperationException e) {
+                // expected
+            }
+        }
+        assertEquals(metrics.getRejectedMutatorCalls(), 3);
+    }
+
+    @Test
+    public void testNoListener() throws Exception {
+        codeFreeze.setListener(null);
+        codeFreeze.freeze(createEntity()).getInnerEntity();
+        assertEquals(metrics.getProxiesCreated(), 0);
+        assertEquals(metrics.getMemoMisses(), 0);
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        List<TestEntity> frozen = codeFreeze.freeze(createEntity()).getEntityList();
+        assertNotNull(frozen);
+        metrics.reset();
+        assertEquals(metrics.getProxiesCreated(), 0);
+        assertTrue(metrics.getProxiesCreatedByType().isEmpty());
+        assertEquals(metrics.getCollectionsFrozen(), 0);
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = metrics.registerMBean("test");
+        try {
+            codeFreeze.freeze(createEntity());
+            assertEquals(server.getAttribute(name, "ProxiesCreated"), 1L);
+            TabularData proxiesCreatedByType = (TabularData) server.getAttribute(name, "ProxiesCreatedByType");
+            CompositeData row = proxiesCreatedByType.get(new Object[]{TestEntity.class.getName()});
+            assertEquals(row.get("value"), 1L);
+        } finally {
+            metrics.unregisterMBean("test");
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+}
@@ -0,0 +1,198 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.OffHeapCodeFreeze;
+import com.autsia.codefreeze.model.StreamingEntity;
+import com.autsia.codefreeze.model.TestEntity;
+import com.autsia.codefreeze.model.ValuesEntity;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+/**
+ * Frozen graphs stored off-heap are read through flyweight views
+ */
+public class OffHeapCodeFreezeTest {
+
+    private OffHeapCodeFreeze codeFreeze;
+    private TestEntity source;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        codeFreeze = new OffHeapCodeFreeze(1 << 20);
+        source = createEntity(1, "root");
+        TestEntity inner = createEntity(2, "inner");
+        inner.setInnerEntity(createEntity(3, "third"));
+        source.setInnerEntity(inner);
+        TestEntity element = createEntity(4, "element");
+        source.setEntityList(new ArrayList<>(Arrays.asList(element, element, null)));
+        source.setEntitySet(new HashSet<>(Collections.singletonList(createEntity(5, "set"))));
+        source.setEntityMap(new HashMap<>(Collections.singletonMap(createEntity(6, "key"), createEntity(7, "value"))));
+    }
+
+    private static TestEntity createEntity(int id, String name) {
+        TestEntity entity = new TestEntity();
+        entity.setId(BigInteger.valueOf(id));
+        entity.setName(name);
+        entity.setMask(id * 10);
+        return entity;
+    }
+
+    @Test
+    public void testGetters() throws Exception {
+        TestEntity frozen = codeFreeze.freeze(source);
+        assertTrue(frozen instanceof Frozen);
+        assertEquals(frozen.getId(), BigInteger.ONE);
+        assertEquals(frozen.getName(), "root");
+        assertEquals(frozen.getMask(), 10);
+        assertEquals(frozen.getInnerEntity().getName(), "inner");
+        assertEquals(frozen.getThirdLevelEntity().getName(), "third");
+        assertEquals(frozen.getFinalObjectAsObject(), "");
+        assertEquals(frozen.getEntityList().size(), 3);
+        assertEquals(frozen.getEntityList().get(0).getName(), "element");
+        assertNull(frozen.getEntityList().get(2));
+        assertEquals(frozen.getEntitySet().iterator().next().getName(), "set");
+        Map.Entry<TestEntity, TestEntity> entry = frozen.getEntityMap().entrySet().iterator().next();
+        assertEquals(entry.getKey().getName(), "key");
+        assertEquals(frozen.getEntityMap().get(entry.getKey()).getName(), "value");
+        assertNull(frozen.getInnerEntity().getInnerEntity().getInnerEntity());
+    }
+
+    @Test
+    public void testValues() throws Exception {
+        ValuesEntity values = new ValuesEntity();
+        values.setFlag(true);
+        values.setSmallNumber((byte) -3);
+        values.setLetter('z');
+        values.setShortNumber((short) 300);
+        values.setLongNumber(Long.MAX_VALUE);
+        values.setRatio(0.5f);
+        values.setAmount(-1.25);
+        values.setBoxedNumber(42L);
+        values.setUnit(TimeUnit.SECONDS);
+        values.setUuid(UUID.randomUUID());
+        values.setPrice(new BigDecimal("12.345"));
+        values.setDate(LocalDate.of(2016, 1, 31));
+        values.setNickname("nick");
+        values.setNumbers(new int[]{1, 2, 3});
+        values.setTags(new String[]{"a", null});
+        values.setEntities(new TestEntity[]{source});
+
+        ValuesEntity frozen = codeFreeze.freeze(values);
+        assertTrue(frozen.isFlag());
+        assertEquals(frozen.getSmallNumber(), (byte) -3);
+        assertEquals(frozen.getLetter(), 'z');
+        assertEquals(frozen.getShortNumber(), (short) 300);
+        assertEquals(frozen.getLongNumber(), Long.MAX_VALUE);
+        assertEquals(frozen.getRatio(), 0.5f);
+        assertEquals(frozen.getAmount(), -1.25);
+        assertEquals(frozen.getBoxedNumber(), Long.valueOf(42));
+        assertEquals(frozen.getUnit(), TimeUnit.SECONDS);
+        assertEquals(frozen.getUuid(), values.getUuid());
+        assertEquals(frozen.getPrice(), new BigDecimal("12.345"));
+        assertEquals(frozen.getDate(), LocalDate.of(2016, 1, 31));
+        assertEquals(frozen.getNickname(), Optional.of("nick"));
+        assertEquals(frozen.getNumbers(), new int[]{1, 2, 3});
+        assertEquals(frozen.getTags(), new String[]{"a", null});
+        assertEquals(frozen.getEntities()[0].getName(), "root");
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testSetter() throws Exception {
+        codeFreeze.freeze(source).setName("");
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testNestedSetter() throws Exception {
+        codeFreeze.freeze(source).getEntityList().get(0).setName("");
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testListMutator() throws Exception {
+        codeFreeze.freeze(source).getEntityList().add(new TestEntity());
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testMapMutator() throws Exception {
+        codeFreeze.freeze(source).getEntityMap().clear();
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testMethodOtherThanGetter() throws Exception {
+        codeFreeze.freeze(new ValuesEntity()).describe();
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testFailedGetterFailsAgain() throws Exception {
+        codeFreeze.freeze(source).getInnerEntity().getInnerEntity().getThirdLevelEntity();
+    }
+
+    @Test
+    public void testSharedObjectsAreStoredOnce() throws Exception {
+        source.getInnerEntity().getInnerEntity().setInnerEntity(source);
+        TestEntity frozen = codeFreeze.freeze(source);
+        List<TestEntity> list = frozen.getEntityList();
+        assertEquals(list.get(0), list.get(1));
+        assertEquals(list.get(0).hashCode(), list.get(1).hashCode());
+        assertNotEquals(list.get(0), frozen);
+        assertEquals(frozen.getThirdLevelEntity().getInnerEntity(), frozen);
+    }
+
+    @Test
+    public void testSourceIsCopied() throws Exception {
+        TestEntity frozen = codeFreeze.freeze(source);
+        source.setName("changed");
+        source.getEntityList().clear();
+        assertEquals(frozen.getName(), "root");
+        assertEquals(frozen.getEntityList().size(), 3);
+    }
+
+    @Test
+    public void testFrozenIsReturnedAsIs() throws Exception {
+        TestEntity frozen = codeFreeze.freeze(source);
+        int size = codeFreeze.getArena().size();
+        assertSame(codeFreeze.freeze(frozen), frozen);
+        assertSame(codeFreeze.freeze("string"), "string");
+        assertEquals(codeFreeze.getArena().size(), size);
+    }
+
+    @Test
+    public void testArenaIsFull() throws Exception {
+        OffHeapCodeFreeze smallCodeFreeze = new OffHeapCodeFreeze(64);
+        try {
+            smallCodeFreeze.freeze(source);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(smallCodeFreeze.getArena().size(), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnsupportedGetter() throws Exception {
+        codeFreeze.freeze(new StreamingEntity());
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.OffHeapCodeFreeze;
+import com.autsia.codefreeze.model.TestEntity;
+import com.autsia.codefreeze.model.ValuesEntity;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.*;
+
+/**
+ * Off-heap frozen graphs saved to the file are mapped back after restart
+ */
+public class OffHeapFileTest {
+
+    private OffHeapCodeFreeze codeFreeze;
+    private TestEntity source;
+    private Path file;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        codeFreeze = new OffHeapCodeFreeze(1 << 20);
+        source = new TestEntity();
+        source.setId(BigInteger.ONE);
+        source.setName("root");
+        source.setMask(10);
+        TestEntity inner = new TestEntity();
+        inner.setName("inner");
+        inner.setInnerEntity(source);
+        source.setInnerEntity(inner);
+        source.setEntityList(new ArrayList<>(Arrays.asList(inner, null)));
+        source.setEntityMap(Collections.singletonMap(inner, source));
+        file = Files.createTempFile("codefreeze", ".arena");
+        file.toFile().deleteOnExit();
+    }
+
+    @Test
+    public void testGraphIsLoaded() throws Exception {
+        codeFreeze.save(source, file);
+        TestEntity loaded = OffHeapCodeFreeze.load(file, TestEntity.class);
+        assertTrue(loaded instanceof Frozen);
+        assertEquals(loaded.getId(), BigInteger.ONE);
+        assertEquals(loaded.getName(), "root");
+        assertEquals(loaded.getMask(), 10);
+        assertEquals(loaded.getInnerEntity().getName(), "inner");
+        assertEquals(loaded.getInnerEntity().getInnerEntity(), loaded);
+        assertEquals(loaded.getEntityList().get(0), loaded.getInnerEntity());
+        assertNull(loaded.getEntityList().get(1));
+        assertEquals(loaded.getEntityMap().get(loaded.getInnerEntity()), loaded);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testLoadedGraphIsImmutable() throws Exception {
+        codeFreeze.save(source, file);
+        OffHeapCodeFreeze.load(file, TestEntity.class).getInnerEntity().setName("");
+    }
+
+    @Test
+    public void testFrozenGraphIsSaved() throws Exception {
+        codeFreeze.freeze(new TestEntity());
+        TestEntity frozen = codeFreeze.freeze(source);
+        codeFreeze.freeze(new TestEntity());
+        int size = codeFreeze.getArena().size();
+        codeFreeze.save(frozen, file);
+        assertEquals(codeFreeze.getArena().size(), size);
+        assertEquals(OffHeapCodeFreeze.load(file, TestEntity.class).getName(), "root");
+    }
+
+    @Test
+    public void testValuesAreLoaded() throws Exception {
+        ValuesEntity values = new ValuesEntity();
+        values.setLetter('z');
+        values.setUnit(TimeUnit.HOURS);
+        values.setNumbers(new int[]{1, 2, 3});
+        values.setTags(new String[]{"a", "b"});
+        values.setEntities(new TestEntity[]{source});
+        codeFreeze.save(values, file);
+        ValuesEntity loaded = OffHeapCodeFreeze.load(file, ValuesEntity.class);
+        assertEquals(loaded.getLetter(), 'z');
+        assertEquals(loaded.getUnit(), TimeUnit.HOURS);
+        assertEquals(loaded.getNumbers(), new int[]{1, 2, 3});
+        assertEquals(loaded.getTags(), new String[]{"a", "b"});
+        assertEquals(loaded.getEntities()[0].getName(), "root");
+    }
+
+    @Test
+    public void testGraphIsLoadedByAnotherClassLoader() throws Exception {
+        codeFreeze.save(source, file);
+        // The same class loaded by another class loader, just like in a new JVM run
+        Class<?> isolatedType = new ModelClassLoader(getClass().getClassLoader()).loadClass(TestEntity.class.getName());
+        Object loaded = OffHeapCodeFreeze.load(file, isolatedType);
+        assertTrue(isolatedType.isInstance(loaded));
+        assertEquals(isolatedType.getMethod("getName").invoke(loaded), "root");
+        try {
+            isolatedType.getMethod("setName", String.class).invoke(loaded, "");
+            fail("Setter of loaded entity has to fail");
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof UnsupportedOperationException);
+        }
+    }
+
+    @Test
+    public void testFileIsReplacedWithoutLeftovers() throws Exception {
+        codeFreeze.save(new TestEntity(), file);
+        codeFreeze.save(source, file);
+        assertEquals(OffHeapCodeFreeze.load(file, TestEntity.class).getName(), "root");
+        try (Stream<Path> files = Files.list(file.getParent())) {
+            String prefix = file.getFileName().toString();
+            assertFalse(files.anyMatch(path -> path.getFileName().toString().startsWith(prefix) && !path.equals(file)));
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = ".* has changed since .*")
+    public void testChangedTypeIsDetected() throws Exception {
+        codeFreeze.save(source, file);
+        String content = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+        Files.write(file, content.replace("getMask:INT", "getMask:FLO").getBytes(StandardCharsets.ISO_8859_1));
+        OffHeapCodeFreeze.load(file, TestEntity.class);
+    }
+
+    @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = ".* is truncated or corrupted")
+    public void testTruncatedFileIsDetected() throws Exception {
+        codeFreeze.save(source, file);
+        byte[] content = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(content, content.length / 2));
+        OffHeapCodeFreeze.load(file, TestEntity.class);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testOtherFileIsRejected() throws Exception {
+        Files.write(file, "not an arena".getBytes(StandardCharsets.UTF_8));
+        OffHeapCodeFreeze.load(file, TestEntity.class);
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import com.autsia.codefreeze.impl.IdentityScope;
+import com.autsia.codefreeze.model.TestEntity;
+import net.sf.cglib.proxy.Factory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.testng.Assert.*;
+
+/**
+ * Large collections frozen in parallel are the same as the ones frozen sequentially
+ */
+public class ParallelFreezeTest {
+
+    private static final int SIZE = 1000;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    private CGLIBCodeFreeze codeFreeze;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        codeFreeze = new CGLIBCodeFreeze();
+        codeFreeze.setParallelismThreshold(SIZE / 2);
+        codeFreeze.setFreezingPool(pool);
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+        pool.shutdown();
+    }
+
+    private TestEntity createEntity(int id) {
+        TestEntity entity = new TestEntity();
+        entity.setId(BigInteger.valueOf(id));
+        return entity;
+    }
+
+    @Test
+    public void testListOrder() throws Exception {
+        List<TestEntity> list = new ArrayList<>();
+        for (int i = 0; i < SIZE; i++) {
+            list.add(createEntity(i));
+        }
+        List<TestEntity> frozen = codeFreeze.freeze(list);
+        assertEquals(frozen.size(), SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            assertTrue(frozen.get(i) instanceof Factory);
+            assertEquals(frozen.get(i).getId(), BigInteger.valueOf(i));
+        }
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testListElementSetter() throws Exception {
+        List<TestEntity> list = new ArrayList<>();
+        for (int i = 0; i < SIZE; i++) {
+            list.add(createEntity(i));
+        }
+        codeFreeze.freeze(list).get(SIZE - 1).setName("");
+    }
+
+    @Test
+    public void testSetOrder() throws Exception {
+        Set<String> set = new LinkedHashSet<>();
+        for (int i = 0; i < SIZE; i++) {
+            set.add(String.valueOf(i));
+        }
+        assertEquals(new ArrayList<>(codeFreeze.freeze(set)), new ArrayList<>(set));
+    }
+
+    @Test
+    public void testMapOrder() throws Exception {
+        Map<String, TestEntity> map = new LinkedHashMap<>();
+        for (int i = 0; i < SIZE; i++) {
+            map.put(String.valueOf(i), createEntity(i));
+        }
+        Map<String, TestEntity> frozen = codeFreeze.freeze(map);
+        assertEquals(new ArrayList<>(frozen.keySet()), new ArrayList<>(map.keySet()));
+        for (Map.Entry<String, TestEntity> entry : frozen.entrySet()) {
+            assertTrue(entry.getValue() instanceof Factory);
+            assertEquals(entry.getValue().getId(), new BigInteger(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testSmallCollectionIsFrozenSequentially() throws Exception {
+        codeFreeze.setFreezingPool(null);
+        List<TestEntity> frozen = codeFreeze.freeze(Collections.singletonList(createEntity(1)));
+        assertEquals(frozen.get(0).getId(), BigInteger.ONE);
+    }
+
+    @Test
+    public void testSharedElementsWithinSession() throws Exception {
+        codeFreeze.setIdentityScope(IdentityScope.SESSION);
+        TestEntity shared = createEntity(1);
+        List<TestEntity> frozen = codeFreeze.freeze(Collections.nCopies(SIZE, shared));
+        for (TestEntity element : frozen) {
+            assertSame(element, frozen.get(0));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeThreshold() throws Exception {
+        codeFreeze.setParallelismThreshold(-1);
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import com.autsia.codefreeze.impl.prewarm.PrewarmResult;
+import com.autsia.codefreeze.model.PageEntity;
+import com.autsia.codefreeze.model.TestEntity;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+/**
+ * Proof prewarming of proxy factories
+ */
+public class PrewarmTest {
+
+    private CGLIBCodeFreeze codeFreeze;
+    private AtomicInteger tasksCount;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        codeFreeze = new CGLIBCodeFreeze();
+        tasksCount = new AtomicInteger();
+        codeFreeze.setPrewarmExecutor(task -> {
+            tasksCount.incrementAndGet();
+            task.run();
+        });
+    }
+
+    @Test
+    public void testPrewarmReachableTypes() throws Exception {
+        PrewarmResult result = codeFreeze.prewarm(Collections.singleton(TestEntity.class));
+        assertTrue(result.getTypes().contains(TestEntity.class));
+        // Returned by getFinalObjectAsObject()
+        assertTrue(result.getTypes().contains(Object.class));
+        // Neither final types nor collections need proxy factories
+        assertFalse(result.getTypes().contains(String.class));
+        assertFalse(result.getTypes().contains(List.class));
+        assertEquals(tasksCount.get(), result.getTypes().size());
+        assertFalse(result.getDuration().isNegative());
+    }
+
+    @Test(timeOut = 10000)
+    public void testPrewarmSelfReferencingContainer() throws Exception {
+        PrewarmResult result = codeFreeze.prewarm(Collections.singleton(PageEntity.class));
+        assertFalse(result.getTypes().contains(PageEntity.class));
+        assertFalse(result.getTypes().contains(Object.class));
+    }
+
+    @Test
+    public void testPrewarmPackage() throws Exception {
+        PrewarmResult result = codeFreeze.prewarmPackage(TestEntity.class.getPackage().getName());
+        assertTrue(result.getTypes().contains(TestEntity.class));
+        assertEquals(tasksCount.get(), result.getTypes().size());
+    }
+
+    @Test
+    public void testFreezeAfterPrewarm() throws Exception {
+        codeFreeze.prewarm(Collections.singleton(TestEntity.class));
+        TestEntity entity = new TestEntity();
+        entity.setInnerEntity(new TestEntity());
+        assertNotNull(codeFreeze.freeze(entity).getInnerEntity());
+    }
+
+}
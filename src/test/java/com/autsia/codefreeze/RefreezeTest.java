@@ -0,0 +1,163 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import com.autsia.codefreeze.model.TestEntity;
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+import java.util.*;
+
+import static org.testng.Assert.*;
+
+/**
+ * Re-freezing shares unchanged objects with the previous frozen version and freezes changed ones again
+ */
+public class RefreezeTest {
+
+    private static TestEntity entity(int id) {
+        TestEntity entity = new TestEntity();
+        entity.setId(BigInteger.valueOf(id));
+        entity.setName("Entity " + id);
+        return entity;
+    }
+
+    /**
+     * Creates equal graphs for every call, the way reloading of the same data does
+     */
+    private static TestEntity createGraph() {
+        TestEntity root = entity(0);
+        TestEntity inner = entity(1);
+        inner.setInnerEntity(entity(2));
+        root.setInnerEntity(inner);
+        root.setEntityList(new ArrayList<>(Arrays.asList(entity(3), entity(4))));
+        root.setEntitySet(new LinkedHashSet<>(Collections.singleton(entity(5))));
+        Map<TestEntity, TestEntity> map = new LinkedHashMap<>();
+        map.put(entity(6), entity(7));
+        root.setEntityMap(map);
+        return root;
+    }
+
+    @Test(dataProvider = "collectionCodeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testUnchangedGraphIsReused(CodeFreeze codeFreeze) throws Exception {
+        TestEntity previous = codeFreeze.freeze(createGraph());
+        assertSame(codeFreeze.refreeze(previous, createGraph()), previous);
+    }
+
+    @Test(dataProvider = "collectionCodeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testOnlyChangedPathIsFrozenAgain(CodeFreeze codeFreeze) throws Exception {
+        TestEntity previous = codeFreeze.freeze(createGraph());
+        TestEntity source = createGraph();
+        source.getEntityList().get(1).setName("Changed");
+
+        TestEntity frozen = codeFreeze.refreeze(previous, source);
+        assertNotSame(frozen, previous);
+        assertNotSame(frozen.getEntityList(), previous.getEntityList());
+        assertSame(frozen.getEntityList().get(0), previous.getEntityList().get(0));
+        assertEquals(frozen.getEntityList().get(1).getName(), "Changed");
+        assertEquals(previous.getEntityList().get(1).getName(), "Entity 4");
+        // Siblings of the changed path are shared, even though they are frozen lazily by getters of the new version
+        assertSame(frozen.getInnerEntity(), previous.getInnerEntity());
+        assertSame(frozen.getEntitySet(), previous.getEntitySet());
+        assertSame(frozen.getEntityMap(), previous.getEntityMap());
+        try {
+            frozen.getEntityList().get(1).setName("");
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test(dataProvider = "collectionCodeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testChangedLeafValue(CodeFreeze codeFreeze) throws Exception {
+        TestEntity previous = codeFreeze.freeze(createGraph());
+        TestEntity source = createGraph();
+        source.getInnerEntity().getInnerEntity().setMask(1);
+
+        TestEntity frozen = codeFreeze.refreeze(previous, source);
+        assertEquals(frozen.getThirdLevelEntity().getMask(), 1);
+        assertNotSame(frozen.getInnerEntity(), previous.getInnerEntity());
+        assertSame(frozen.getEntityList(), previous.getEntityList());
+    }
+
+    @Test(dataProvider = "collectionCodeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testChangedCollectionSize(CodeFreeze codeFreeze) throws Exception {
+        TestEntity previous = codeFreeze.freeze(createGraph());
+        TestEntity source = createGraph();
+        source.getEntityList().add(entity(8));
+
+        TestEntity frozen = codeFreeze.refreeze(previous, source);
+        assertEquals(frozen.getEntityList().size(), 3);
+        assertSame(frozen.getEntityList().get(1), previous.getEntityList().get(1));
+    }
+
+    @Test(dataProvider = "collectionCodeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testMapValuesAreSharedByKey(CodeFreeze codeFreeze) throws Exception {
+        Map<String, TestEntity> source = new LinkedHashMap<>();
+        source.put("a", entity(1));
+        source.put("b", entity(2));
+        Map<String, TestEntity> previous = codeFreeze.freeze(source);
+
+        Map<String, TestEntity> changed = new LinkedHashMap<>();
+        changed.put("c", entity(3));
+        changed.put("b", entity(2));
+        Map<String, TestEntity> frozen = codeFreeze.refreeze(previous, changed);
+        assertSame(frozen.get("b"), previous.get("b"));
+        assertEquals(frozen.get("c").getId(), BigInteger.valueOf(3));
+        assertFalse(frozen.containsKey("a"));
+    }
+
+    @Test(dataProvider = "collectionCodeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testReorderedMapIsChanged(CodeFreeze codeFreeze) throws Exception {
+        Map<String, TestEntity> source = new LinkedHashMap<>();
+        source.put("a", entity(1));
+        source.put("b", entity(2));
+        Map<String, TestEntity> previous = codeFreeze.freeze(source);
+
+        Map<String, TestEntity> reordered = new LinkedHashMap<>();
+        reordered.put("b", entity(2));
+        reordered.put("a", entity(1));
+        Map<String, TestEntity> frozen = codeFreeze.refreeze(previous, reordered);
+        assertNotSame(frozen, previous);
+        assertEquals(new ArrayList<>(frozen.keySet()), Arrays.asList("b", "a"));
+        assertSame(frozen.get("a"), previous.get("a"));
+    }
+
+    @Test(dataProvider = "collectionCodeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testCycle(CodeFreeze codeFreeze) throws Exception {
+        TestEntity source = entity(1);
+        source.setInnerEntity(source);
+        TestEntity previous = codeFreeze.freeze(source);
+
+        TestEntity changed = entity(1);
+        changed.setInnerEntity(changed);
+        changed.setMask(1);
+        TestEntity frozen = codeFreeze.refreeze(previous, changed);
+        assertEquals(frozen.getMask(), 1);
+        assertEquals(frozen.getInnerEntity().getInnerEntity().getMask(), 1);
+    }
+
+    @Test
+    public void testWithoutPreviousVersion() throws Exception {
+        CodeFreeze codeFreeze = new CGLIBCodeFreeze();
+        TestEntity frozen = codeFreeze.refreeze(null, createGraph());
+        assertEquals(frozen.getInnerEntity().getName(), "Entity 1");
+        assertNull(codeFreeze.refreeze(frozen, null));
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import com.autsia.codefreeze.model.MutableValuesEntity;
+import com.autsia.codefreeze.model.TestEntity;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.lang.ref.WeakReference;
+import java.math.BigInteger;
+import java.util.*;
+
+import static org.testng.Assert.*;
+
+/**
+ * Snapshots are detached immutable copies of bean graphs
+ */
+public class SnapshotTest {
+
+    private CodeFreeze codeFreeze = new CGLIBCodeFreeze();
+
+    private TestEntity source;
+    private TestEntity snapshot;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        source = createEntity(1);
+        source.setInnerEntity(createEntity(2));
+        source.setEntityList(new ArrayList<>(Arrays.asList(createEntity(3), source.getInnerEntity())));
+        source.setEntitySet(new HashSet<>(Collections.singletonList(createEntity(4))));
+        source.setEntityMap(new HashMap<>(Collections.singletonMap(createEntity(5), createEntity(6))));
+        snapshot = codeFreeze.snapshot(source);
+    }
+
+    private TestEntity createEntity(int id) {
+        TestEntity entity = new TestEntity();
+        entity.setId(BigInteger.valueOf(id));
+        entity.setMask(id);
+        entity.setName(TestEntity.class.getSimpleName() + id);
+        return entity;
+    }
+
+    @Test
+    public void testGetters() throws Exception {
+        assertEquals(snapshot.getId(), BigInteger.ONE);
+        assertEquals(snapshot.getMask(), 1);
+        assertEquals(snapshot.getName(), "TestEntity1");
+        assertEquals(snapshot.getInnerEntity().getId(), BigInteger.valueOf(2));
+        assertEquals(snapshot.getEntityList().get(0).getId(), BigInteger.valueOf(3));
+        assertEquals(snapshot.getEntitySet().iterator().next().getId(), BigInteger.valueOf(4));
+        assertEquals(snapshot.getEntityMap().values().iterator().next().getId(), BigInteger.valueOf(6));
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testSetter() throws Exception {
+        snapshot.setName("");
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testNestedSetter() throws Exception {
+        snapshot.getInnerEntity().setName("");
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testListElementSetter() throws Exception {
+        snapshot.getEntityList().get(0).setName("");
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testMapKeySetter() throws Exception {
+        snapshot.getEntityMap().keySet().iterator().next().setName("");
+    }
+
+    @Test
+    public void testCollectionsAreImmutable() throws Exception {
+        assertTrue(snapshot.getEntityList() instanceof ImmutableList);
+    }
+
+    @Test
+    public void testSourceChangesAreNotReflected() throws Exception {
+        source.setName("");
+        source.getInnerEntity().setMask(0);
+        source.getEntityList().clear();
+        assertEquals(snapshot.getName(), "TestEntity1");
+        assertEquals(snapshot.getInnerEntity().getMask(), 2);
+        assertEquals(snapshot.getEntityList().size(), 2);
+    }
+
+    @Test
+    public void testSharedObjectsAreCopiedOnce() throws Exception {
+        assertSame(snapshot.getEntityList().get(1), snapshot.getInnerEntity());
+    }
+
+    @Test
+    public void testCycle() throws Exception {
+        source.getInnerEntity().setInnerEntity(source);
+        TestEntity cyclic = codeFreeze.snapshot(source);
+        assertSame(cyclic.getInnerEntity().getInnerEntity(), cyclic);
+    }
+
+    @Test
+    public void testSnapshotOfSnapshot() throws Exception {
+        assertSame(codeFreeze.snapshot(snapshot), snapshot);
+    }
+
+    @Test
+    public void testSnapshotOfFrozenBean() throws Exception {
+        TestEntity frozen = codeFreeze.freeze(source);
+        TestEntity copy = codeFreeze.snapshot(frozen);
+        source.setName("");
+        assertEquals(copy.getName(), "TestEntity1");
+    }
+
+    @Test
+    public void testSourceIsNotReferenced() throws Exception {
+        TestEntity entity = createEntity(7);
+        WeakReference<TestEntity> reference = new WeakReference<>(entity);
+        TestEntity copy = codeFreeze.snapshot(entity);
+        entity = null;
+        for (int i = 0; i < 10 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(reference.get());
+        assertEquals(copy.getId(), BigInteger.valueOf(7));
+    }
+
+    @Test
+    public void testMutableValuesAreCopied() throws Exception {
+        MutableValuesEntity entity = new MutableValuesEntity();
+        entity.setLabel(new StringBuilder("label"));
+        entity.setCounter(new MutableValuesEntity.Counter(1));
+        MutableValuesEntity copy = codeFreeze.snapshot(entity);
+        entity.getLabel().append("!");
+        entity.getCounter().setValue(2);
+        assertEquals(copy.getLabel().toString(), "label");
+        assertEquals(copy.getCounter().getValue(), 1);
+        // Copied once, getters are plain reads
+        assertSame(copy.getLabel(), copy.getLabel());
+    }
+
+    @Test
+    public void testValuesWhichFailToSerializeAreShared() throws Exception {
+        MutableValuesEntity entity = new MutableValuesEntity();
+        entity.setAttachment(new MutableValuesEntity.Attachment(new Object()));
+        MutableValuesEntity copy = codeFreeze.snapshot(entity);
+        assertSame(copy.getAttachment(), entity.getAttachment());
+    }
+
+    @Test
+    public void testNonEnhanceable() throws Exception {
+        assertSame(codeFreeze.snapshot(BigInteger.ONE), BigInteger.ONE);
+        assertNull(codeFreeze.snapshot(null));
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import com.autsia.codefreeze.model.TestEntity;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+
+import static org.testng.Assert.*;
+
+/**
+ * Sorted and navigable collections are frozen with their order and comparator, range queries return frozen views
+ */
+public class SortedCollectionsTest {
+
+    private static final Comparator<TestEntity> BY_ID_DESCENDING =
+            Comparator.comparing(TestEntity::getId, Comparator.reverseOrder());
+
+    private static TestEntity entity(int id) {
+        TestEntity entity = new TestEntity();
+        entity.setId(BigInteger.valueOf(id));
+        return entity;
+    }
+
+    private static TestEntity createEntity() {
+        TestEntity entity = new TestEntity();
+        TreeSet<TestEntity> set = new TreeSet<>(BY_ID_DESCENDING);
+        TreeMap<TestEntity, TestEntity> map = new TreeMap<>(BY_ID_DESCENDING);
+        for (int i = 0; i < 10; i++) {
+            set.add(entity(i));
+            map.put(entity(i), entity(i * 10));
+        }
+        entity.setEntitySet(set);
+        entity.setEntityMap(map);
+        return entity;
+    }
+
+    private static void assertFrozen(TestEntity entity) {
+        try {
+            entity.setName("");
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test(dataProvider = "collectionCodeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testSortedSetKeepsComparator(CodeFreeze codeFreeze) throws Exception {
+        NavigableSet<TestEntity> set = (NavigableSet<TestEntity>) codeFreeze.freeze(createEntity()).getEntitySet();
+        assertSame(set.comparator(), BY_ID_DESCENDING);
+        assertEquals(set.first().getId(), BigInteger.valueOf(9));
+        assertEquals(set.last().getId(), BigInteger.ZERO);
+        assertFrozen(set.first());
+    }
+
+    @Test(dataProvider = "collectionCodeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testNavigableSetQueries(CodeFreeze codeFreeze) throws Exception {
+        NavigableSet<TestEntity> set = (NavigableSet<TestEntity>) codeFreeze.freeze(createEntity()).getEntitySet();
+        assertEquals(set.floor(entity(5)).getId(), BigInteger.valueOf(5));
+        assertEquals(set.higher(entity(5)).getId(), BigInteger.valueOf(4));
+        assertNull(set.lower(entity(9)));
+        NavigableSet<TestEntity> subSet = set.subSet(entity(7), true, entity(3), false);
+        assertEquals(subSet.size(), 4);
+        assertFrozen(subSet.first());
+        try {
+            subSet.pollFirst();
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(set.descendingSet().first().getId(), BigInteger.ZERO);
+    }
+
+    @Test(dataProvider = "collectionCodeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testNavigableMapQueries(CodeFreeze codeFreeze) throws Exception {
+        NavigableMap<TestEntity, TestEntity> map =
+                (NavigableMap<TestEntity, TestEntity>) codeFreeze.freeze(createEntity()).getEntityMap();
+        assertSame(map.comparator(), BY_ID_DESCENDING);
+        assertEquals(map.firstKey().getId(), BigInteger.valueOf(9));
+        Map.Entry<TestEntity, TestEntity> ceiling = map.ceilingEntry(entity(5));
+        assertEquals(ceiling.getValue().getId(), BigInteger.valueOf(50));
+        assertFrozen(ceiling.getKey());
+        assertFrozen(ceiling.getValue());
+        NavigableMap<TestEntity, TestEntity> headMap = map.headMap(entity(5), false);
+        assertEquals(new ArrayList<>(headMap.keySet()).size(), 4);
+        assertFrozen(headMap.firstEntry().getValue());
+        try {
+            headMap.put(entity(11), entity(11));
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test(dataProvider = "collectionCodeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testNaturalOrdering(CodeFreeze codeFreeze) throws Exception {
+        TreeMap<BigDecimal, TestEntity> prices = new TreeMap<>();
+        prices.put(BigDecimal.TEN, entity(10));
+        prices.put(BigDecimal.ONE, entity(1));
+        NavigableMap<BigDecimal, TestEntity> frozen = (NavigableMap<BigDecimal, TestEntity>) codeFreeze.freeze(prices);
+        assertNotSame(frozen, prices);
+        assertEquals(frozen.floorKey(BigDecimal.valueOf(5)), BigDecimal.ONE);
+        assertEquals(new ArrayList<>(frozen.keySet()), Arrays.asList(BigDecimal.ONE, BigDecimal.TEN));
+        assertFrozen(frozen.get(BigDecimal.TEN));
+    }
+
+    @Test
+    public void testSnapshotKeepsComparator() throws Exception {
+        TestEntity snapshot = new CGLIBCodeFreeze().snapshot(createEntity());
+        NavigableSet<TestEntity> set = (NavigableSet<TestEntity>) snapshot.getEntitySet();
+        assertSame(set.comparator(), BY_ID_DESCENDING);
+        assertEquals(set.first().getId(), BigInteger.valueOf(9));
+        NavigableMap<TestEntity, TestEntity> map = (NavigableMap<TestEntity, TestEntity>) snapshot.getEntityMap();
+        assertEquals(map.floorEntry(entity(5)).getValue().getId(), BigInteger.valueOf(50));
+    }
+
+}
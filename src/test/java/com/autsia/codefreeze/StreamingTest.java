@@ -0,0 +1,144 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.CGLIBCodeFreeze;
+import com.autsia.codefreeze.model.StreamingEntity;
+import com.autsia.codefreeze.model.TestEntity;
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.*;
+
+/**
+ * Streams and iterators freeze elements as they are pulled, optionals, queues and deques are frozen with their elements
+ */
+public class StreamingTest {
+
+    private StreamingEntity createFrozenEntity(CodeFreeze codeFreeze) {
+        StreamingEntity entity = new StreamingEntity();
+        List<TestEntity> entities = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            TestEntity element = new TestEntity();
+            element.setId(BigInteger.valueOf(i));
+            entities.add(element);
+        }
+        entity.setEntities(entities);
+        return codeFreeze.freeze(entity);
+    }
+
+    private static void assertFrozen(TestEntity entity) {
+        try {
+            entity.setName("");
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testStream(CodeFreeze codeFreeze) throws Exception {
+        StreamingEntity frozen = createFrozenEntity(codeFreeze);
+        List<TestEntity> elements = frozen.getEntityStream().collect(Collectors.toList());
+        assertEquals(elements.size(), 3);
+        elements.forEach(StreamingTest::assertFrozen);
+        // Streams are not memoized, as they can be consumed only once
+        assertEquals(frozen.getEntityStream().count(), 3);
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testStreamIsLazy(CodeFreeze codeFreeze) throws Exception {
+        StreamingEntity frozen = createFrozenEntity(codeFreeze);
+        List<TestEntity> elements = frozen.getInfiniteStream().limit(2).collect(Collectors.toList());
+        assertEquals(elements.size(), 2);
+        elements.forEach(StreamingTest::assertFrozen);
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testIterator(CodeFreeze codeFreeze) throws Exception {
+        StreamingEntity frozen = createFrozenEntity(codeFreeze);
+        Iterator<TestEntity> iterator = frozen.getEntityIterator();
+        assertFrozen(iterator.next());
+        try {
+            iterator.remove();
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        List<TestEntity> remaining = new ArrayList<>();
+        iterator.forEachRemaining(remaining::add);
+        assertEquals(remaining.size(), 2);
+        remaining.forEach(StreamingTest::assertFrozen);
+        assertTrue(frozen.getEntityIterator().hasNext());
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class)
+    public void testOptional(CodeFreeze codeFreeze) throws Exception {
+        StreamingEntity frozen = createFrozenEntity(codeFreeze);
+        assertEquals(frozen.getFirstEntity().get().getId(), BigInteger.ZERO);
+        assertFrozen(frozen.getFirstEntity().get());
+        assertFalse(codeFreeze.freeze(new StreamingEntity()).getFirstEntity().isPresent());
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class,
+            expectedExceptions = UnsupportedOperationException.class)
+    public void testQueue(CodeFreeze codeFreeze) throws Exception {
+        StreamingEntity frozen = createFrozenEntity(codeFreeze);
+        Queue<TestEntity> queue = frozen.getQueue();
+        assertEquals(queue.size(), 3);
+        assertEquals(queue.peek().getId(), BigInteger.ZERO);
+        assertFrozen(queue.peek());
+        queue.poll();
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class,
+            expectedExceptions = UnsupportedOperationException.class)
+    public void testDeque(CodeFreeze codeFreeze) throws Exception {
+        StreamingEntity frozen = createFrozenEntity(codeFreeze);
+        Deque<TestEntity> deque = frozen.getDeque();
+        assertEquals(deque.getLast().getId(), BigInteger.valueOf(2));
+        assertFrozen(deque.descendingIterator().next());
+        deque.push(new TestEntity());
+    }
+
+    @Test(dataProvider = "codeFreezes", dataProviderClass = CodeFreezes.class,
+            expectedExceptions = UnsupportedOperationException.class)
+    public void testLinkedListDeque(CodeFreeze codeFreeze) throws Exception {
+        StreamingEntity frozen = createFrozenEntity(codeFreeze);
+        Deque<TestEntity> deque = frozen.getLinkedDeque();
+        assertEquals(deque.size(), 3);
+        assertEquals(deque.getLast().getId(), BigInteger.valueOf(2));
+        assertEquals(deque.descendingIterator().next().getId(), BigInteger.valueOf(2));
+        assertFrozen(deque.peekFirst());
+        assertEquals(((List<?>) deque).get(1), deque.toArray()[1]);
+        deque.pollFirst();
+    }
+
+    @Test
+    public void testSnapshotOfQueueAndOptional() throws Exception {
+        StreamingEntity entity = new StreamingEntity();
+        entity.setEntities(new ArrayList<>(Collections.singletonList(new TestEntity())));
+        StreamingEntity snapshot = new CGLIBCodeFreeze().snapshot(entity);
+        assertFrozen(snapshot.getQueue().peek());
+        assertFrozen(snapshot.getLinkedDeque().getFirst());
+        assertFrozen(snapshot.getFirstEntity().get());
+    }
+
+}
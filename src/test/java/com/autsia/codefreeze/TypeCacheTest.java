@@ -0,0 +1,195 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze;
+
+import com.autsia.codefreeze.impl.cache.TypeCache;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.*;
+
+/**
+ * Proof caching and eviction of per-class values
+ */
+public class TypeCacheTest {
+
+    private AtomicInteger computations;
+    private TypeCache<String> cache;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        computations = new AtomicInteger();
+        cache = new TypeCache<>(type -> {
+            computations.incrementAndGet();
+            return type.getSimpleName();
+        });
+    }
+
+    @Test
+    public void testValueIsCached() throws Exception {
+        assertEquals(cache.get(String.class), "String");
+        assertEquals(cache.get(String.class), "String");
+        assertEquals(computations.get(), 1);
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void testEldestValueIsEvicted() throws Exception {
+        cache.setMaximumSize(2);
+        cache.get(String.class);
+        cache.get(Integer.class);
+        cache.get(BigInteger.class);
+        assertEquals(cache.size(), 2);
+        assertEquals(computations.get(), 3);
+
+        cache.get(Integer.class);
+        assertEquals(computations.get(), 3);
+        cache.get(String.class);
+        assertEquals(computations.get(), 4);
+    }
+
+    @Test
+    public void testValueIsComputedOnceUnderContention() throws Exception {
+        int threads = 8;
+        CountDownLatch started = new CountDownLatch(1);
+        TypeCache<String> slowCache = new TypeCache<>(type -> {
+            computations.incrementAndGet();
+            started.countDown();
+            Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+            return type.getSimpleName();
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CyclicBarrier barrier = new CyclicBarrier(threads);
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    barrier.await();
+                    return slowCache.get(String.class);
+                }));
+            }
+            for (Future<String> result : results) {
+                assertEquals(result.get(), "String");
+            }
+            assertEquals(computations.get(), 1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testLateThreadWaitsForRunningComputation() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        TypeCache<Object> slowCache = new TypeCache<>(type -> {
+            computations.incrementAndGet();
+            started.countDown();
+            Uninterruptibles.awaitUninterruptibly(released);
+            return new Object();
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> first = executor.submit(() -> slowCache.get(String.class));
+            started.await();
+            assertSame(getWhenWaiting(slowCache, String.class, released), first.get());
+            assertEquals(computations.get(), 1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testNestedComputationIsShared() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        AtomicReference<TypeCache<Object>> nestedCache = new AtomicReference<>();
+        nestedCache.set(new TypeCache<>(type -> {
+            if (type == String.class) {
+                return nestedCache.get().get(Integer.class);
+            }
+            computations.incrementAndGet();
+            started.countDown();
+            Uninterruptibles.awaitUninterruptibly(released);
+            return new Object();
+        }));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // Value of Integer is computed by the thread, which is computing value of String
+            Future<Object> outer = executor.submit(() -> nestedCache.get().get(String.class));
+            started.await();
+            assertSame(getWhenWaiting(nestedCache.get(), Integer.class, released), outer.get());
+            assertEquals(computations.get(), 1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Requests value from another thread and releases running computation once that thread waits for it
+     */
+    private static <V> V getWhenWaiting(TypeCache<V> cache, Class<?> type, CountDownLatch released) throws Exception {
+        FutureTask<V> late = new FutureTask<>(() -> cache.get(type));
+        Thread thread = new Thread(late);
+        thread.start();
+        while (thread.getState() != Thread.State.WAITING && !late.isDone()) {
+            Thread.yield();
+        }
+        released.countDown();
+        return late.get();
+    }
+
+    @Test
+    public void testNestedValueIsComputed() throws Exception {
+        AtomicReference<TypeCache<String>> nestedCache = new AtomicReference<>();
+        nestedCache.set(new TypeCache<>(type -> type == String.class
+                ? nestedCache.get().get(Integer.class) + type.getSimpleName()
+                : type.getSimpleName()));
+        assertEquals(nestedCache.get().get(String.class), "IntegerString");
+    }
+
+    @Test
+    public void testFailedComputationIsRetried() throws Exception {
+        TypeCache<String> failingCache = new TypeCache<>(type -> {
+            if (computations.incrementAndGet() == 1) {
+                throw new IllegalStateException();
+            }
+            return type.getSimpleName();
+        });
+        try {
+            failingCache.get(String.class);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(failingCache.get(String.class), "String");
+        assertEquals(computations.get(), 2);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeMaximumSize() throws Exception {
+        cache.setMaximumSize(-1);
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.model;
+
+import com.autsia.codefreeze.Freezable;
+import com.autsia.codefreeze.FrozenArrays;
+
+import java.nio.ByteBuffer;
+
+@Freezable
+public class ArrayEntity {
+
+    private byte[] payload;
+    private int[] values;
+    private TestEntity[] entities;
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+
+    public ByteBuffer getPayloadView() {
+        return FrozenArrays.view(payload);
+    }
+
+    public int[] getValues() {
+        return values;
+    }
+
+    public void setValues(int[] values) {
+        this.values = values;
+    }
+
+    public TestEntity[] getEntities() {
+        return entities;
+    }
+
+    public void setEntities(TestEntity[] entities) {
+        this.entities = entities;
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConstructedEntity {
+
+    public static final AtomicInteger CONSTRUCTOR_CALLS = new AtomicInteger();
+
+    private String name;
+    private List<ConstructedEntity> children;
+
+    public ConstructedEntity(String name) {
+        CONSTRUCTOR_CALLS.incrementAndGet();
+        setName(name);
+        setChildren(new ArrayList<>());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public List<ConstructedEntity> getChildren() {
+        return children;
+    }
+
+    public void setChildren(List<ConstructedEntity> children) {
+        this.children = children;
+    }
+
+}
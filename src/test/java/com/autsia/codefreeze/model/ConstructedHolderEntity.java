@@ -0,0 +1,34 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.model;
+
+import com.autsia.codefreeze.Freezable;
+
+@Freezable
+public class ConstructedHolderEntity {
+
+    private ConstructedEntity constructed;
+
+    public ConstructedEntity getConstructed() {
+        return constructed;
+    }
+
+    public void setConstructed(ConstructedEntity constructed) {
+        this.constructed = constructed;
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.model;
+
+import com.autsia.codefreeze.Freezable;
+
+@Freezable
+public class CountingEntity {
+
+    private String name;
+    private int equalsCalls;
+    private int hashCodeCalls;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getEqualsCalls() {
+        return equalsCalls;
+    }
+
+    public int getHashCodeCalls() {
+        return hashCodeCalls;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        equalsCalls++;
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        CountingEntity that = (CountingEntity) o;
+
+        return name != null ? name.equals(that.name) : that.name == null;
+
+    }
+
+    @Override
+    public int hashCode() {
+        hashCodeCalls++;
+        return name != null ? name.hashCode() : 0;
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.model;
+
+import java.io.Serializable;
+
+public class MutableValuesEntity {
+
+    private StringBuilder label;
+    private Counter counter;
+    private Attachment attachment;
+
+    public StringBuilder getLabel() {
+        return label;
+    }
+
+    public void setLabel(StringBuilder label) {
+        this.label = label;
+    }
+
+    public Counter getCounter() {
+        return counter;
+    }
+
+    public void setCounter(Counter counter) {
+        this.counter = counter;
+    }
+
+    public Attachment getAttachment() {
+        return attachment;
+    }
+
+    public void setAttachment(Attachment attachment) {
+        this.attachment = attachment;
+    }
+
+    /**
+     * Mutable value, which can't be proxified as its class is final
+     */
+    public static final class Counter implements Cloneable {
+
+        private int value;
+
+        public Counter(int value) {
+            this.value = value;
+        }
+
+        public int getValue() {
+            return value;
+        }
+
+        public void setValue(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public Counter clone() {
+            try {
+                return (Counter) super.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+    }
+
+    /**
+     * Serializable value, which fails to serialize as it references non-serializable object
+     */
+    public static final class Attachment implements Serializable {
+
+        private final Object content;
+
+        public Attachment(Object content) {
+            this.content = content;
+        }
+
+        public Object getContent() {
+            return content;
+        }
+
+    }
+
+}
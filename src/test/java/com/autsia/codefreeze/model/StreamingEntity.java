@@ -0,0 +1,67 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.model;
+
+import com.autsia.codefreeze.Freezable;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+@Freezable
+public class StreamingEntity {
+
+    private List<TestEntity> entities = new ArrayList<>();
+    private Queue<TestEntity> queue = new ArrayDeque<>();
+    private Deque<TestEntity> deque = new ArrayDeque<>();
+    private Deque<TestEntity> linkedDeque = new LinkedList<>();
+
+    public void setEntities(List<TestEntity> entities) {
+        this.entities = entities;
+        this.queue = new ArrayDeque<>(entities);
+        this.deque = new ArrayDeque<>(entities);
+        this.linkedDeque = new LinkedList<>(entities);
+    }
+
+    public Stream<TestEntity> getEntityStream() {
+        return entities.stream();
+    }
+
+    public Stream<TestEntity> getInfiniteStream() {
+        return Stream.generate(TestEntity::new);
+    }
+
+    public Iterator<TestEntity> getEntityIterator() {
+        return entities.iterator();
+    }
+
+    public Optional<TestEntity> getFirstEntity() {
+        return entities.stream().findFirst();
+    }
+
+    public Queue<TestEntity> getQueue() {
+        return queue;
+    }
+
+    public Deque<TestEntity> getDeque() {
+        return deque;
+    }
+
+    public Deque<TestEntity> getLinkedDeque() {
+        return linkedDeque;
+    }
+
+}
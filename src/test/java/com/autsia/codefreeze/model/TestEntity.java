@@ -16,11 +16,14 @@
 
 package com.autsia.codefreeze.model;
 
+import com.autsia.codefreeze.Freezable;
+
 import java.math.BigInteger;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+@Freezable
 public class TestEntity extends SuperTestEntity {
 
     private BigInteger id;
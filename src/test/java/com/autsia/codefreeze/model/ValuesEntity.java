@@ -0,0 +1,176 @@
+/*
+ *    Copyright 2016 Dmytro Titov
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.autsia.codefreeze.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+public class ValuesEntity {
+
+    private boolean flag;
+    private byte smallNumber;
+    private char letter;
+    private short shortNumber;
+    private long longNumber;
+    private float ratio;
+    private double amount;
+    private Long boxedNumber;
+    private TimeUnit unit;
+    private UUID uuid;
+    private BigDecimal price;
+    private LocalDate date;
+    private String nickname;
+    private int[] numbers;
+    private String[] tags;
+    private TestEntity[] entities;
+
+    public boolean isFlag() {
+        return flag;
+    }
+
+    public void setFlag(boolean flag) {
+        this.flag = flag;
+    }
+
+    public byte getSmallNumber() {
+        return smallNumber;
+    }
+
+    public void setSmallNumber(byte smallNumber) {
+        this.smallNumber = smallNumber;
+    }
+
+    public char getLetter() {
+        return letter;
+    }
+
+    public void setLetter(char letter) {
+        this.letter = letter;
+    }
+
+    public short getShortNumber() {
+        return shortNumber;
+    }
+
+    public void setShortNumber(short shortNumber) {
+        this.shortNumber = shortNumber;
+    }
+
+    public long getLongNumber() {
+        return longNumber;
+    }
+
+    public void setLongNumber(long longNumber) {
+        this.longNumber = longNumber;
+    }
+
+    public float getRatio() {
+        return ratio;
+    }
+
+    public void setRatio(float ratio) {
+        this.ratio = ratio;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public void setAmount(double amount) {
+        this.amount = amount;
+    }
+
+    public Long getBoxedNumber() {
+        return boxedNumber;
+    }
+
+    public void setBoxedNumber(Long boxedNumber) {
+        this.boxedNumber = boxedNumber;
+    }
+
+    public TimeUnit getUnit() {
+        return unit;
+    }
+
+    public void setUnit(TimeUnit unit) {
+        this.unit = unit;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public void setUuid(UUID uuid) {
+        this.uuid = uuid;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+
+    public Optional<String> getNickname() {
+        return Optional.ofNullable(nickname);
+    }
+
+    public void setNickname(String nickname) {
+        this.nickname = nickname;
+    }
+
+    public int[] getNumbers() {
+        return numbers;
+    }
+
+    public void setNumbers(int[] numbers) {
+        this.numbers = numbers;
+    }
+
+    public String[] getTags() {
+        return tags;
+    }
+
+    public void setTags(String[] tags) {
+        this.tags = tags;
+    }
+
+    public TestEntity[] getEntities() {
+        return entities;
+    }
+
+    public void setEntities(TestEntity[] entities) {
+        this.entities = entities;
+    }
+
+    public String describe() {
+        return unit + " " + price;
+    }
+
+}